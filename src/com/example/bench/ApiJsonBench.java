@@ -0,0 +1,93 @@
+package com.example.bench;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.http.HttpServletResponse;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.example.servlet.ApiJson;
+
+/**
+ * API 응답 직렬화 1건당 힙 할당량과 소요 시간을 비교합니다.
+ * - 기존: gson.toJson(new ApiResponse(..)) 로 String 을 만든 뒤 response.getWriter().write(..)
+ * - ApiJson: Writable DTO + 풀에서 빌린 UTF-8 버퍼 -> response.getOutputStream()
+ * 응답 객체는 Tomcat 처럼 Writer/OutputStream 을 재사용하는 가짜 구현(FakeResponse)을 씁니다.
+ *
+ * 실행: java -cp classes:lib/* com.example.bench.ApiJsonBench [항목수=50] [반복=200000]
+ */
+public class ApiJsonBench {
+
+    // 기존 서블릿과 같은 모양의 DTO (리플렉션 직렬화)
+    private static class ApiResponse {
+        boolean success; String message; Object data;
+        ApiResponse(boolean success, String message, Object data) {
+            this.success = success; this.message = message; this.data = data;
+        }
+    }
+    private static class TodoItem {
+        int id; String task; boolean is_completed;
+    }
+    private static class WritableTodoItem implements ApiJson.Writable {
+        int id; String task; boolean is_completed;
+
+        @Override
+        public void writeJson(JsonWriter out) throws IOException {
+            out.beginObject();
+            out.name("id").value(id);
+            out.name("task").value(task);
+            out.name("is_completed").value(is_completed);
+            out.endObject();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int items = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+
+        List<TodoItem> reflective = new ArrayList<>();
+        List<WritableTodoItem> writable = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            TodoItem a = new TodoItem();
+            WritableTodoItem b = new WritableTodoItem();
+            a.id = b.id = i;
+            a.task = b.task = "AWS 수업 복습 " + i + " - VPC 서브넷/라우팅 테이블 정리";
+            a.is_completed = b.is_completed = i % 3 == 0;
+            reflective.add(a);
+            writable.add(b);
+        }
+
+        HttpServletResponse response = FakeResponse.create();
+        Gson gson = new Gson();
+
+        System.out.printf("항목 %d개, 반복 %d회%n", items, iterations);
+        for (int round = 0; round < 3; round++) {
+            measure("gson.toJson + getWriter", iterations, () ->
+                    response.getWriter().write(gson.toJson(new ApiResponse(true, "조회 성공", reflective))));
+            measure("ApiJson.ok             ", iterations, () ->
+                    ApiJson.ok(response, "조회 성공", writable));
+        }
+    }
+
+    private interface Body {
+        void run() throws IOException;
+    }
+
+    private static void measure(String label, int iterations, Body body) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < iterations / 10; i++) {
+            body.run(); // 워밍업
+        }
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            body.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+        System.out.printf("%s : %8.1f bytes/op, %6.2f us/op%n", label,
+                (double) allocated / iterations, elapsed / 1000.0 / iterations);
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import com.google.gson.Gson;
+
+/**
+ * 벤치마크 공용 실행기입니다. (JMH 와 비슷한 방식: 워밍업 -> 측정 구간 여러 번 -> 평균과 오차)
+ * 구간마다 처리량과 호출 1회당 힙 할당량(ThreadMXBean)을 재고, 결과를 한 줄에 하나씩 JSON 으로 남겨서
+ * BenchCompare 로 커밋 사이의 차이를 비교할 수 있게 합니다.
+ *
+ * 공통 옵션 (시스템 프로퍼티)
+ * - bench.warmup : 워밍업 구간 수 (기본 3), bench.iterations : 측정 구간 수 (기본 5), bench.time : 구간 길이 ms (기본 1000)
+ * - bench.filter : 이름 정규식, 맞는 벤치마크만 실행
+ * - bench.out : 결과 JSON lines 파일 (없으면 콘솔만)
+ * - bench.label : 결과에 같이 남길 이름 (예: 커밋 해시)
+ */
+public final class Bench {
+
+    /** 측정할 코드 1회. 반환값은 JIT 가 계산을 지우지 못하도록 sink 에 넣습니다. */
+    public interface Body {
+        Object run() throws Exception;
+    }
+
+    /** 결과 한 줄 (BenchCompare 가 같은 필드로 읽음) */
+    static class Result {
+        String benchmark;
+        String label;
+        int iterations;
+        double nsPerOp;
+        double nsPerOpError;
+        double opsPerSec;
+        double bytesPerOp;
+    }
+
+    private static final Gson GSON = new Gson();
+    // 결과가 밖으로 나가는 것처럼 보이게 해서 계산/할당이 최적화로 사라지지 않게 합니다.
+    static Object sink;
+
+    private final int warmup = Integer.getInteger("bench.warmup", 3);
+    private final int iterations = Integer.getInteger("bench.iterations", 5);
+    private final long iterationNanos = Long.getLong("bench.time", 1000) * 1_000_000L;
+    private final Pattern filter = Pattern.compile(System.getProperty("bench.filter", ".*"));
+    private final String label = System.getProperty("bench.label", "");
+    private final String out = System.getProperty("bench.out");
+    private final List<Result> results = new ArrayList<>();
+
+    public void run(String name, Body body) throws Exception {
+        if (!filter.matcher(name).find()) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        for (int i = 0; i < warmup; i++) {
+            iteration(body);
+        }
+        double[] nsPerOp = new double[iterations];
+        double bytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+            long[] measured = iteration(body);
+            long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+            nsPerOp[i] = (double) measured[1] / measured[0];
+            bytes += (double) allocated / measured[0];
+        }
+
+        Result r = new Result();
+        r.benchmark = name;
+        r.label = label;
+        r.iterations = iterations;
+        r.nsPerOp = mean(nsPerOp);
+        r.nsPerOpError = stddev(nsPerOp, r.nsPerOp);
+        r.opsPerSec = 1e9 / r.nsPerOp;
+        r.bytesPerOp = bytes / iterations;
+        results.add(r);
+        System.out.printf("%-40s %12.1f ns/op (± %.1f) %14.0f ops/s %12.1f B/op%n",
+                name, r.nsPerOp, r.nsPerOpError, r.opsPerSec, r.bytesPerOp);
+    }
+
+    // 구간 길이만큼 호출을 반복합니다. 시계 호출 비용을 줄이려고 배치 단위로 시간을 봅니다. -> {호출 수, 걸린 ns}
+    private long[] iteration(Body body) throws Exception {
+        long ops = 0;
+        int batch = 1;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < batch; i++) {
+                sink = body.run();
+            }
+            ops += batch;
+            if (batch < 1024) {
+                batch <<= 1;
+            }
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return new long[] { ops, elapsed };
+    }
+
+    /** 모든 벤치마크가 끝난 뒤 결과를 bench.out 파일에 덧붙입니다. */
+    public void finish() throws IOException {
+        if (out == null || results.isEmpty()) {
+            return;
+        }
+        Path path = Paths.get(out);
+        try (Writer w = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (Result r : results) {
+                w.write(GSON.toJson(r));
+                w.write('\n');
+            }
+        }
+        System.out.println("결과 저장: " + path.toAbsolutePath());
+    }
+
+    static List<Result> read(Path path) throws IOException {
+        List<Result> list = new ArrayList<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            if (!line.isBlank()) {
+                list.add(GSON.fromJson(line, Result.class));
+            }
+        }
+        return list;
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) {
+            sum += v;
+        }
+        return sum / values.length;
+    }
+
+    private static double stddev(double[] values, double mean) {
+        if (values.length < 2) {
+            return 0;
+        }
+        double sum = 0;
+        for (double v : values) {
+            sum += (v - mean) * (v - mean);
+        }
+        return Math.sqrt(sum / (values.length - 1));
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.bench;
+
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bench 결과 파일 두 개(JSON lines)를 벤치마크 이름으로 맞춰서 시간/할당 변화를 보여줍니다.
+ * 같은 파일에 여러 번 덧붙였으면 이름마다 마지막 결과를 씁니다.
+ * 시간 또는 할당이 기준보다 threshold% 넘게 나빠진 항목이 있으면 종료 코드 1 로 끝납니다. (CI 에서 회귀 확인용)
+ *
+ * 실행: java -cp classes:lib/* com.example.bench.BenchCompare base.jsonl new.jsonl [threshold%=10]
+ */
+public class BenchCompare {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("사용법: BenchCompare <기준 결과> <새 결과> [허용 %=10]");
+            return;
+        }
+        Map<String, Bench.Result> base = latest(Bench.read(Paths.get(args[0])));
+        Map<String, Bench.Result> next = latest(Bench.read(Paths.get(args[1])));
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+
+        System.out.printf("%-40s %12s %12s %8s %12s %12s %8s%n",
+                "benchmark", "base ns/op", "new ns/op", "diff", "base B/op", "new B/op", "diff");
+        int regressions = 0;
+        for (Map.Entry<String, Bench.Result> e : next.entrySet()) {
+            Bench.Result before = base.get(e.getKey());
+            Bench.Result after = e.getValue();
+            if (before == null) {
+                System.out.printf("%-40s %12s %12.1f %8s %12s %12.1f %8s%n",
+                        e.getKey(), "-", after.nsPerOp, "new", "-", after.bytesPerOp, "new");
+                continue;
+            }
+            double time = percent(before.nsPerOp, after.nsPerOp);
+            double alloc = percent(before.bytesPerOp, after.bytesPerOp);
+            // 측정 오차(표준편차) 안의 시간 변화는 회귀로 보지 않습니다.
+            boolean slower = time > threshold && after.nsPerOp - before.nsPerOp > before.nsPerOpError + after.nsPerOpError;
+            // 할당은 몇 바이트 차이(측정 잡음)를 무시합니다.
+            boolean heavier = alloc > threshold && after.bytesPerOp - before.bytesPerOp > 16;
+            if (slower || heavier) {
+                regressions++;
+            }
+            System.out.printf("%-40s %12.1f %12.1f %+7.1f%% %12.1f %12.1f %+7.1f%%%s%n",
+                    e.getKey(), before.nsPerOp, after.nsPerOp, time, before.bytesPerOp, after.bytesPerOp, alloc,
+                    slower || heavier ? "  <-- 회귀" : "");
+        }
+        System.out.println(regressions == 0 ? "회귀 없음" : "회귀 " + regressions + "건 (허용 " + threshold + "%)");
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Bench.Result> latest(List<Bench.Result> results) {
+        Map<String, Bench.Result> map = new LinkedHashMap<>();
+        for (Bench.Result r : results) {
+            map.put(r.benchmark, r);
+        }
+        return map;
+    }
+
+    private static double percent(double before, double after) {
+        return before == 0 ? (after == 0 ? 0 : 100) : (after - before) / before * 100;
+    }
+}
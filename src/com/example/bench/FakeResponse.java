@@ -0,0 +1,55 @@
+package com.example.bench;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 벤치마크용 가짜 응답 객체입니다. (출력은 버림)
+ * getWriter/getOutputStream 은 Tomcat 처럼 같은 객체를 돌려주고, 나머지 메서드는 아무 일도 하지 않습니다.
+ */
+final class FakeResponse {
+
+    private FakeResponse() {
+    }
+
+    static HttpServletResponse create() {
+        ServletOutputStream stream = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+        };
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(OutputStream.nullOutputStream(), StandardCharsets.UTF_8));
+        return (HttpServletResponse) Proxy.newProxyInstance(FakeResponse.class.getClassLoader(),
+                new Class<?>[] { HttpServletResponse.class }, (proxy, method, methodArgs) -> {
+                    switch (method.getName()) {
+                        case "getOutputStream":
+                            return stream;
+                        case "getWriter":
+                            return writer;
+                        case "isCommitted":
+                            return false;
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
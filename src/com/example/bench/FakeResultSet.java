@@ -0,0 +1,37 @@
+package com.example.bench;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 벤치마크용 가짜 조회 결과입니다. (ApiJson.okRows 에 넘기는 용도)
+ * 행은 컬럼 이름 -> 값 맵이고, next 와 getInt/getString/getBoolean/getTimestamp 같은 이름으로 읽는 메서드만 씁니다.
+ * 앞으로만 읽는 결과라서 돌릴 때마다 of() 로 새로 만듭니다.
+ */
+final class FakeResultSet {
+
+    private FakeResultSet() {
+    }
+
+    static ResultSet of(List<Map<String, Object>> rows) {
+        int[] cursor = { -1 };
+        return (ResultSet) Proxy.newProxyInstance(FakeResultSet.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class }, (proxy, method, methodArgs) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++cursor[0] < rows.size();
+                        case "close":
+                            return null;
+                        case "getInt":
+                        case "getString":
+                        case "getBoolean":
+                        case "getTimestamp":
+                            return rows.get(cursor[0]).get((String) methodArgs[0]);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.bench;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Gemini / Pinecone 대신 띄우는 로컬 가짜 서버입니다. (RagHelper 가 쓰는 API 만 같은 모양으로 흉내냄)
+ * - Gemini: embedContent, batchEmbedContents, generateContent
+ * - Pinecone: /vectors/upsert, /query, /vectors/fetch (메모리에 저장하고 코사인 유사도로 검색)
+ * 임베딩은 문장 해시로 만드는 768차원 벡터라서 같은 문장이면 항상 같은 벡터가 나옵니다.
+ *
+ * 응답 지연은 로그 정규분포(중앙값, p99 로 지정)를 따르고, 정해진 비율로 503 오류를 돌려줍니다.
+ * 지연은 스레드를 재우지 않고 스케줄러로 응답을 미뤄서, 동시 요청이 많아도 가짜 서버가 병목이 되지 않게 합니다.
+ *
+ * 설정 (시스템 프로퍼티, {종류} = embedding | search | generation)
+ * - fake.port (기본 18080)
+ * - fake.{종류}.latency : "중앙값ms:p99ms" (기본 embedding 40:150, search 30:120, generation 800:4000)
+ * - fake.{종류}.errors : 오류 비율 0~1 (기본 0)
+ * - fake.answer.chars : 생성 답변 길이 (기본 600)
+ *
+ * 실행: java -cp classes:lib/* com.example.bench.FakeUpstreams
+ * Tomcat 쪽: GEMINI_BASE_URL=http://localhost:18080 PINECONE_HOST=http://localhost:18080
+ */
+public class FakeUpstreams {
+
+    private static final int DIMENSIONS = 768;
+    private static final Gson GSON = new Gson();
+
+    /** 지연 분포와 오류 비율 */
+    static class Profile {
+        final double mu;
+        final double sigma;
+        final double errorRate;
+
+        Profile(String kind, String defaultLatency) {
+            String[] latency = System.getProperty("fake." + kind + ".latency", defaultLatency).split(":");
+            double median = Double.parseDouble(latency[0]);
+            double p99 = latency.length > 1 ? Double.parseDouble(latency[1]) : median;
+            this.mu = Math.log(Math.max(median, 0.001));
+            // p99 = 중앙값 * e^(2.326 * sigma)
+            this.sigma = Math.log(Math.max(p99, median) / Math.max(median, 0.001)) / 2.326;
+            this.errorRate = Double.parseDouble(System.getProperty("fake." + kind + ".errors", "0"));
+        }
+
+        long delayMillis() {
+            return Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+        }
+
+        boolean fail() {
+            return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+        }
+    }
+
+    private static class StoredVector {
+        final float[] values;
+        final String text;
+        final String kind;
+
+        StoredVector(float[] values, String text, String kind) {
+            this.values = values;
+            this.text = text;
+            this.kind = kind;
+        }
+    }
+
+    private final HttpServer server;
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
+        Thread t = new Thread(r, "fake-upstream-delay");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Profile embedding = new Profile("embedding", "40:150");
+    private final Profile search = new Profile("search", "30:120");
+    private final Profile generation = new Profile("generation", "800:4000");
+    private final int answerChars = Integer.getInteger("fake.answer.chars", 600);
+    private final Map<String, StoredVector> vectors = new ConcurrentHashMap<>();
+
+    public FakeUpstreams(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 256);
+        server.setExecutor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread t = new Thread(r, "fake-upstream");
+            t.setDaemon(true);
+            return t;
+        }));
+        server.createContext("/", this::handle);
+    }
+
+    public static void main(String[] args) throws Exception {
+        FakeUpstreams fake = new FakeUpstreams(Integer.getInteger("fake.port", 18080)).start();
+        System.out.println("가짜 Gemini/Pinecone 서버 시작: http://localhost:" + fake.port());
+        Thread.currentThread().join();
+    }
+
+    public FakeUpstreams start() {
+        server.start();
+        return this;
+    }
+
+    public void stop() {
+        server.stop(0);
+        scheduler.shutdownNow();
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        Profile profile;
+        String body;
+        try {
+            if (path.endsWith(":embedContent")) {
+                profile = embedding;
+                body = embed(readJson(exchange));
+            } else if (path.endsWith(":batchEmbedContents")) {
+                profile = embedding;
+                body = batchEmbed(readJson(exchange));
+            } else if (path.endsWith(":generateContent")) {
+                profile = generation;
+                body = generate(readJson(exchange));
+            } else if (path.equals("/vectors/upsert")) {
+                profile = search;
+                body = upsert(readJson(exchange));
+            } else if (path.equals("/query")) {
+                profile = search;
+                body = query(readJson(exchange));
+            } else if (path.equals("/vectors/fetch")) {
+                profile = search;
+                body = fetch(exchange.getRequestURI().getRawQuery());
+            } else {
+                send(exchange, 404, "{\"error\":\"not found\"}");
+                return;
+            }
+        } catch (RuntimeException e) {
+            send(exchange, 400, "{\"error\":" + GSON.toJson(String.valueOf(e.getMessage())) + "}");
+            return;
+        }
+        boolean fail = profile.fail();
+        String response = fail ? "{\"error\":{\"code\":503,\"message\":\"fake upstream error\"}}" : body;
+        scheduler.schedule(() -> {
+            try {
+                send(exchange, fail ? 503 : 200, response);
+            } catch (IOException e) {
+                exchange.close();
+            }
+        }, profile.delayMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static JsonObject readJson(HttpExchange exchange) throws IOException {
+        try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            return JsonParser.parseReader(reader).getAsJsonObject();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // --- Gemini ---
+
+    private String embed(JsonObject request) {
+        String text = firstPartText(request.getAsJsonObject("content"));
+        return "{\"embedding\":{\"values\":" + values(vectorOf(text)) + "}}";
+    }
+
+    private String batchEmbed(JsonObject request) {
+        StringBuilder sb = new StringBuilder("{\"embeddings\":[");
+        JsonArray requests = request.getAsJsonArray("requests");
+        for (int i = 0; i < requests.size(); i++) {
+            String text = firstPartText(requests.get(i).getAsJsonObject().getAsJsonObject("content"));
+            sb.append(i == 0 ? "" : ",").append("{\"values\":").append(values(vectorOf(text))).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private String generate(JsonObject request) {
+        String prompt = firstPartText(request.getAsJsonArray("contents").get(0).getAsJsonObject());
+        StringBuilder answer = new StringBuilder("(가짜 답변) ");
+        while (answer.length() < answerChars) {
+            answer.append("질문 길이 ").append(prompt.length()).append("자에 대한 테스트 응답입니다. ");
+        }
+        JsonObject text = new JsonObject();
+        text.addProperty("text", answer.substring(0, answerChars));
+        return "{\"candidates\":[{\"content\":{\"parts\":[" + text + "],\"role\":\"model\"},"
+                + "\"finishReason\":\"STOP\",\"index\":0}],\"modelVersion\":\"fake\"}";
+    }
+
+    private static String firstPartText(JsonObject content) {
+        return content.getAsJsonArray("parts").get(0).getAsJsonObject().get("text").getAsString();
+    }
+
+    // --- Pinecone ---
+
+    private String upsert(JsonObject request) {
+        JsonArray list = request.getAsJsonArray("vectors");
+        for (JsonElement e : list) {
+            JsonObject v = e.getAsJsonObject();
+            JsonArray values = v.getAsJsonArray("values");
+            float[] floats = new float[values.size()];
+            for (int i = 0; i < floats.length; i++) {
+                floats[i] = values.get(i).getAsFloat();
+            }
+            JsonObject metadata = v.getAsJsonObject("metadata");
+            String text = metadata != null && metadata.has("text") ? metadata.get("text").getAsString() : null;
+            String kind = metadata != null && metadata.has("kind") ? metadata.get("kind").getAsString() : null;
+            vectors.put(v.get("id").getAsString(), new StoredVector(floats, text, kind));
+        }
+        return "{\"upsertedCount\":" + list.size() + "}";
+    }
+
+    private String query(JsonObject request) throws IOException {
+        JsonArray values = request.getAsJsonArray("vector");
+        float[] q = new float[values.size()];
+        for (int i = 0; i < q.length; i++) {
+            q[i] = values.get(i).getAsFloat();
+        }
+        int topK = request.has("topK") ? request.get("topK").getAsInt() : 3;
+        boolean includeMetadata = request.has("includeMetadata") && request.get("includeMetadata").getAsBoolean();
+        // 메타데이터 필터는 RagHelper 가 쓰는 {"kind":{"$eq":..}} 만 흉내 냅니다.
+        String kind = null;
+        if (request.has("filter") && request.getAsJsonObject("filter").has("kind")) {
+            kind = request.getAsJsonObject("filter").getAsJsonObject("kind").get("$eq").getAsString();
+        }
+
+        List<Map.Entry<String, StoredVector>> all = new ArrayList<>();
+        for (Map.Entry<String, StoredVector> e : vectors.entrySet()) {
+            if (kind == null || kind.equals(e.getValue().kind)) {
+                all.add(e);
+            }
+        }
+        double[] scores = new double[all.size()];
+        Integer[] order = new Integer[all.size()];
+        for (int i = 0; i < all.size(); i++) {
+            scores[i] = cosine(q, all.get(i).getValue().values);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+
+        StringWriter out = new StringWriter();
+        JsonWriter w = new JsonWriter(out);
+        w.beginObject().name("matches").beginArray();
+        for (int i = 0; i < Math.min(topK, order.length); i++) {
+            Map.Entry<String, StoredVector> e = all.get(order[i]);
+            w.beginObject().name("id").value(e.getKey()).name("score").value(scores[order[i]]);
+            if (includeMetadata && e.getValue().text != null) {
+                w.name("metadata").beginObject().name("text").value(e.getValue().text).endObject();
+            }
+            w.endObject();
+        }
+        w.endArray().name("namespace").value("").endObject();
+        return out.toString();
+    }
+
+    private String fetch(String rawQuery) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter w = new JsonWriter(out);
+        w.beginObject().name("vectors").beginObject();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                if (!pair.startsWith("ids=")) {
+                    continue;
+                }
+                String id = URLDecoder.decode(pair.substring(4), StandardCharsets.UTF_8);
+                StoredVector v = vectors.get(id);
+                if (v != null) {
+                    w.name(id).beginObject().name("id").value(id);
+                    if (v.text != null) {
+                        w.name("metadata").beginObject().name("text").value(v.text).endObject();
+                    }
+                    w.endObject();
+                }
+            }
+        }
+        w.endObject().endObject();
+        return out.toString();
+    }
+
+    // 같은 문장 -> 같은 단위 벡터
+    private static float[] vectorOf(String text) {
+        Random random = new Random(text.hashCode());
+        float[] v = new float[DIMENSIONS];
+        double norm = 0;
+        for (int i = 0; i < v.length; i++) {
+            v[i] = (float) random.nextGaussian();
+            norm += v[i] * v[i];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < v.length; i++) {
+            v[i] *= scale;
+        }
+        return v;
+    }
+
+    private static String values(float[] v) {
+        StringBuilder sb = new StringBuilder(v.length * 12).append('[');
+        for (int i = 0; i < v.length; i++) {
+            sb.append(i == 0 ? "" : ",").append(v[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        int n = Math.min(a.length, b.length);
+        double dot = 0, na = 0, nb = 0;
+        for (int i = 0; i < n; i++) {
+            dot += a[i] * b[i];
+            na += a[i] * a[i];
+            nb += b[i] * b[i];
+        }
+        return na == 0 || nb == 0 ? 0 : dot / Math.sqrt(na * nb);
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.bench;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import javax.servlet.http.HttpServletResponse;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+import com.example.servlet.ApiJson;
+import com.example.servlet.GptApiServlet;
+import com.example.servlet.LinkApiServlet;
+import com.example.servlet.TodoApiServlet;
+import com.example.util.ContextAssembler;
+import com.example.util.ConversationMemory;
+import com.example.util.RagHelper;
+import com.example.util.SearchHit;
+
+/**
+ * 요청 경로에서 자주 도는 코드의 벤치마크 모음입니다. (네트워크/DB 없이 CPU 와 할당만 측정)
+ * - rag.* : RagHelper 의 임베딩/검색/생성 요청 JSON 만들기와 응답 파싱 (768차원 벡터, 실제 API 와 같은 모양)
+ * - api.* : 각 서블릿 응답(ApiJson) 직렬화, 목록 크기별
+ *   (할 일/링크/질문 내역은 서블릿과 같이 ApiJson.okRows + 서블릿의 LIST_ROW 로, 조회 결과는 FakeResultSet)
+ * - gpt.prompt : 검색 결과로 문맥을 채우고 이전 대화와 함께 프롬프트를 만드는 부분
+ *
+ * 실행: java -Dbench.out=bench.jsonl -Dbench.label=$(git rev-parse --short HEAD) \
+ *         -cp classes:lib/* com.example.bench.HotPathBench
+ * 비교: java -cp classes:lib/* com.example.bench.BenchCompare base.jsonl bench.jsonl
+ */
+public class HotPathBench {
+
+    private static final int DIMENSIONS = 768;
+
+    // 암기 항목은 아직 목록(ApiJson.ok)으로 응답하므로 서블릿 DTO 와 같은 필드/순서로 씁니다. (서블릿 쪽 클래스는 private)
+    private static class MemorizeItem implements ApiJson.Writable {
+        int id; String item_text; boolean is_memorized;
+
+        @Override
+        public void writeJson(JsonWriter out) throws IOException {
+            out.beginObject();
+            out.name("id").value(id);
+            out.name("item_text").value(item_text);
+            out.name("is_memorized").value(is_memorized);
+            out.endObject();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Bench bench = new Bench();
+        Random random = new Random(42);
+
+        // --- RagHelper 요청/응답 JSON ---
+        List<Double> vector = randomVector(random);
+        String question = "VPC 에서 퍼블릭 서브넷과 프라이빗 서브넷의 라우팅 테이블 차이는?";
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            texts.add("## 문서 " + i + "\n" + paragraph(i));
+        }
+        String embeddingResponse = embeddingResponse(vector);
+        String batchResponse = batchEmbeddingResponse(random, texts.size());
+        String queryResponse = queryResponse(3);
+        String prompt = paragraph(0) + paragraph(1) + paragraph(2) + question;
+        String generationResponse = generationResponse(paragraph(3) + paragraph(4));
+
+        bench.run("rag.embeddingBody", () -> RagHelper.embeddingBody(question));
+        bench.run("rag.parseEmbedding", () -> RagHelper.parseEmbedding(new StringReader(embeddingResponse)));
+        bench.run("rag.batchEmbeddingBody[16]", () -> RagHelper.batchEmbeddingBody(texts));
+        bench.run("rag.parseEmbeddings[16]", () -> RagHelper.parseEmbeddings(new StringReader(batchResponse)));
+        bench.run("rag.queryBody", () -> RagHelper.queryBody(vector, 3, true));
+        bench.run("rag.parseQueryHits[3]", () -> RagHelper.parseQueryHits(new StringReader(queryResponse), null, new ArrayList<>()));
+        bench.run("rag.generationBody", () -> RagHelper.generationBody(prompt));
+        bench.run("rag.parseGeneration", () -> RagHelper.parseGeneration(new StringReader(generationResponse)));
+
+        // --- 서블릿 응답 직렬화 (목록 크기별) ---
+        HttpServletResponse response = FakeResponse.create();
+        for (int size : new int[] { 10, 100, 1000 }) {
+            List<Map<String, Object>> todos = new ArrayList<>();
+            List<Map<String, Object>> links = new ArrayList<>();
+            List<MemorizeItem> memorize = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                Map<String, Object> t = new HashMap<>();
+                t.put("id", i);
+                t.put("task", "AWS 수업 복습 " + i + " - VPC 서브넷/라우팅 테이블 정리");
+                t.put("is_completed", i % 3 == 0);
+                todos.add(t);
+                Map<String, Object> l = new HashMap<>();
+                l.put("id", i);
+                l.put("username", "student01");
+                l.put("link_name", "참고 자료 " + i);
+                l.put("url", "https://docs.aws.amazon.com/vpc/latest/userguide/page-" + i + ".html?lang=ko&a=1");
+                links.add(l);
+                MemorizeItem m = new MemorizeItem();
+                m.id = i;
+                m.item_text = "CIDR 블록 " + i + " : 10.0." + i % 256 + ".0/24 <서브넷> & 라우팅";
+                m.is_memorized = i % 2 == 0;
+                memorize.add(m);
+            }
+            bench.run("api.todo[" + size + "]", () -> {
+                ApiJson.okRows(response, "조회 성공", FakeResultSet.of(todos), TodoApiServlet.LIST_ROW);
+                return null;
+            });
+            bench.run("api.link[" + size + "]", () -> {
+                ApiJson.okRows(response, "조회 성공", FakeResultSet.of(links), LinkApiServlet.LIST_ROW);
+                return null;
+            });
+            bench.run("api.memorize[" + size + "]", () -> {
+                ApiJson.ok(response, "조회 성공", memorize);
+                return null;
+            });
+        }
+        // 질문 내역은 답변이 길어서 항목 수를 작게 봅니다.
+        for (int size : new int[] { 10, 50 }) {
+            List<Map<String, Object>> history = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                Map<String, Object> h = new HashMap<>();
+                h.put("id", i);
+                h.put("question", question);
+                h.put("answer", paragraph(i) + paragraph(i + 1));
+                h.put("created_at", Timestamp.valueOf("2026-10-19 12:00:" + String.format("%02d", i % 60)));
+                history.add(h);
+            }
+            bench.run("api.gptHistory[" + size + "]", () -> {
+                ApiJson.okRows(response, "조회 성공", FakeResultSet.of(history), GptApiServlet.LIST_ROW);
+                return null;
+            });
+        }
+        String memo = paragraph(0) + paragraph(1) + paragraph(2) + paragraph(3);
+        bench.run("api.memo", () -> {
+            ApiJson.write(response, HttpServletResponse.SC_OK, true, "조회 성공", "content", memo);
+            return null;
+        });
+
+        // --- 프롬프트 구성 ---
+        List<SearchHit> hits = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            hits.add(new SearchHit("doc_" + i + ".md", paragraph(i) + paragraph(i + 5), 0.9 - i * 0.1));
+        }
+        List<ConversationMemory.Turn> turns = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            turns.add(new ConversationMemory.Turn("이전 질문 " + i + " : NAT 게이트웨이는 어디에 두나요?", paragraph(i)));
+        }
+        bench.run("gpt.prompt", () -> GptApiServlet.buildPrompt(question,
+                ContextAssembler.assemble(hits).context, turns));
+        bench.run("gpt.prompt[noHistory]", () -> GptApiServlet.buildPrompt(question,
+                ContextAssembler.assemble(hits).context, Collections.emptyList()));
+
+        bench.finish();
+    }
+
+    private static String paragraph(int seed) {
+        return "퍼블릭 서브넷 " + seed + " 은 인터넷 게이트웨이로 가는 0.0.0.0/0 경로가 있는 라우팅 테이블과 연결되고, "
+                + "프라이빗 서브넷은 NAT 게이트웨이를 거쳐 밖으로 나갑니다. 보안 그룹은 상태 저장(stateful), "
+                + "네트워크 ACL 은 상태 비저장(stateless)이라서 돌아오는 트래픽 규칙도 따로 열어야 합니다.\n";
+    }
+
+    private static List<Double> randomVector(Random random) {
+        List<Double> v = new ArrayList<>(DIMENSIONS);
+        for (int i = 0; i < DIMENSIONS; i++) {
+            v.add(random.nextGaussian() * 0.05);
+        }
+        return v;
+    }
+
+    private static String values(List<Double> vector) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < vector.size(); i++) {
+            sb.append(i == 0 ? "" : ", ").append(vector.get(i));
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String embeddingResponse(List<Double> vector) {
+        return "{\n  \"embedding\": {\n    \"values\": " + values(vector) + "\n  }\n}\n";
+    }
+
+    private static String batchEmbeddingResponse(Random random, int count) {
+        StringBuilder sb = new StringBuilder("{\n  \"embeddings\": [");
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "\n" : ",\n").append("    { \"values\": ").append(values(randomVector(random))).append(" }");
+        }
+        return sb.append("\n  ]\n}\n").toString();
+    }
+
+    private static String queryResponse(int matches) {
+        StringBuilder sb = new StringBuilder("{\"results\":[],\"matches\":[");
+        for (int i = 0; i < matches; i++) {
+            sb.append(i == 0 ? "" : ",").append("{\"id\":\"doc_").append(i).append(".md\",\"score\":0.8")
+                    .append(i).append(",\"values\":[],\"metadata\":{\"text\":")
+                    .append(new JsonPrimitive(paragraph(i) + paragraph(i + 1))).append("}}");
+        }
+        return sb.append("],\"namespace\":\"\",\"usage\":{\"readUnits\":6}}").toString();
+    }
+
+    private static String generationResponse(String answer) {
+        return "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":" + new JsonPrimitive(answer)
+                + "}],\"role\":\"model\"},\"finishReason\":\"STOP\",\"index\":0}],"
+                + "\"usageMetadata\":{\"promptTokenCount\":512,\"candidatesTokenCount\":128,\"totalTokenCount\":640},"
+                + "\"modelVersion\":\"gemini-2.5-flash\"}";
+    }
+}
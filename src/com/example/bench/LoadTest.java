@@ -0,0 +1,357 @@
+package com.example.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import com.google.gson.Gson;
+
+/**
+ * 로컬 Tomcat 에 대시보드/CRUD/질문 요청을 섞어서 보내는 부하 발생기입니다.
+ * 가상 사용자마다 회원가입 -> 로그인으로 세션을 만들고, 정해진 비율로 시나리오를 골라 반복합니다.
+ * - dashboard : dashboard.jsp + 할 일/링크/메모 목록 (페이지 한 번 여는 것처럼 이어서 요청, 합계 시간 기록)
+ * - crud : 할 일 추가/완료/삭제, 링크 추가, 메모 저장 중 하나
+ * - chat : POST /api/gpt (Gemini/Pinecone 대신 FakeUpstreams 를 쓰면 할당량을 쓰지 않음)
+ *
+ * 사용자당 초당 요청 수(load.rate)를 주면 개방형(open loop)으로 보내고, 지연은 "보냈어야 할 시각"부터 잽니다.
+ * (서버가 느려져서 요청을 늦게 보낸 만큼도 지연에 포함 - coordinated omission 보정)
+ * 끝나면 시나리오별 처리량, 오류/거절(429, 503) 수, p50/p99/p999 를 출력하고, load.out 에 JSON 한 줄로 남깁니다.
+ *
+ * 설정 (시스템 프로퍼티)
+ * - load.base : 대상 주소 (기본 http://localhost:8080)
+ * - load.users : 가상 사용자 수 (기본 20), load.duration : 측정 시간 초 (기본 60), load.warmup : 워밍업 초 (기본 10)
+ * - load.mix : 시나리오 비율 (기본 dashboard=50,crud=40,chat=10)
+ * - load.rate : 사용자당 초당 시나리오 수 (기본 0 = 응답 받자마자 다음 요청, closed loop)
+ * - load.fakeUpstreams : true 면 이 프로세스 안에 FakeUpstreams 를 띄움 (Tomcat 은 GEMINI_BASE_URL/PINECONE_HOST 로 가리킬 것)
+ * - load.out : 결과 JSON lines 파일, load.label : 결과에 같이 남길 이름
+ *
+ * DB 는 Tomcat 의 DB_URL 이 가리키는 곳을 씁니다. 디스크 영향을 빼려면 MySQL 을 tmpfs 로 띄워서 쓰세요.
+ * (예: docker run --tmpfs /var/lib/mysql -e MYSQL_ROOT_PASSWORD=.. mysql:8)
+ *
+ * 실행: java -Dload.users=50 -Dload.fakeUpstreams=true -cp classes:lib/* com.example.bench.LoadTest
+ */
+public class LoadTest {
+
+    private static final String BASE = System.getProperty("load.base", "http://localhost:8080");
+    private static final Gson GSON = new Gson();
+
+    /** 시나리오별 지연 기록 (가상 사용자 스레드 하나가 하나씩 가짐 -> 끝나고 합침) */
+    static class Recorder {
+        long[] latencies = new long[1024];
+        int count;
+        int errors;
+        int shed;
+
+        void record(long nanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+
+        void merge(Recorder other) {
+            for (int i = 0; i < other.count; i++) {
+                record(other.latencies[i]);
+            }
+            errors += other.errors;
+            shed += other.shed;
+        }
+
+        double percentileMillis(double p) {
+            if (count == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * count) - 1;
+            return latencies[Math.max(0, Math.min(count - 1, index))] / 1e6;
+        }
+    }
+
+    /** 결과 한 줄 (시나리오별) */
+    static class Summary {
+        String label;
+        String scenario;
+        int users;
+        long durationSec;
+        int count;
+        int errors;
+        int shed;
+        double throughput;
+        double p50Ms;
+        double p99Ms;
+        double p999Ms;
+        double maxMs;
+    }
+
+    private static final String[] SCENARIOS = { "dashboard", "crud", "chat" };
+
+    private final HttpClient client;
+    private final String username;
+    private final Map<String, Recorder> recorders = new LinkedHashMap<>();
+    private final List<Integer> todoIds = new ArrayList<>();
+
+    LoadTest(String username) {
+        this.username = username;
+        this.client = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        for (String s : SCENARIOS) {
+            recorders.put(s, new Recorder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int users = Integer.getInteger("load.users", 20);
+        long durationSec = Long.getLong("load.duration", 60);
+        long warmupSec = Long.getLong("load.warmup", 10);
+        double rate = Double.parseDouble(System.getProperty("load.rate", "0"));
+        int[] mix = parseMix(System.getProperty("load.mix", "dashboard=50,crud=40,chat=10"));
+
+        FakeUpstreams fake = null;
+        if (Boolean.getBoolean("load.fakeUpstreams")) {
+            fake = new FakeUpstreams(Integer.getInteger("fake.port", 18080)).start();
+            System.out.println("FakeUpstreams: http://localhost:" + fake.port());
+        }
+
+        String runId = Long.toHexString(System.currentTimeMillis());
+        List<LoadTest> vus = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            LoadTest vu = new LoadTest("load_" + runId + "_" + i);
+            vu.login();
+            vus.add(vu);
+        }
+        System.out.printf("대상 %s, 사용자 %d명, 워밍업 %d초 + 측정 %d초, 비율 %s, 사용자당 %s%n", BASE, users, warmupSec,
+                durationSec, Arrays.toString(mix), rate > 0 ? rate + "회/초" : "closed loop");
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmupSec * 1_000_000_000L;
+        long end = measureFrom + durationSec * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(users);
+        for (LoadTest vu : vus) {
+            Thread t = new Thread(() -> {
+                try {
+                    vu.loop(mix, rate, measureFrom, end);
+                } finally {
+                    done.countDown();
+                }
+            }, "vu-" + vu.username);
+            t.setDaemon(true);
+            t.start();
+        }
+        done.await();
+
+        Writer out = System.getProperty("load.out") == null ? null : Files.newBufferedWriter(
+                Paths.get(System.getProperty("load.out")), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        System.out.printf("%-10s %8s %7s %6s %10s %9s %9s %9s %9s%n",
+                "scenario", "count", "errors", "shed", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (String scenario : SCENARIOS) {
+            Recorder all = new Recorder();
+            for (LoadTest vu : vus) {
+                all.merge(vu.recorders.get(scenario));
+            }
+            Arrays.sort(all.latencies, 0, all.count);
+            Summary s = new Summary();
+            s.label = System.getProperty("load.label", "");
+            s.scenario = scenario;
+            s.users = users;
+            s.durationSec = durationSec;
+            s.count = all.count;
+            s.errors = all.errors;
+            s.shed = all.shed;
+            s.throughput = (double) all.count / durationSec;
+            s.p50Ms = all.percentileMillis(0.50);
+            s.p99Ms = all.percentileMillis(0.99);
+            s.p999Ms = all.percentileMillis(0.999);
+            s.maxMs = all.percentileMillis(1.0);
+            System.out.printf("%-10s %8d %7d %6d %10.1f %9.1f %9.1f %9.1f %9.1f%n", scenario, s.count, s.errors,
+                    s.shed, s.throughput, s.p50Ms, s.p99Ms, s.p999Ms, s.maxMs);
+            if (out != null) {
+                out.write(GSON.toJson(s));
+                out.write('\n');
+            }
+        }
+        if (out != null) {
+            out.close();
+        }
+        if (fake != null) {
+            fake.stop();
+        }
+    }
+
+    // "dashboard=50,crud=40,chat=10" -> SCENARIOS 순서의 누적 비율
+    private static int[] parseMix(String spec) {
+        int[] weights = new int[SCENARIOS.length];
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split("=");
+            int index = Arrays.asList(SCENARIOS).indexOf(kv[0]);
+            if (index < 0) {
+                throw new IllegalArgumentException("알 수 없는 시나리오: " + kv[0]);
+            }
+            weights[index] = Integer.parseInt(kv[1]);
+        }
+        return weights;
+    }
+
+    private void loop(int[] mix, double rate, long measureFrom, long end) {
+        int total = 0;
+        for (int w : mix) {
+            total += w;
+        }
+        long interval = rate > 0 ? (long) (1_000_000_000L / rate) : 0;
+        long intended = System.nanoTime();
+        while (true) {
+            long now = System.nanoTime();
+            if (now >= end) {
+                return;
+            }
+            if (interval > 0) {
+                // 개방형: 예정 시각까지 기다리고, 이미 늦었으면 바로 보냅니다. (지연은 예정 시각부터)
+                if (intended > now) {
+                    LockSupport.parkNanos(intended - now);
+                }
+            } else {
+                intended = now;
+            }
+            int pick = ThreadLocalRandom.current().nextInt(total);
+            int scenario = 0;
+            while (pick >= mix[scenario]) {
+                pick -= mix[scenario++];
+            }
+            Recorder recorder = recorders.get(SCENARIOS[scenario]);
+            int status;
+            try {
+                status = run(SCENARIOS[scenario]);
+            } catch (Exception e) {
+                status = -1;
+            }
+            long finished = System.nanoTime();
+            if (intended >= measureFrom && finished < end) {
+                recorder.record(finished - intended);
+                if (status == 429 || status == 503) {
+                    recorder.shed++;
+                } else if (status != 200) {
+                    recorder.errors++;
+                }
+            }
+            intended += interval;
+        }
+    }
+
+    // 시나리오를 실행하고 가장 나쁜 응답 코드를 돌려줍니다. (성공이면 200)
+    private int run(String scenario) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (scenario) {
+            case "dashboard":
+                return worst(get("/dashboard.jsp"), get("/api/todo"), get("/api/links"), get("/api/memo"));
+            case "crud":
+                switch (random.nextInt(5)) {
+                    case 0:
+                        return send("POST", "/api/todo", "{\"task\":\"부하 테스트 할 일 " + random.nextInt(1000) + "\"}");
+                    case 1:
+                        return todoIds.isEmpty() ? get("/api/todo") : send("PUT", "/api/todo",
+                                "{\"id\":" + todoIds.get(random.nextInt(todoIds.size())) + ",\"is_completed\":true}");
+                    case 2:
+                        return todoIds.isEmpty() ? get("/api/todo")
+                                : send("DELETE", "/api/todo?id=" + todoIds.remove(todoIds.size() - 1), null);
+                    case 3:
+                        return send("POST", "/api/links", "{\"link_name\":\"문서\",\"url\":\"https://example.com/"
+                                + random.nextInt(1000) + "\"}");
+                    default:
+                        return send("POST", "/api/memo", "{\"content\":\"부하 테스트 메모 " + random.nextInt(1000) + "\"}");
+                }
+            default:
+                String[] questions = {
+                    "VPC 에서 퍼블릭 서브넷과 프라이빗 서브넷의 차이는?",
+                    "보안 그룹과 네트워크 ACL 의 차이를 알려줘",
+                    "S3 버킷 정책과 IAM 정책은 어떻게 다르지?",
+                    "쿠버네티스 Service 타입별 차이는?"
+                };
+                return send("POST", "/api/gpt", "{\"prompt\":\"" + questions[random.nextInt(questions.length)] + "\"}");
+        }
+    }
+
+    private static int worst(int... statuses) {
+        int worst = 200;
+        for (int s : statuses) {
+            if (s != 200) {
+                worst = s;
+            }
+        }
+        return worst;
+    }
+
+    private int get(String path) throws IOException, InterruptedException {
+        return send("GET", path, null);
+    }
+
+    private int send(String method, String path, String json) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(BASE + path)).timeout(Duration.ofSeconds(60));
+        if (json == null) {
+            builder.method(method, HttpRequest.BodyPublishers.noBody());
+        } else {
+            builder.header("Content-Type", "application/json; charset=UTF-8")
+                    .method(method, HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8));
+        }
+        HttpResponse<String> response = client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() == 200 && response.body().contains("\"success\":false")) {
+            return 500;
+        }
+        if ("POST".equals(method) && "/api/todo".equals(path) && response.statusCode() == 200) {
+            // {"success":true,"message":"추가 성공","data":{"id":123,...}}
+            int at = response.body().indexOf("\"id\":");
+            if (at >= 0) {
+                int from = at + 5;
+                int to = from;
+                while (to < response.body().length() && Character.isDigit(response.body().charAt(to))) {
+                    to++;
+                }
+                if (to > from) {
+                    todoIds.add(Integer.parseInt(response.body().substring(from, to)));
+                }
+            }
+        }
+        return response.statusCode();
+    }
+
+    private void login() throws IOException, InterruptedException {
+        String password = "load-test-pw";
+        form("/signup", "email", username + "@load.test", "name", "부하테스트", "username", username,
+                "password", password, "birthdate", "2000-01-01");
+        HttpResponse<String> response = form("/login", "username", username, "password", password);
+        if (!response.body().contains("\"success\":true")) {
+            throw new IllegalStateException(username + " 로그인 실패: " + response.body());
+        }
+    }
+
+    private HttpResponse<String> form(String path, String... fields) throws IOException, InterruptedException {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i + 1 < fields.length; i += 2) {
+            body.append(i == 0 ? "" : "&").append(fields[i]).append('=')
+                    .append(URLEncoder.encode(fields[i + 1], StandardCharsets.UTF_8));
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(BASE + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString(), StandardCharsets.UTF_8))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,449 @@
+package com.example.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import com.example.servlet.DatabaseConfig;
+import com.example.util.Env;
+import com.example.util.KnowledgeBase;
+import com.example.util.RagHelper;
+import com.example.util.SearchHit;
+import com.example.util.SingleFlight;
+import com.google.gson.Gson;
+
+/**
+ * 검색(retrieval) 품질과 지연 시간을 재는 오프라인 평가 도구입니다.
+ * 정답이 달린 질문 목록을 검색 경로(backend)에 그대로 다시 보내서 recall@k, MRR, 지연 시간 분위수를 구하고,
+ * 결과를 JSON 한 줄로 남겨서 두 실행(예: 청크/캐시/벡터 저장소 변경 전후)을 비교합니다.
+ *
+ * 1. seed : gpt_history 에서 많이 나온 질문을 골라 질문 파일(JSON lines)을 만듭니다.
+ *           정답(relevant)은 지금 검색 경로의 1등 문서로 미리 채워 두므로 사람이 보고 고쳐야 합니다. (reviewed=false)
+ *    {"query":"TCP 3-way handshake","relevant":["network-tcp"],"count":12,"reviewed":false}
+ * 2. run : 질문 파일을 backend 에 보냅니다.
+ *    - keyword : 서버 안 BM25 색인 (KnowledgeBase.keywordIndex)
+ *    - vector  : 로컬 벡터 스냅샷이 있으면 그것, 없으면 Pinecone (RagHelper.searchVectors)
+ *    - pinecone: Pinecone 만 (RagHelper.searchPineconeHits)
+ *    - hybrid  : 실제 질문 경로 (RagHelper.retrieve, 기본값)
+ *    질문 임베딩은 시간을 재기 전에 한 번씩 구해 두므로 지연 시간은 backend 만의 시간입니다. (임베딩 시간은 따로 출력)
+ * 3. compare : 두 결과 파일을 backend 이름으로 맞춰서 비교합니다.
+ *    recall@k / MRR 이 허용치보다 떨어졌거나 p99 가 허용 %보다 느려졌으면 종료 코드 1 로 끝납니다. (CI 에서 회귀 확인용)
+ *
+ * 설정 (시스템 프로퍼티)
+ * - eval.k : recall 을 볼 k 목록 (기본 1,3,5 - 검색 결과 수는 RAG_TOP_K 이므로 큰 k 를 보려면 같이 올림)
+ * - eval.warmup : 재지 않고 먼저 돌릴 횟수 (기본 1), eval.repeat : 지연 시간을 잴 반복 횟수 (기본 3)
+ * - eval.out : 결과 JSON lines 파일 (없으면 콘솔만), eval.label : 결과에 같이 남길 이름 (예: 커밋 해시)
+ * - eval.seed.history : seed 때 읽을 최근 질문 수 (기본 5000)
+ *
+ * 실행: java -cp classes:lib/* com.example.bench.RetrievalEval seed queries.jsonl [질문 수=200]
+ *       java -cp classes:lib/* com.example.bench.RetrievalEval run queries.jsonl [backend=hybrid]
+ *       java -cp classes:lib/* com.example.bench.RetrievalEval compare base.jsonl new.jsonl [허용 %p=1] [허용 지연 %=20]
+ */
+public class RetrievalEval {
+
+    private static final Gson GSON = new Gson();
+    private static final String[] BACKENDS = { "keyword", "vector", "pinecone", "hybrid" };
+
+    /** 질문 파일 한 줄 */
+    static class Query {
+        String query;
+        List<String> relevant;
+        int count;
+        boolean reviewed;
+    }
+
+    /** 실행 결과 한 줄 (compare 가 같은 필드로 읽음) */
+    static class Result {
+        String label;
+        String backend;
+        String queryFile;
+        int queries;
+        int errors;
+        int[] k;
+        double[] recall;
+        double mrr;
+        double p50Ms;
+        double p90Ms;
+        double p99Ms;
+        double maxMs;
+        double embedP50Ms;
+        // 질문별 첫 정답 순위 (1부터, 못 찾았으면 0) - compare 에서 나빠진 질문을 보여줌
+        Map<String, Integer> ranks;
+    }
+
+    /** 검색 경로 하나 (embedding 은 keyword 에서는 null) */
+    private interface Backend {
+        List<SearchHit> search(String query, List<Double> embedding) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("사용법: RetrievalEval seed <질문 파일> [질문 수=200]");
+            System.out.println("        RetrievalEval run <질문 파일> [backend=hybrid] (" + String.join(", ", BACKENDS) + ")");
+            System.out.println("        RetrievalEval compare <기준 결과> <새 결과> [허용 %p=1] [허용 지연 %=20]");
+            return;
+        }
+        switch (args[0]) {
+            case "seed":
+                seed(Paths.get(args[1]), args.length > 2 ? Integer.parseInt(args[2]) : 200);
+                break;
+            case "run":
+                run(Paths.get(args[1]), args.length > 2 ? args[2] : "hybrid");
+                break;
+            case "compare":
+                if (args.length < 3) {
+                    System.out.println("compare 에는 결과 파일 두 개가 필요합니다.");
+                    return;
+                }
+                boolean regressed = compare(Paths.get(args[1]), Paths.get(args[2]),
+                        args.length > 3 ? Double.parseDouble(args[3]) : 1,
+                        args.length > 4 ? Double.parseDouble(args[4]) : 20);
+                if (regressed) {
+                    System.exit(1);
+                }
+                break;
+            default:
+                System.out.println("알 수 없는 명령: " + args[0]);
+        }
+    }
+
+    // --- seed ---
+
+    private static void seed(Path out, int limit) throws Exception {
+        // 정규화한 질문별 횟수 (대표 문장은 처음 본 원문)
+        Map<String, String> original = new LinkedHashMap<>();
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        String sql = "SELECT question FROM gpt_history ORDER BY id DESC LIMIT ?";
+        try (Connection conn = DatabaseConfig.getConnection();
+                PreparedStatement ps = DatabaseConfig.prepareStreaming(conn, sql)) {
+            ps.setInt(1, Integer.getInteger("eval.seed.history", 5000));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String question = rs.getString("question");
+                    if (question == null || question.isBlank()) {
+                        continue;
+                    }
+                    String key = SingleFlight.normalize(question);
+                    original.putIfAbsent(key, question.trim());
+                    counts.merge(key, 1, Integer::sum);
+                }
+            }
+        }
+        List<String> keys = new ArrayList<>(counts.keySet());
+        keys.sort((a, b) -> Integer.compare(counts.get(b), counts.get(a)));
+        if (keys.size() > limit) {
+            keys = keys.subList(0, limit);
+        }
+
+        Backend reference = backend("hybrid");
+        int labelled = 0;
+        try (Writer w = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            for (String key : keys) {
+                Query q = new Query();
+                q.query = original.get(key);
+                q.count = counts.get(key);
+                q.relevant = new ArrayList<>();
+                try {
+                    List<SearchHit> hits = reference.search(q.query, null);
+                    if (!hits.isEmpty()) {
+                        q.relevant.add(hits.get(0).id);
+                        labelled++;
+                    }
+                } catch (Exception e) {
+                    System.out.println("검색 실패 (정답 비워 둠): " + q.query + " (" + e.getMessage() + ")");
+                }
+                w.write(GSON.toJson(q));
+                w.write('\n');
+            }
+        }
+        System.out.printf("질문 %d개 저장 (정답 후보 %d개): %s%n", keys.size(), labelled, out.toAbsolutePath());
+        System.out.println("relevant 를 확인/수정한 뒤 reviewed 를 true 로 바꿔 주세요.");
+    }
+
+    // --- run ---
+
+    private static void run(Path queryFile, String backendName) throws Exception {
+        Backend backend = backend(backendName);
+        List<Query> queries = new ArrayList<>();
+        int unreviewed = 0;
+        for (String line : Files.readAllLines(queryFile, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            Query q = GSON.fromJson(line, Query.class);
+            // 정답이 없는 질문은 recall 을 잴 수 없으므로 뺍니다.
+            if (q.query != null && q.relevant != null && !q.relevant.isEmpty()) {
+                queries.add(q);
+                if (!q.reviewed) {
+                    unreviewed++;
+                }
+            }
+        }
+        if (queries.isEmpty()) {
+            System.out.println("정답이 달린 질문이 없습니다: " + queryFile);
+            return;
+        }
+        if (unreviewed > 0) {
+            System.out.printf("주의: 사람이 확인하지 않은 정답 %d/%d개 (seed 가 채운 값 - 지금 검색 결과와 같다는 뜻)%n",
+                    unreviewed, queries.size());
+        }
+        int[] ks = parseKs(System.getProperty("eval.k", "1,3,5"));
+        int warmup = Integer.getInteger("eval.warmup", 1);
+        int repeat = Math.max(1, Integer.getInteger("eval.repeat", 3));
+
+        // 임베딩은 미리 한 번씩 구해 둡니다. (keyword 는 필요 없음)
+        Map<String, List<Double>> embeddings = new LinkedHashMap<>();
+        long[] embedNanos = new long[queries.size()];
+        if (!backendName.equals("keyword")) {
+            for (int i = 0; i < queries.size(); i++) {
+                long start = System.nanoTime();
+                embeddings.put(queries.get(i).query, RagHelper.getEmbedding(queries.get(i).query));
+                embedNanos[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(embedNanos);
+        }
+
+        for (int w = 0; w < warmup; w++) {
+            for (Query q : queries) {
+                try {
+                    backend.search(q.query, embeddings.get(q.query));
+                } catch (Exception ignored) {
+                    // 워밍업 실패는 측정 때 다시 드러납니다.
+                }
+            }
+        }
+
+        long[] latencies = new long[queries.size() * repeat];
+        int samples = 0;
+        int errors = 0;
+        double[] recallSum = new double[ks.length];
+        double reciprocalSum = 0;
+        Map<String, Integer> ranks = new LinkedHashMap<>();
+        for (int r = 0; r < repeat; r++) {
+            for (Query q : queries) {
+                List<SearchHit> hits;
+                long start = System.nanoTime();
+                try {
+                    hits = backend.search(q.query, embeddings.get(q.query));
+                } catch (Exception e) {
+                    errors++;
+                    if (r == 0) {
+                        System.out.println("검색 실패: " + q.query + " (" + e.getMessage() + ")");
+                        ranks.put(q.query, 0);
+                    }
+                    continue;
+                }
+                latencies[samples++] = System.nanoTime() - start;
+                if (r > 0) {
+                    continue;
+                }
+                // 정확도는 첫 반복 결과로만 셉니다. (반복은 지연 시간 표본용)
+                Set<String> relevant = new HashSet<>(q.relevant);
+                int rank = 0;
+                for (int i = 0; i < hits.size(); i++) {
+                    if (relevant.contains(hits.get(i).id)) {
+                        rank = i + 1;
+                        break;
+                    }
+                }
+                ranks.put(q.query, rank);
+                reciprocalSum += rank == 0 ? 0 : 1.0 / rank;
+                for (int j = 0; j < ks.length; j++) {
+                    int found = 0;
+                    for (int i = 0; i < Math.min(ks[j], hits.size()); i++) {
+                        if (relevant.contains(hits.get(i).id)) {
+                            found++;
+                        }
+                    }
+                    recallSum[j] += (double) found / relevant.size();
+                }
+            }
+        }
+        Arrays.sort(latencies, 0, samples);
+
+        Result result = new Result();
+        result.label = System.getProperty("eval.label", "");
+        result.backend = backendName;
+        result.queryFile = queryFile.getFileName().toString();
+        result.queries = queries.size();
+        result.errors = errors;
+        result.k = ks;
+        result.recall = new double[ks.length];
+        for (int j = 0; j < ks.length; j++) {
+            result.recall[j] = recallSum[j] / queries.size();
+        }
+        result.mrr = reciprocalSum / queries.size();
+        result.p50Ms = percentileMillis(latencies, samples, 0.50);
+        result.p90Ms = percentileMillis(latencies, samples, 0.90);
+        result.p99Ms = percentileMillis(latencies, samples, 0.99);
+        result.maxMs = percentileMillis(latencies, samples, 1.0);
+        result.embedP50Ms = embeddings.isEmpty() ? 0 : percentileMillis(embedNanos, embedNanos.length, 0.50);
+        result.ranks = ranks;
+
+        System.out.printf("backend=%s 질문=%d 오류=%d (지식 베이스 문서 %d개)%n",
+                backendName, result.queries, errors, KnowledgeBase.current().documents().size());
+        for (int j = 0; j < ks.length; j++) {
+            System.out.printf("  recall@%-3d %.3f%n", ks[j], result.recall[j]);
+        }
+        System.out.printf("  MRR        %.3f%n", result.mrr);
+        System.out.printf("  지연 ms    p50 %.2f  p90 %.2f  p99 %.2f  max %.2f  (표본 %d, 임베딩 p50 %.1f 제외)%n",
+                result.p50Ms, result.p90Ms, result.p99Ms, result.maxMs, samples, result.embedP50Ms);
+
+        String out = System.getProperty("eval.out");
+        if (out != null) {
+            try (Writer w = Files.newBufferedWriter(Paths.get(out), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                w.write(GSON.toJson(result));
+                w.write('\n');
+            }
+            System.out.println("결과 저장: " + Paths.get(out).toAbsolutePath());
+        }
+    }
+
+    private static Backend backend(String name) {
+        switch (name) {
+            case "keyword":
+                return (query, embedding) -> KnowledgeBase.current().keywordIndex()
+                        .search(query, Env.getInt("RAG_TOP_K", 3)).hits;
+            case "vector":
+                return (query, embedding) -> RagHelper.searchVectors(
+                        embedding != null ? embedding : RagHelper.getEmbedding(query));
+            case "pinecone":
+                return (query, embedding) -> RagHelper.searchPineconeHits(
+                        embedding != null ? embedding : RagHelper.getEmbedding(query));
+            case "hybrid":
+                return RagHelper::retrieve;
+            default:
+                throw new IllegalArgumentException("알 수 없는 backend: " + name + " (" + String.join(", ", BACKENDS) + ")");
+        }
+    }
+
+    // --- compare ---
+
+    /** 회귀가 있으면 true */
+    static boolean compare(Path basePath, Path nextPath, double recallTolerancePct, double latencyTolerancePct)
+            throws IOException {
+        Map<String, Result> base = latest(read(basePath));
+        Map<String, Result> next = latest(read(nextPath));
+
+        int regressions = 0;
+        for (Map.Entry<String, Result> e : next.entrySet()) {
+            Result before = base.get(e.getKey());
+            Result after = e.getValue();
+            System.out.printf("[%s] %s -> %s%n", e.getKey(), before == null ? "-" : before.label, after.label);
+            if (before == null) {
+                System.out.println("  기준 결과 없음");
+                continue;
+            }
+            if (!before.queryFile.equals(after.queryFile) || before.queries != after.queries) {
+                System.out.printf("  주의: 질문 파일이 다릅니다 (%s %d개 / %s %d개)%n",
+                        before.queryFile, before.queries, after.queryFile, after.queries);
+            }
+            System.out.printf("  %-12s %10s %10s %10s%n", "", "base", "new", "diff");
+            for (int j = 0; j < after.k.length; j++) {
+                int index = indexOf(before.k, after.k[j]);
+                if (index < 0) {
+                    continue;
+                }
+                regressions += line("recall@" + after.k[j], before.recall[index], after.recall[j], recallTolerancePct);
+            }
+            regressions += line("MRR", before.mrr, after.mrr, recallTolerancePct);
+
+            double slower = before.p99Ms == 0 ? 0 : (after.p99Ms - before.p99Ms) / before.p99Ms * 100;
+            boolean slow = slower > latencyTolerancePct;
+            if (slow) {
+                regressions++;
+            }
+            System.out.printf("  %-12s %10.2f %10.2f %+9.1f%%%n", "p50 ms", before.p50Ms, after.p50Ms,
+                    before.p50Ms == 0 ? 0 : (after.p50Ms - before.p50Ms) / before.p50Ms * 100);
+            System.out.printf("  %-12s %10.2f %10.2f %+9.1f%%%s%n", "p99 ms", before.p99Ms, after.p99Ms, slower,
+                    slow ? "  <-- 회귀" : "");
+
+            // 정답 순위가 나빠진 질문 (최대 10개)
+            int shown = 0;
+            if (before.ranks != null && after.ranks != null) {
+                for (Map.Entry<String, Integer> r : after.ranks.entrySet()) {
+                    Integer old = before.ranks.get(r.getKey());
+                    if (old != null && old > 0 && (r.getValue() == 0 || r.getValue() > old)) {
+                        if (shown++ < 10) {
+                            System.out.printf("    순위 하락 %d -> %s : %s%n", old,
+                                    r.getValue() == 0 ? "없음" : r.getValue(), r.getKey());
+                        }
+                    }
+                }
+                if (shown > 10) {
+                    System.out.printf("    ... 외 %d개%n", shown - 10);
+                }
+            }
+        }
+        System.out.println(regressions == 0 ? "회귀 없음"
+                : "회귀 " + regressions + "건 (허용 정확도 " + recallTolerancePct + "%p, 지연 " + latencyTolerancePct + "%)");
+        return regressions > 0;
+    }
+
+    // 정확도 한 줄 출력, 허용치(%p)보다 떨어졌으면 1
+    private static int line(String name, double before, double after, double tolerancePct) {
+        double diffPct = (after - before) * 100;
+        boolean worse = diffPct < -tolerancePct;
+        System.out.printf("  %-12s %10.3f %10.3f %+8.1f%%p%s%n", name, before, after, diffPct, worse ? "  <-- 회귀" : "");
+        return worse ? 1 : 0;
+    }
+
+    // 같은 파일에 여러 번 덧붙였으면 backend 마다 마지막 결과
+    private static Map<String, Result> latest(List<Result> results) {
+        Map<String, Result> map = new LinkedHashMap<>();
+        for (Result r : results) {
+            map.put(r.backend, r);
+        }
+        return map;
+    }
+
+    static List<Result> read(Path path) throws IOException {
+        List<Result> list = new ArrayList<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            if (!line.isBlank()) {
+                list.add(GSON.fromJson(line, Result.class));
+            }
+        }
+        return list;
+    }
+
+    private static int[] parseKs(String spec) {
+        String[] parts = spec.split(",");
+        int[] ks = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            ks[i] = Integer.parseInt(parts[i].trim());
+        }
+        return ks;
+    }
+
+    private static int indexOf(int[] values, int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static double percentileMillis(long[] sorted, int count, double p) {
+        if (count == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))] / 1e6;
+    }
+}
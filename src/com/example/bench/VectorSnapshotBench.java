@@ -0,0 +1,149 @@
+package com.example.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import com.example.util.SearchHit;
+import com.example.util.VectorSnapshot;
+
+/**
+ * int8 벡터 스냅샷(mmap) 검색 속도와, float32 전수 검색 대비 recall@k 를 잽니다.
+ * 실제 임베딩 대신 군집이 있는 합성 벡터를 쓰고, 질문은 문서 벡터에 잡음을 섞어 만듭니다.
+ *
+ * 실행: java -cp classes com.example.bench.VectorSnapshotBench [문서수=20000] [질문수=200] [k=3] [차원=768]
+ */
+public class VectorSnapshotBench {
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int k = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int dim = args.length > 3 ? Integer.parseInt(args[3]) : 768;
+
+        Random random = new Random(42);
+        int clusters = Math.max(1, n / 50);
+        float[][] centers = new float[clusters][];
+        for (int c = 0; c < clusters; c++) {
+            centers[c] = gaussian(random, dim, 1f);
+        }
+        List<String> ids = new ArrayList<>(n);
+        List<float[]> vectors = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            float[] v = centers[i % clusters].clone();
+            float[] noise = gaussian(random, dim, 0.5f);
+            for (int d = 0; d < dim; d++) {
+                v[d] += noise[d];
+            }
+            ids.add("doc_" + i);
+            vectors.add(v);
+        }
+
+        Path file = Files.createTempFile("vectors", ".snap");
+        long writeStart = System.nanoTime();
+        VectorSnapshot.write(file, ids, vectors);
+        long writeMs = (System.nanoTime() - writeStart) / 1_000_000;
+        VectorSnapshot snapshot = VectorSnapshot.open(file);
+
+        float[][] qs = new float[queries][];
+        for (int q = 0; q < queries; q++) {
+            float[] v = vectors.get(random.nextInt(n)).clone();
+            float[] noise = gaussian(random, dim, 0.3f);
+            for (int d = 0; d < dim; d++) {
+                v[d] += noise[d];
+            }
+            qs[q] = v;
+        }
+
+        // 워밍업 (JIT)
+        for (int q = 0; q < Math.min(queries, 20); q++) {
+            snapshot.search(qs[q], k);
+            exactSearch(vectors, qs[q], k);
+        }
+
+        long[] int8Nanos = new long[queries];
+        long[] floatNanos = new long[queries];
+        int found = 0;
+        for (int q = 0; q < queries; q++) {
+            long t0 = System.nanoTime();
+            List<SearchHit> approx = snapshot.search(qs[q], k);
+            long t1 = System.nanoTime();
+            Set<Integer> exact = exactSearch(vectors, qs[q], k);
+            long t2 = System.nanoTime();
+            int8Nanos[q] = t1 - t0;
+            floatNanos[q] = t2 - t1;
+            for (SearchHit h : approx) {
+                if (exact.contains(Integer.parseInt(h.id.substring(4)))) {
+                    found++;
+                }
+            }
+        }
+
+        long fileBytes = Files.size(file);
+        long floatBytes = (long) n * dim * 4;
+        System.out.println("문서 " + n + "건, 질문 " + queries + "건, 차원 " + dim + ", k=" + k);
+        System.out.println("스냅샷 크기: " + fileBytes / 1024 + " KB (float32 원본 " + floatBytes / 1024 + " KB), 쓰기 " + writeMs + " ms");
+        System.out.println("int8 mmap  검색: " + summary(int8Nanos));
+        System.out.println("float32 힙 검색: " + summary(floatNanos));
+        System.out.printf("recall@%d (float32 전수 검색 대비): %.4f%n", k, (double) found / (queries * k));
+        Files.deleteIfExists(file);
+    }
+
+    private static Set<Integer> exactSearch(List<float[]> vectors, float[] query, int k) {
+        double qn = norm(query);
+        double[] best = new double[k];
+        int[] bestIdx = new int[k];
+        Arrays.fill(best, Double.NEGATIVE_INFINITY);
+        for (int i = 0; i < vectors.size(); i++) {
+            float[] v = vectors.get(i);
+            double dot = 0;
+            for (int d = 0; d < v.length; d++) {
+                dot += query[d] * v[d];
+            }
+            double score = dot / (norm(v) * qn);
+            int min = 0;
+            for (int j = 1; j < k; j++) {
+                if (best[j] < best[min]) {
+                    min = j;
+                }
+            }
+            if (score > best[min]) {
+                best[min] = score;
+                bestIdx[min] = i;
+            }
+        }
+        Set<Integer> result = new HashSet<>();
+        for (int i : bestIdx) {
+            result.add(i);
+        }
+        return result;
+    }
+
+    private static double norm(float[] v) {
+        double s = 0;
+        for (float x : v) {
+            s += x * x;
+        }
+        return Math.sqrt(s);
+    }
+
+    private static float[] gaussian(Random random, int dim, float sigma) {
+        float[] v = new float[dim];
+        for (int d = 0; d < dim; d++) {
+            v[d] = (float) random.nextGaussian() * sigma;
+        }
+        return v;
+    }
+
+    private static String summary(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        double avg = Arrays.stream(sorted).average().orElse(0) / 1e6;
+        return String.format("평균 %.3f ms, p50 %.3f ms, p99 %.3f ms", avg,
+                sorted[sorted.length / 2] / 1e6, sorted[Math.min(sorted.length - 1, sorted.length * 99 / 100)] / 1e6);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.servlet;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import com.example.util.Env;
+
+/**
+ * 관리자 기능(문서 적재 등)을 쓸 수 있는 사용자 목록입니다. ADMIN_USERS 환경 변수에 쉼표로 적습니다.
+ * (users 테이블에 권한 컬럼이 없어서 설정으로 관리합니다)
+ */
+public final class AdminAccess {
+
+    private static final Set<String> ADMIN_USERS = new HashSet<>();
+
+    static {
+        for (String name : Env.get("ADMIN_USERS", "").split(",")) {
+            if (!name.trim().isEmpty()) {
+                ADMIN_USERS.add(name.trim());
+            }
+        }
+    }
+
+    private AdminAccess() {
+    }
+
+    /** 로그인한 사용자가 관리자인지 */
+    public static boolean isAdmin(HttpSession session) {
+        return session != null && ADMIN_USERS.contains((String) session.getAttribute("username"));
+    }
+
+    /**
+     * 관리자 API 앞에서 부릅니다. 관리자가 아니면 403 을 쓰고 false 를 돌려줍니다. (로그인 확인은 AuthFilter 가 먼저 함)
+     */
+    static boolean require(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!isAdmin(request.getSession(false))) {
+            ApiJson.fail(response, HttpServletResponse.SC_FORBIDDEN, "관리자만 사용할 수 있습니다.");
+            return false;
+        }
+        return true;
+    }
+}
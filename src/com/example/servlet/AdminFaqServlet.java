@@ -0,0 +1,66 @@
+package com.example.servlet;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import com.example.util.FaqIndex;
+import com.example.util.FaqJob;
+import com.example.util.Log;
+
+/**
+ * 관리자용 FAQ API 입니다. (ADMIN_USERS 에 있는 사용자만)
+ * - GET  : 지금 쓰는 FAQ 목록(대표 질문, 묶인 질문 수)과 마지막 생성 작업 상황
+ * - POST : FAQ 를 지금 다시 만듭니다. (백그라운드)
+ */
+@WebServlet("/api/admin/faq")
+public class AdminFaqServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    // --- JSON 헬퍼 클래스들 ---
+    private static class FaqInfo {
+        long generation;
+        List<FaqItem> items = new ArrayList<>();
+        FaqJob.Status latest;
+    }
+    private static class FaqItem {
+        String question;
+        int cluster_size;
+    }
+    // --- 헬퍼 클래스 끝 ---
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        if (!AdminAccess.require(request, response)) {
+            return;
+        }
+        FaqIndex faq = FaqIndex.current();
+        FaqInfo info = new FaqInfo();
+        info.generation = faq.generation();
+        for (FaqIndex.Entry e : faq.entries()) {
+            FaqItem item = new FaqItem();
+            item.question = e.question;
+            item.cluster_size = e.clusterSize;
+            info.items.add(item);
+        }
+        info.latest = FaqJob.latest();
+        ApiJson.ok(response, "조회 성공", info);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        if (!AdminAccess.require(request, response)) {
+            return;
+        }
+        String username = AuthFilter.username(request);
+        if (!FaqJob.rebuild("admin")) {
+            ApiJson.write(response, HttpServletResponse.SC_CONFLICT, false,
+                    "이미 FAQ 생성이 대기 중이거나 FAQ 가 꺼져 있습니다.", "data", FaqJob.latest());
+            return;
+        }
+        Log.info("admin", "FAQ 재생성 요청", "user", username);
+        ApiJson.write(response, HttpServletResponse.SC_ACCEPTED, true, "FAQ 생성을 시작했습니다.", "data", null);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.servlet;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.MultipartConfig;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import com.example.util.Document;
+import com.example.util.Ingestion;
+import com.example.util.Log;
+
+/**
+ * 관리자용 지식 베이스 문서 적재 API 입니다. (ADMIN_USERS 에 있는 사용자만)
+ * - POST multipart/form-data : .md 파일들을 올려서 적재
+ * - POST dir=/서버/폴더     : 서버 쪽 폴더의 .md 파일들을 적재
+ * - GET                     : 진행 상황 조회
+ * 적재는 백그라운드에서 돌고, 끝나면 새 지식 베이스로 한 번에 교체됩니다.
+ * 교체는 이 요청을 받은 파드에만 적용됩니다. 다른 파드는 재시작할 때까지 이전 지식 베이스를 씁니다. (Ingestion 참고)
+ */
+@WebServlet("/api/admin/ingest")
+@MultipartConfig(maxFileSize = 5 * 1024 * 1024, maxRequestSize = 50 * 1024 * 1024)
+public class AdminIngestServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        if (!AdminAccess.require(request, response)) {
+            return;
+        }
+        ApiJson.ok(response, "조회 성공", Ingestion.latest());
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        request.setCharacterEncoding("UTF-8");
+
+        if (!AdminAccess.require(request, response)) {
+            return;
+        }
+        String username = AuthFilter.username(request);
+
+        try {
+            Ingestion.Progress progress;
+            String contentType = request.getContentType();
+            if (contentType != null && contentType.startsWith("multipart/")) {
+                List<Document> docs = readUploads(request);
+                if (docs.isEmpty()) {
+                    ApiJson.fail(response, HttpServletResponse.SC_BAD_REQUEST, ".md 파일이 없습니다.");
+                    return;
+                }
+                progress = Ingestion.submit("upload", docs);
+            } else {
+                String dir = request.getParameter("dir");
+                if (dir == null || !Files.isDirectory(Paths.get(dir))) {
+                    ApiJson.fail(response, HttpServletResponse.SC_BAD_REQUEST, "폴더를 찾을 수 없습니다: " + dir);
+                    return;
+                }
+                progress = Ingestion.submitDirectory(Paths.get(dir));
+            }
+            Log.info("admin", "문서 적재 요청", "user", username, "job", progress.jobId, "docs", progress.total);
+            response.setStatus(HttpServletResponse.SC_ACCEPTED);
+            ApiJson.ok(response, "적재를 시작했습니다.", progress);
+
+        } catch (IllegalStateException e) {
+            ApiJson.write(response, HttpServletResponse.SC_CONFLICT, false, e.getMessage(), "data", Ingestion.latest());
+        } catch (Exception e) {
+            Log.error("admin", "doPost 실패", e, "user", username);
+            ApiJson.fail(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "적재 요청 오류: " + e.getMessage());
+        }
+    }
+
+    private static List<Document> readUploads(HttpServletRequest request) throws IOException, ServletException {
+        List<Document> docs = new ArrayList<>();
+        for (Part part : request.getParts()) {
+            String submitted = part.getSubmittedFileName();
+            if (submitted == null) {
+                continue;
+            }
+            // 경로가 붙어 와도 파일명만 씁니다. (RAG_CORPUS_DIR 밖으로 못 나가게)
+            Path fileName = Paths.get(submitted).getFileName();
+            if (fileName == null || !fileName.toString().endsWith(".md")) {
+                continue;
+            }
+            String name = fileName.toString();
+            try (InputStream in = part.getInputStream()) {
+                docs.add(new Document(Document.idForFile(name), name, new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+            }
+        }
+        return docs;
+    }
+}
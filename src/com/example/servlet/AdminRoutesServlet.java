@@ -0,0 +1,85 @@
+package com.example.servlet;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import com.example.util.Log;
+import com.example.util.ModelRouter;
+
+/**
+ * 관리자용 Gemini 모델 라우팅 API 입니다. (ADMIN_USERS 에 있는 사용자만)
+ * - GET  : 지금 쓰는 라우팅 표(분류 기준, 경로별 모델 순서와 타임아웃)와 모델별 서킷 상태
+ * - POST : GEMINI_ROUTES_FILE 을 바로 다시 읽습니다. (수정 시각 확인 주기를 기다리지 않음)
+ * 경로/모델별 지연 시간과 다음 모델로 넘어간 횟수는 /metrics 의 rag_generation_* 에 있습니다.
+ */
+@WebServlet("/api/admin/routes")
+public class AdminRoutesServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    // --- JSON 헬퍼 클래스들 ---
+    private static class RoutesInfo {
+        String source;
+        int light_max_question_chars;
+        int light_max_context_chars;
+        List<String> heavy_keywords;
+        List<RouteItem> routes = new ArrayList<>();
+    }
+    private static class RouteItem {
+        String name;
+        long timeout_ms;
+        List<ModelItem> models = new ArrayList<>();
+    }
+    private static class ModelItem {
+        String model;
+        String circuit;
+    }
+    // --- 헬퍼 클래스 끝 ---
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        if (!AdminAccess.require(request, response)) {
+            return;
+        }
+        ApiJson.ok(response, "조회 성공", toInfo(ModelRouter.current()));
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        if (!AdminAccess.require(request, response)) {
+            return;
+        }
+        String username = AuthFilter.username(request);
+        if (!ModelRouter.reload()) {
+            ApiJson.write(response, HttpServletResponse.SC_CONFLICT, false,
+                    "라우팅 표를 읽지 못했습니다. (GEMINI_ROUTES_FILE 이 없거나 형식 오류 - 지금 표 유지)",
+                    "data", toInfo(ModelRouter.current()));
+            return;
+        }
+        Log.info("admin", "라우팅 표 다시 읽기", "user", username);
+        ApiJson.ok(response, "라우팅 표를 다시 읽었습니다.", toInfo(ModelRouter.current()));
+    }
+
+    private static RoutesInfo toInfo(ModelRouter router) {
+        RoutesInfo info = new RoutesInfo();
+        info.source = router.source();
+        info.light_max_question_chars = router.lightMaxQuestionChars();
+        info.light_max_context_chars = router.lightMaxContextChars();
+        info.heavy_keywords = router.heavyKeywords();
+        for (ModelRouter.Route route : router.routes().values()) {
+            RouteItem item = new RouteItem();
+            item.name = route.name;
+            item.timeout_ms = route.timeout.toMillis();
+            for (String model : route.models) {
+                ModelItem m = new ModelItem();
+                m.model = model;
+                m.circuit = ModelRouter.breaker(model).getState().name();
+                item.models.add(m);
+            }
+            info.routes.add(item);
+        }
+        return info;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.servlet;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import com.example.util.Trace;
+
+/**
+ * 관리자용 느린 요청 조회 API 입니다. (ADMIN_USERS 에 있는 사용자만)
+ * TRACE_SLOW_MS 보다 오래 걸린 최근 질문 요청들을 단계별 시간(임베딩, 검색, 생성, DB 저장 ..)과 함께 최근 것부터 돌려줍니다.
+ * X-Request-Id 로 같은 요청의 로그 한 줄과 맞춰 볼 수 있습니다.
+ */
+@WebServlet("/api/admin/traces")
+public class AdminTracesServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    // --- JSON 헬퍼 클래스들 ---
+    private static class TracesInfo {
+        long threshold_ms;
+        long slow_total;
+        List<TraceItem> traces = new ArrayList<>();
+    }
+    private static class TraceItem {
+        String request_id;
+        String name;
+        String user;
+        long started_at;
+        int status;
+        double total_ms;
+        Map<String, Object> tags;
+        List<Trace.Span> spans;
+    }
+    // --- 헬퍼 클래스 끝 ---
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        if (!AdminAccess.require(request, response)) {
+            return;
+        }
+        TracesInfo info = new TracesInfo();
+        info.threshold_ms = Trace.slowThresholdMs();
+        info.slow_total = Trace.slowCount();
+        for (Trace t : Trace.slow()) {
+            TraceItem item = new TraceItem();
+            item.request_id = t.requestId;
+            item.name = t.name;
+            item.user = t.user;
+            item.started_at = t.startedAt;
+            item.status = t.status();
+            item.total_ms = t.totalMs();
+            item.tags = t.tags();
+            item.spans = t.spans();
+            info.traces.add(item);
+        }
+        ApiJson.ok(response, "조회 성공", info);
+    }
+}
@@ -0,0 +1,310 @@
+package com.example.servlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.servlet.http.HttpServletResponse;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.example.util.UserSearchIndex;
+
+/**
+ * 모든 API 서블릿이 같이 쓰는 JSON 응답 도구입니다.
+ * 응답 모양은 기존과 같습니다: {"success": .., "message": .., "data": ..} (null 인 필드는 생략)
+ * - 자주 나가는 DTO 는 Writable 로 직접 필드를 쓰고, 나머지 타입은 Gson 어댑터를 처음 한 번만 찾아 재사용합니다.
+ * - 문자/바이트 버퍼와 UTF-8 인코더를 풀에서 빌려 쓰고, 다 쓴 뒤 Content-Length 를 붙여 출력 스트림으로 바로 보냅니다.
+ * - 목록 조회(okRows)는 ResultSet 을 한 행씩 JSON 으로 쓰면서 버퍼가 차면 바로 내보냅니다. (행 수와 상관없이 메모리 일정)
+ */
+public final class ApiJson {
+
+    /** JSON 으로 자기 필드를 직접 쓰는 응답 DTO (리플렉션 없이 직렬화) */
+    public interface Writable {
+        void writeJson(JsonWriter out) throws IOException;
+    }
+
+    /** ResultSet 의 현재 행을 JSON 값 하나로 쓰는 부분 */
+    public interface RowWriter {
+        void write(JsonWriter out, ResultSet rs) throws IOException, SQLException;
+    }
+
+    private static final TypeAdapter<Writable> WRITABLE_ADAPTER = new TypeAdapter<Writable>() {
+        @Override
+        public void write(JsonWriter out, Writable value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+            } else {
+                value.writeJson(out);
+            }
+        }
+
+        @Override
+        public Writable read(JsonReader in) {
+            throw new UnsupportedOperationException("응답 전용 타입입니다.");
+        }
+    };
+
+    private static final TypeAdapter<UserSearchIndex.Result> SEARCH_RESULT_ADAPTER = new TypeAdapter<UserSearchIndex.Result>() {
+        @Override
+        public void write(JsonWriter out, UserSearchIndex.Result r) throws IOException {
+            out.beginObject();
+            out.name("type").value(r.type);
+            out.name("id").value(r.id);
+            out.name("snippet").value(r.snippet);
+            out.name("score").value(r.score);
+            out.endObject();
+        }
+
+        @Override
+        public UserSearchIndex.Result read(JsonReader in) {
+            throw new UnsupportedOperationException("응답 전용 타입입니다.");
+        }
+    };
+
+    /** 요청 본문 파싱과 Writable 이 아닌 응답 타입에 쓰는 공용 Gson (스레드 안전) */
+    public static final Gson GSON = new GsonBuilder()
+            .registerTypeHierarchyAdapter(Writable.class, WRITABLE_ADAPTER)
+            .registerTypeAdapter(UserSearchIndex.Result.class, SEARCH_RESULT_ADAPTER)
+            .create();
+
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+    // 이보다 커진 버퍼는 풀에 돌려놓지 않습니다. (큰 응답 한 번에 풀 메모리가 계속 커지지 않게)
+    private static final int MAX_POOLED_BYTES = 256 * 1024;
+    private static final BlockingQueue<Buffer> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+    // okRows 에서 이만큼(문자 수) 모이면 응답으로 내보냅니다.
+    private static final int ROWS_FLUSH_CHARS = 8 * 1024;
+
+    // 재사용하는 인코딩 버퍼: JSON 문자를 모으는 char 배열 + UTF-8 인코더 + 바이트 버퍼
+    // (JsonWriter 는 아주 작은 조각으로 자주 쓰므로, OutputStreamWriter 에 바로 쓰면 조각마다 임시 객체가 생깁니다)
+    private static final class Buffer extends Writer {
+        char[] chars = new char[4096];
+        int length;
+        // 짝 없는 서로게이트 같은 잘못된 문자는 '?' 로 바꿉니다. (기본값 REPORT 면 거기서 인코딩이 멈춰 JSON 이 잘림)
+        final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocate(8192);
+
+        @Override
+        public void write(int c) {
+            ensure(length + 1);
+            chars[length++] = (char) c;
+        }
+
+        @Override
+        public void write(char[] c, int off, int len) {
+            ensure(length + len);
+            System.arraycopy(c, off, chars, length, len);
+            length += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            ensure(length + len);
+            str.getChars(off, off + len, chars, length);
+            length += len;
+        }
+
+        private void ensure(int capacity) {
+            if (capacity > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(capacity, chars.length * 2));
+            }
+        }
+
+        // 모은 문자를 UTF-8 로 한 번에 인코딩합니다. (문자 1개 = 최대 3바이트)
+        ByteBuffer encode() throws IOException {
+            int capacity = length * 3;
+            if (bytes.capacity() < capacity) {
+                bytes = ByteBuffer.allocate(Math.max(capacity, bytes.capacity() * 2));
+            }
+            bytes.clear();
+            encoder.reset();
+            check(encoder.encode(CharBuffer.wrap(chars, 0, length), bytes, true));
+            check(encoder.flush(bytes));
+            return bytes;
+        }
+
+        // REPLACE 라 오류는 안 나야 하지만, 나면 잘린 응답을 보내지 않도록 실패로 처리합니다.
+        private static void check(CoderResult result) throws IOException {
+            if (result.isError() || result.isOverflow()) {
+                result.throwException();
+            }
+        }
+
+        // 모은 문자를 인코딩해서 내보내고 비웁니다. (행 경계에서만 불러서 서로게이트 쌍이 잘리지 않음)
+        void drainTo(OutputStream out) throws IOException {
+            ByteBuffer encoded = encode();
+            out.write(encoded.array(), 0, encoded.position());
+            length = 0;
+        }
+
+        int footprint() {
+            return chars.length * 2 + bytes.capacity();
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private ApiJson() {
+    }
+
+    /** 성공 응답 (200) */
+    public static void ok(HttpServletResponse response, String message, Object data) throws IOException {
+        write(response, HttpServletResponse.SC_OK, true, message, "data", data);
+    }
+
+    /** 실패 응답 */
+    public static void fail(HttpServletResponse response, int status, String message) throws IOException {
+        write(response, status, false, message, "data", null);
+    }
+
+    /**
+     * 응답을 씁니다. field 는 본문을 담을 키 이름입니다. (기존 API 호환: 메모는 "content", 로그인은 "redirect")
+     */
+    public static void write(HttpServletResponse response, int status, boolean success, String message,
+            String field, Object data) throws IOException {
+        if (response.isCommitted()) {
+            // okRows 가 중간까지 보낸 뒤 실패한 경우: 상태 코드를 바꿀 수 없으니 연결을 끊어서 잘린 응답임을 알립니다.
+            throw new IOException("응답을 이미 보내기 시작해서 " + status + " 응답을 쓸 수 없습니다: " + message);
+        }
+        Buffer buffer = borrow();
+        boolean reusable = false;
+        try {
+            JsonWriter out = writer(buffer);
+            out.beginObject();
+            out.name("success").value(success);
+            if (message != null) {
+                out.name("message").value(message);
+            }
+            if (data != null) {
+                out.name(field);
+                writeValue(out, data);
+            }
+            out.endObject();
+            ByteBuffer bytes = buffer.encode();
+            reusable = buffer.footprint() <= MAX_POOLED_BYTES;
+
+            setHeaders(response, status);
+            response.setContentLength(bytes.position());
+            response.getOutputStream().write(bytes.array(), 0, bytes.position());
+        } finally {
+            // 직렬화 중 예외가 난 버퍼는 상태를 믿을 수 없으므로 버립니다.
+            if (reusable) {
+                POOL.offer(buffer);
+            }
+        }
+    }
+
+    /**
+     * 목록 성공 응답 (200): {"success": true, "message": .., "data": [행, 행, ...]}
+     * ResultSet 을 앞에서부터 한 행씩 row 로 쓰고, 버퍼가 ROWS_FLUSH_CHARS 를 넘을 때마다 응답으로 내보냅니다.
+     * 첫 조각을 보내기 전에 끝나면 write 와 똑같이 Content-Length 를 붙여 보내고, 길면 chunked 로 나갑니다.
+     * 첫 조각을 보낸 뒤 예외가 나면 응답은 이미 커밋되어 있으므로, 호출한 쪽의 fail() 이 IOException 을 던져 연결을 끊습니다.
+     */
+    public static void okRows(HttpServletResponse response, String message, ResultSet rs, RowWriter row)
+            throws IOException, SQLException {
+        Buffer buffer = borrow();
+        boolean reusable = false;
+        try {
+            JsonWriter out = writer(buffer);
+            out.beginObject();
+            out.name("success").value(true);
+            out.name("message").value(message);
+            out.name("data");
+            out.beginArray();
+            OutputStream body = null;
+            while (rs.next()) {
+                row.write(out, rs);
+                if (buffer.length >= ROWS_FLUSH_CHARS) {
+                    if (body == null) {
+                        setHeaders(response, HttpServletResponse.SC_OK);
+                        body = response.getOutputStream();
+                        buffer.drainTo(body);
+                        // 첫 조각은 바로 보내서, 나머지 행을 읽는 동안 클라이언트가 받기 시작하게 합니다.
+                        response.flushBuffer();
+                    } else {
+                        buffer.drainTo(body);
+                    }
+                }
+            }
+            out.endArray();
+            out.endObject();
+            if (body == null) {
+                ByteBuffer bytes = buffer.encode();
+                setHeaders(response, HttpServletResponse.SC_OK);
+                response.setContentLength(bytes.position());
+                response.getOutputStream().write(bytes.array(), 0, bytes.position());
+            } else {
+                buffer.drainTo(body);
+            }
+            reusable = buffer.footprint() <= MAX_POOLED_BYTES;
+        } finally {
+            if (reusable) {
+                POOL.offer(buffer);
+            }
+        }
+    }
+
+    private static Buffer borrow() {
+        Buffer buffer = POOL.poll();
+        if (buffer == null) {
+            buffer = new Buffer();
+        }
+        buffer.length = 0;
+        return buffer;
+    }
+
+    private static JsonWriter writer(Buffer buffer) {
+        JsonWriter out = new JsonWriter(buffer);
+        // 기존 gson.toJson 과 같은 출력: null 필드 생략, HTML 특수문자 이스케이프
+        out.setSerializeNulls(false);
+        out.setHtmlSafe(true);
+        return out;
+    }
+
+    private static void setHeaders(HttpServletResponse response, int status) {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void writeValue(JsonWriter out, Object value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else if (value instanceof Writable) {
+            ((Writable) value).writeJson(out);
+        } else if (value instanceof String) {
+            out.value((String) value);
+        } else if (value instanceof Collection) {
+            out.beginArray();
+            for (Object item : (Collection<?>) value) {
+                writeValue(out, item);
+            }
+            out.endArray();
+        } else {
+            TypeAdapter adapter = GSON.getAdapter(value.getClass());
+            adapter.write(out, value);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.servlet;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+import com.example.util.FaqJob;
+import com.example.util.Ingestion;
+import com.example.util.KnowledgeBase;
+import com.example.util.Log;
+
+/**
+ * 웹앱 시작/종료 시점 작업을 모아두는 리스너입니다.
+ */
+@WebListener
+public class AppContextListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        // 첫 질문이 색인 생성 시간을 떠안지 않도록 지식 베이스를 미리 읽어 둡니다. (기동은 막지 않음)
+        Thread warmup = new Thread(KnowledgeBase::current, "kb-warmup");
+        warmup.setDaemon(true);
+        warmup.start();
+
+        // 저장된 FAQ 를 읽고, 지식 베이스가 바뀌거나 오래되면 gpt_history 로 다시 만듭니다.
+        FaqJob.start(new FaqTable(), GptApiServlet::answerWithoutHistory);
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        // 진행 중인 문서 적재는 멈춥니다. (지식 베이스는 교체 전이므로 그대로 남음)
+        Ingestion.shutdown();
+        FaqJob.shutdown();
+        // 버퍼에 남은 로그를 내보내고 종료합니다.
+        Log.shutdown(2000);
+    }
+}
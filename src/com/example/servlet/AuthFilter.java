@@ -0,0 +1,36 @@
+package com.example.servlet;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.*;
+import java.io.IOException;
+
+/**
+ * /api/* 공통 로그인 확인 필터입니다. 세션에 username 이 없으면 401 로 돌려보내고,
+ * 있으면 요청 속성에 넣어 두어 서블릿은 AuthFilter.username(request) 로 꺼내 씁니다.
+ */
+@WebFilter("/api/*")
+public class AuthFilter extends HttpFilter {
+    private static final long serialVersionUID = 1L;
+
+    private static final String USERNAME_ATTRIBUTE = AuthFilter.class.getName() + ".username";
+
+    @Override
+    protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpSession session = request.getSession(false);
+        String username = session == null ? null : (String) session.getAttribute("username");
+        if (username == null) {
+            ApiJson.fail(response, HttpServletResponse.SC_UNAUTHORIZED, "로그인이 필요합니다.");
+            return;
+        }
+        request.setAttribute(USERNAME_ATTRIBUTE, username);
+        chain.doFilter(request, response);
+    }
+
+    /** 로그인한 사용자 이름 (AuthFilter 를 거친 /api/* 요청에서만 사용) */
+    public static String username(HttpServletRequest request) {
+        return (String) request.getAttribute(USERNAME_ATTRIBUTE);
+    }
+}
@@ -0,0 +1,484 @@
+package com.example.servlet;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.*;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import com.example.util.Env;
+import com.example.util.Histogram;
+import com.example.util.Metrics;
+
+/**
+ * 응답 압축 필터입니다. 클라이언트가 gzip 을 받을 수 있고, 압축이 잘 되는 타입(JSON, HTML, CSS, JS ..)이면서
+ * 크기가 HTTP_COMPRESSION_MIN_BYTES 이상인 응답만 gzip 으로 보냅니다.
+ * - Deflater(네이티브 zlib 메모리)는 요청마다 만들지 않고 풀에서 빌려 씁니다.
+ * - 압축 결과가 출력 버퍼(16KB) 안에 들어가면 Content-Length 를 붙여 한 번에 보내고, 넘으면 chunked 로 흘려보냅니다.
+ * - 이미 Content-Encoding 이 붙은 응답(미리 압축해 둔 정적 파일, web.xml 의 DefaultServlet precompressed)은 건드리지 않습니다.
+ * 압축 전/후 바이트와 압축에 쓴 시간(deflate 호출만, 소켓 쓰기 제외)은 /metrics 로 나갑니다.
+ */
+@WebFilter("/*")
+public class CompressionFilter extends HttpFilter {
+    private static final long serialVersionUID = 1L;
+
+    private static final boolean ENABLED = Env.getBoolean("HTTP_COMPRESSION", true);
+    private static final int MIN_BYTES = Env.getInt("HTTP_COMPRESSION_MIN_BYTES", 1024);
+    private static final int LEVEL = Env.getInt("HTTP_COMPRESSION_LEVEL", 6);
+    private static final Set<String> TYPES = Set.of("application/json", "text/html", "text/css", "text/plain",
+            "text/javascript", "application/javascript", "image/svg+xml");
+
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+    private static final BlockingQueue<Gzip> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private static final LongAdder INPUT_BYTES = Metrics.counter("http_compression_input_bytes_total");
+    private static final LongAdder OUTPUT_BYTES = Metrics.counter("http_compression_output_bytes_total");
+    private static final Histogram DEFLATE_TIME = Metrics.histogram("http_compression_seconds");
+
+    static {
+        // 압축 후 / 압축 전 (낮을수록 잘 줄어든 것)
+        Metrics.gauge("http_compression_ratio", () -> {
+            long in = INPUT_BYTES.sum();
+            return in == 0 ? 0.0 : (double) OUTPUT_BYTES.sum() / in;
+        });
+    }
+
+    // 풀에서 빌려 쓰는 압축 상태: Deflater + CRC32 + 압축 결과를 모으는 버퍼
+    private static final class Gzip {
+        // 고정 gzip 헤더 (deflate, 파일 이름/시간 없음, OS 알 수 없음)
+        private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+        final Deflater deflater = new Deflater(LEVEL, true);
+        final CRC32 crc = new CRC32();
+        final byte[] out = new byte[16 * 1024];
+        int length;
+
+        void start() {
+            deflater.reset();
+            crc.reset();
+            System.arraycopy(HEADER, 0, out, 0, HEADER.length);
+            length = HEADER.length;
+        }
+    }
+
+    @Override
+    protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        // HEAD 는 본문이 없으므로 길이만 맞으면 됩니다.
+        if (!ENABLED || "HEAD".equals(request.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        CompressingResponse wrapped = new CompressingResponse(response, acceptsGzip(request.getHeader("Accept-Encoding")));
+        boolean completed = false;
+        try {
+            chain.doFilter(request, wrapped);
+            completed = true;
+        } finally {
+            wrapped.finish(completed);
+        }
+    }
+
+    // Accept-Encoding: gzip, deflate, br  /  gzip;q=0  /  *
+    // gzip 을 직접 적었으면 그 값을 따르고(*;q=0, gzip 이면 압축), 없을 때만 * 를 봅니다.
+    static boolean acceptsGzip(String header) {
+        if (header == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String token : header.split(",")) {
+            String[] parts = token.split(";");
+            String coding = parts[0].trim();
+            if (coding.equalsIgnoreCase("gzip")) {
+                return acceptable(parts);
+            }
+            if (coding.equals("*") && wildcard == null) {
+                wildcard = acceptable(parts);
+            }
+        }
+        return wildcard != null && wildcard;
+    }
+
+    // q=0 이거나 q 값을 읽을 수 없으면(gzip;q=x, gzip;q=) 받지 않는 것으로 봅니다. (클라이언트 값이라 예외로 500 을 내지 않게)
+    private static boolean acceptable(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2).trim()) > 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean compressibleType(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        int semicolon = contentType.indexOf(';');
+        String type = (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim().toLowerCase();
+        return TYPES.contains(type);
+    }
+
+    private static void skipped(String reason) {
+        Metrics.inc(Metrics.name("http_compression_skipped_total", "reason", reason));
+    }
+
+    /**
+     * 본문을 가로채서 압축할지 정하는 응답 래퍼입니다.
+     * 길이를 미리 알면(setContentLength) 그때 정하고, 모르면 MIN_BYTES 까지 모아 본 뒤 정합니다.
+     */
+    private static final class CompressingResponse extends HttpServletResponseWrapper {
+        private static final int PENDING = 0, PLAIN = 1, GZIP = 2;
+
+        private final HttpServletResponse target;
+        private final boolean accepted;
+        private int mode = PENDING;
+        private long declaredLength = -1;
+        private byte[] pending;
+        private int pendingLength;
+        private Gzip gzip;
+        private long inputBytes;
+        private long outputBytes;
+        private long deflateNanos;
+        private ServletOutputStream stream;
+        private PrintWriter writer;
+
+        CompressingResponse(HttpServletResponse target, boolean accepted) {
+            super(target);
+            this.target = target;
+            this.accepted = accepted;
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            setContentLengthLong(len);
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            if (mode == PLAIN) {
+                target.setContentLengthLong(len);
+            } else if (mode == PENDING) {
+                declaredLength = len;
+            }
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if ("Content-Length".equalsIgnoreCase(name) && mode != PLAIN) {
+                setContentLengthLong(value == null ? -1 : Long.parseLong(value));
+            } else {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                setHeader(name, value);
+            } else {
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                setContentLengthLong(value);
+            } else {
+                super.setIntHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                setContentLengthLong(value);
+            } else {
+                super.addIntHeader(name, value);
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() 를 이미 불렀습니다.");
+            }
+            if (stream == null) {
+                stream = new Body();
+            }
+            return stream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (stream != null) {
+                    throw new IllegalStateException("getOutputStream() 을 이미 불렀습니다.");
+                }
+                stream = new Body();
+                writer = new PrintWriter(new OutputStreamWriter(stream, Charset.forName(getCharacterEncoding())));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            flushBody();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            restart();
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            releaseGzip();
+            mode = PENDING;
+            declaredLength = -1;
+            pendingLength = 0;
+        }
+
+        // 아직 보내지 않은 본문을 버리고 처음부터 다시 씁니다. (실제 응답이 커밋됐으면 super 가 먼저 예외를 던짐)
+        private void restart() {
+            pendingLength = 0;
+            if (mode == GZIP) {
+                gzip.start();
+                inputBytes = 0;
+                outputBytes = 0;
+            }
+        }
+
+        /** 압축할지 정합니다. size 는 지금까지 알게 된 본문 크기(또는 선언된 길이)입니다. */
+        private void decide(long size) throws IOException {
+            String reason = null;
+            int status = getStatus();
+            if (status == SC_NO_CONTENT || status == SC_NOT_MODIFIED || status == SC_PARTIAL_CONTENT) {
+                reason = "status";
+            } else if (containsHeader("Content-Encoding")) {
+                reason = "precompressed";
+            } else if (!compressibleType(getContentType())) {
+                reason = "type";
+            } else {
+                // 압축 여부에 따라 내용이 달라지므로 캐시(nginx, 브라우저)에 알려 둡니다.
+                target.addHeader("Vary", "Accept-Encoding");
+                if (!accepted) {
+                    reason = "not_accepted";
+                } else if (size < MIN_BYTES) {
+                    reason = "small";
+                }
+            }
+            if (reason != null) {
+                skipped(reason);
+                mode = PLAIN;
+                if (declaredLength >= 0) {
+                    target.setContentLengthLong(declaredLength);
+                }
+                if (pendingLength > 0) {
+                    target.getOutputStream().write(pending, 0, pendingLength);
+                    pendingLength = 0;
+                }
+                return;
+            }
+            mode = GZIP;
+            gzip = POOL.poll();
+            if (gzip == null) {
+                gzip = new Gzip();
+            }
+            gzip.start();
+            if (pendingLength > 0) {
+                deflate(pending, 0, pendingLength);
+                pendingLength = 0;
+            }
+        }
+
+        private void write(byte[] b, int off, int len) throws IOException {
+            if (mode == PENDING) {
+                if (declaredLength >= 0) {
+                    decide(declaredLength);
+                } else if (pendingLength + len < MIN_BYTES) {
+                    if (pending == null) {
+                        pending = new byte[MIN_BYTES];
+                    }
+                    System.arraycopy(b, off, pending, pendingLength, len);
+                    pendingLength += len;
+                    return;
+                } else {
+                    decide(pendingLength + len);
+                }
+            }
+            if (mode == PLAIN) {
+                target.getOutputStream().write(b, off, len);
+            } else {
+                deflate(b, off, len);
+            }
+        }
+
+        private void deflate(byte[] b, int off, int len) throws IOException {
+            gzip.crc.update(b, off, len);
+            inputBytes += len;
+            gzip.deflater.setInput(b, off, len);
+            drain(Deflater.NO_FLUSH, false);
+        }
+
+        /**
+         * Deflater 출력을 버퍼로 옮기고, 버퍼가 차면 응답으로 내보냅니다.
+         * NO_FLUSH 는 입력을 다 먹을 때까지, SYNC_FLUSH 는 남은 출력을 다 꺼낼 때까지, finishing 이면 스트림이 끝날 때까지 돕니다.
+         */
+        private void drain(int flush, boolean finishing) throws IOException {
+            Deflater deflater = gzip.deflater;
+            while (true) {
+                if (gzip.length == gzip.out.length) {
+                    emit();
+                }
+                int space = gzip.out.length - gzip.length;
+                long start = System.nanoTime();
+                int n = deflater.deflate(gzip.out, gzip.length, space, flush);
+                deflateNanos += System.nanoTime() - start;
+                gzip.length += n;
+                boolean done = finishing ? deflater.finished()
+                        : flush == Deflater.SYNC_FLUSH ? n < space : deflater.needsInput();
+                if (done) {
+                    return;
+                }
+            }
+        }
+
+        private void emit() throws IOException {
+            if (!target.containsHeader("Content-Encoding")) {
+                target.setHeader("Content-Encoding", "gzip");
+            }
+            target.getOutputStream().write(gzip.out, 0, gzip.length);
+            outputBytes += gzip.length;
+            gzip.length = 0;
+        }
+
+        private void flushBody() throws IOException {
+            if (mode == PENDING) {
+                // 길이를 모르는 채로 내보내야 하면 지금까지 모인 크기로 정합니다.
+                decide(declaredLength >= 0 ? declaredLength : pendingLength);
+            }
+            if (mode == GZIP) {
+                drain(Deflater.SYNC_FLUSH, false);
+                emit();
+            }
+        }
+
+        /**
+         * 필터 끝에서 부릅니다. 압축 중이면 마지막 블록과 gzip 트레일러(CRC32, 원래 크기)를 씁니다.
+         * 서블릿이 예외로 끝났고 아직 아무것도 내보내지 않았으면, 압축 상태를 버려서 Tomcat 오류 페이지가 그대로 나가게 합니다.
+         */
+        void finish(boolean completed) throws IOException {
+            try {
+                if (!completed) {
+                    if (mode == GZIP && outputBytes == 0) {
+                        releaseGzip();
+                    }
+                    return;
+                }
+                if (writer != null) {
+                    writer.flush();
+                }
+                if (mode == PENDING) {
+                    decide(declaredLength >= 0 ? declaredLength : pendingLength);
+                }
+                if (mode != GZIP) {
+                    return;
+                }
+                gzip.deflater.finish();
+                drain(Deflater.NO_FLUSH, true);
+                if (gzip.out.length - gzip.length < 8) {
+                    emit();
+                }
+                writeIntLE(gzip.out, gzip.length, (int) gzip.crc.getValue());
+                writeIntLE(gzip.out, gzip.length + 4, (int) inputBytes);
+                gzip.length += 8;
+                if (outputBytes == 0) {
+                    // 압축 결과 전체가 버퍼 하나에 들어갔으면 길이를 알려 주고 한 번에 보냅니다.
+                    target.setContentLength(gzip.length);
+                }
+                emit();
+                INPUT_BYTES.add(inputBytes);
+                OUTPUT_BYTES.add(outputBytes);
+                DEFLATE_TIME.observeNanos(deflateNanos);
+                releaseGzip();
+            } finally {
+                if (gzip != null) {
+                    // 쓰기 도중 실패: 상태를 믿을 수 없는 Deflater 는 풀에 돌려놓지 않습니다.
+                    gzip.deflater.end();
+                    gzip = null;
+                }
+            }
+        }
+
+        private void releaseGzip() {
+            if (gzip != null) {
+                // 풀이 차 있으면(동시 압축이 POOL_SIZE 보다 많았음) 네이티브 zlib 메모리를 GC 를 기다리지 않고 바로 풉니다.
+                if (!POOL.offer(gzip)) {
+                    gzip.deflater.end();
+                }
+                gzip = null;
+            }
+        }
+
+        private static void writeIntLE(byte[] b, int off, int v) {
+            b[off] = (byte) v;
+            b[off + 1] = (byte) (v >>> 8);
+            b[off + 2] = (byte) (v >>> 16);
+            b[off + 3] = (byte) (v >>> 24);
+        }
+
+        // 서블릿에 돌려주는 본문 스트림 (쓰기는 모두 래퍼로 넘김)
+        private final class Body extends ServletOutputStream {
+            private final byte[] one = new byte[1];
+
+            @Override
+            public void write(int b) throws IOException {
+                one[0] = (byte) b;
+                CompressingResponse.this.write(one, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                CompressingResponse.this.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                flushBody();
+                target.getOutputStream().flush();
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+                throw new UnsupportedOperationException("비동기 쓰기는 지원하지 않습니다.");
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.servlet;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.*;
+import java.io.IOException;
+import com.example.util.AdaptiveLimiter;
+import com.example.util.Env;
+
+/**
+ * 일반 API(할 일/메모/링크/검색 등)와 로그인 앞단의 동시 처리 한도 필터입니다.
+ * 응답 시간을 보고 한도를 조절하는 AdaptiveLimiter 를 쓰고, 한도를 넘는 요청은 줄 세우지 않고 바로 503 + Retry-After 로 돌려보냅니다.
+ * (Tomcat 스레드와 힙에 요청이 쌓여 파드가 OOM/liveness 실패로 죽는 대신 일부 요청만 빨리 실패시킴)
+ * 질문(POST /api/gpt)은 비싼 경로라서 GptRateLimitFilter 가 별도 한도로 처리합니다.
+ *
+ * 설정 (환경 변수): CRUD_LIMIT_INITIAL (기본 20), CRUD_LIMIT_MIN (기본 4), CRUD_LIMIT_MAX (기본 100)
+ */
+@WebFilter(urlPatterns = { "/api/*", "/login", "/signup" })
+public class ConcurrencyLimitFilter extends HttpFilter {
+    private static final long serialVersionUID = 1L;
+
+    private static final AdaptiveLimiter LIMITER = new AdaptiveLimiter("crud",
+            Env.getInt("CRUD_LIMIT_INITIAL", 20),
+            Env.getInt("CRUD_LIMIT_MIN", 4),
+            Env.getInt("CRUD_LIMIT_MAX", 100));
+
+    @Override
+    protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if ("POST".equals(request.getMethod()) && "/api/gpt".equals(request.getServletPath())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        int inFlight = LIMITER.tryAcquire();
+        if (inFlight == 0) {
+            response.setHeader("Retry-After", "1");
+            ApiJson.fail(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "요청이 몰려 있습니다. 잠시 후 다시 시도해주세요.");
+            return;
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = response.getStatus() >= 500;
+        } finally {
+            LIMITER.release(System.nanoTime() - start, inFlight, failed);
+        }
+    }
+}
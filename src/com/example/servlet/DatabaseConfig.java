@@ -1,8 +1,18 @@
 package com.example.servlet;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import com.example.util.Env;
+import com.example.util.Histogram;
+import com.example.util.Metrics;
 
 public class DatabaseConfig {
 
@@ -13,6 +23,16 @@ public class DatabaseConfig {
     public static final String DB_PASSWORD = System.getenv("DB_PASSWORD");
     private static final String DB_DRIVER = "com.mysql.cj.jdbc.Driver";
 
+    // 목록 조회에서 한 번에 받아올 행 수 힌트.
+    // MySQL Connector/J 는 Integer.MIN_VALUE 면 한 행씩 흘려 받고(기본값),
+    // 양수는 DB_URL 에 useCursorFetch=true 가 있을 때 서버 커서로 그만큼씩 받습니다. (없으면 결과 전체를 메모리에 올림)
+    private static final int STREAM_FETCH_SIZE = Env.getInt("DB_STREAM_FETCH_SIZE", Integer.MIN_VALUE);
+
+    // 2. 커넥션을 얻는 시간과 쿼리 실행 시간을 /metrics 히스토그램으로 남깁니다.
+    private static final Histogram ACQUIRE = Metrics.histogram("db_acquire_seconds");
+    private static final Histogram EXECUTE_QUERY = Metrics.histogram(Metrics.name("db_execute_seconds", "op", "query"));
+    private static final Histogram EXECUTE_UPDATE = Metrics.histogram(Metrics.name("db_execute_seconds", "op", "update"));
+
     /**
      * DB 커넥션을 생성하여 반환합니다.
      * @return Connection 객체
@@ -26,6 +46,90 @@ public class DatabaseConfig {
         }
         
         Class.forName(DB_DRIVER);
-        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        long start = System.nanoTime();
+        Connection conn;
+        try {
+            conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        } catch (SQLException e) {
+            countError("acquire", e);
+            throw e;
+        } finally {
+            ACQUIRE.observeSince(start);
+        }
+        return (Connection) Proxy.newProxyInstance(DatabaseConfig.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new TimedConnection(conn));
+    }
+
+    /**
+     * 결과를 한꺼번에 메모리에 올리지 않고 앞에서부터 읽는 조회용 PreparedStatement 를 만듭니다. (ApiJson.okRows 와 같이 씀)
+     * 스트리밍 중에는 같은 커넥션으로 다른 쿼리를 실행할 수 없으므로, ResultSet 을 다 읽고 닫은 뒤에 쓰세요.
+     */
+    public static PreparedStatement prepareStreaming(Connection conn, String sql) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(STREAM_FETCH_SIZE);
+        return ps;
+    }
+
+    // 커넥션이 만들어 주는 Statement 를 실행 시간을 재는 Statement 로 감쌉니다. (나머지 호출은 그대로 전달)
+    private static class TimedConnection implements InvocationHandler {
+        private final Connection target;
+
+        TimedConnection(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = forward(target, method, args);
+            // createStatement/prepareStatement/prepareCall 이 돌려주는 타입 그대로 감쌉니다.
+            Class<?> type = method.getReturnType();
+            if (result != null && Statement.class.isAssignableFrom(type)) {
+                return Proxy.newProxyInstance(DatabaseConfig.class.getClassLoader(),
+                        new Class<?>[] { type }, new TimedStatement(result));
+            }
+            return result;
+        }
+    }
+
+    private static class TimedStatement implements InvocationHandler {
+        private final Object target;
+
+        TimedStatement(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                return forward(target, method, args);
+            }
+            // executeQuery 는 조회, executeUpdate/executeBatch/execute 는 변경으로 셉니다.
+            Histogram histogram = "executeQuery".equals(name) ? EXECUTE_QUERY : EXECUTE_UPDATE;
+            long start = System.nanoTime();
+            try {
+                return forward(target, method, args);
+            } catch (SQLException e) {
+                countError("execute", e);
+                throw e;
+            } finally {
+                histogram.observeSince(start);
+            }
+        }
+    }
+
+    private static Object forward(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // SQLState 앞 두 글자가 오류 종류입니다. (08: 연결, 23: 제약 조건 위반, 40: 트랜잭션 롤백, 42: 문법/권한 ..)
+    private static void countError(String stage, SQLException e) {
+        String state = e.getSQLState();
+        String cause = state == null || state.length() < 2 ? "unknown" : "sqlstate_" + state.substring(0, 2);
+        Metrics.inc(Metrics.name("db_errors_total", "stage", stage, "cause", cause));
     }
 }
@@ -0,0 +1,144 @@
+package com.example.servlet;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import com.example.util.FaqIndex;
+import com.example.util.FaqJob;
+import com.example.util.SingleFlight;
+
+/**
+ * FAQ 를 faq 테이블에 저장하고 gpt_history 에서 질문을 읽어 오는 FaqJob.Store 구현입니다.
+ * 테이블이 없으면 처음 쓸 때 만듭니다. 정규화한 질문(question_key)에 유니크 인덱스가 있고,
+ * 임베딩은 float 배열을 리틀 엔디언 바이트로 BLOB 에 넣습니다. (768차원 = 3KB)
+ */
+public class FaqTable implements FaqJob.Store {
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS faq ("
+            + " id INT AUTO_INCREMENT PRIMARY KEY,"
+            + " question_key VARCHAR(191) NOT NULL,"
+            + " question TEXT NOT NULL,"
+            + " answer MEDIUMTEXT NOT NULL,"
+            + " embedding BLOB NOT NULL,"
+            + " cluster_size INT NOT NULL,"
+            + " generation BIGINT NOT NULL,"
+            + " created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,"
+            + " UNIQUE KEY uk_faq_question_key (question_key),"
+            + " KEY idx_faq_generation (generation)"
+            + ") DEFAULT CHARSET=utf8mb4";
+
+    private volatile boolean created;
+
+    @Override
+    public List<String> recentQuestions(int limit) throws Exception {
+        List<String> questions = new ArrayList<>();
+        String sql = "SELECT question FROM gpt_history ORDER BY id DESC LIMIT ?";
+        try (Connection conn = DatabaseConfig.getConnection();
+                PreparedStatement ps = DatabaseConfig.prepareStreaming(conn, sql)) {
+            ps.setInt(1, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    questions.add(rs.getString("question"));
+                }
+            }
+        }
+        return questions;
+    }
+
+    @Override
+    public long latestGeneration() throws Exception {
+        try (Connection conn = connection();
+                PreparedStatement ps = conn.prepareStatement("SELECT MAX(generation) FROM faq");
+                ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    @Override
+    public FaqIndex load() throws Exception {
+        List<FaqIndex.Entry> entries = new ArrayList<>();
+        long generation = 0;
+        String sql = "SELECT question, answer, embedding, cluster_size, generation FROM faq ORDER BY cluster_size DESC";
+        try (Connection conn = connection();
+                PreparedStatement ps = conn.prepareStatement(sql);
+                ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                entries.add(new FaqIndex.Entry(rs.getString("question"), rs.getString("answer"),
+                        rs.getInt("cluster_size"), toFloats(rs.getBytes("embedding"))));
+                generation = Math.max(generation, rs.getLong("generation"));
+            }
+        }
+        return new FaqIndex(entries, generation);
+    }
+
+    @Override
+    public void replace(List<FaqIndex.Entry> entries, long generation) throws Exception {
+        String sql = "INSERT INTO faq (question_key, question, answer, embedding, cluster_size, generation)"
+                + " VALUES (?, ?, ?, ?, ?, ?)";
+        // 대표 질문은 500자까지인데 키는 191자로 자르므로, 앞부분이 같은 질문은 키가 겹칩니다.
+        // 유니크 인덱스에 걸려 배치 전체가 롤백되지 않도록 같은 키는 묶음이 큰 쪽 하나만 남깁니다.
+        Map<String, FaqIndex.Entry> byKey = new LinkedHashMap<>();
+        for (FaqIndex.Entry e : entries) {
+            byKey.merge(key(e.question), e, (a, b) -> b.clusterSize > a.clusterSize ? b : a);
+        }
+        try (Connection conn = connection()) {
+            // 읽는 쪽이 지운 뒤 ~ 넣기 전의 빈 표를 보지 않도록 한 트랜잭션으로 바꿉니다.
+            conn.setAutoCommit(false);
+            try (PreparedStatement delete = conn.prepareStatement("DELETE FROM faq");
+                    PreparedStatement insert = conn.prepareStatement(sql)) {
+                delete.executeUpdate();
+                for (Map.Entry<String, FaqIndex.Entry> item : byKey.entrySet()) {
+                    FaqIndex.Entry e = item.getValue();
+                    insert.setString(1, item.getKey());
+                    insert.setString(2, e.question);
+                    insert.setString(3, e.answer);
+                    insert.setBytes(4, toBytes(e.vector()));
+                    insert.setInt(5, e.clusterSize);
+                    insert.setLong(6, generation);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private Connection connection() throws SQLException, ClassNotFoundException {
+        Connection conn = DatabaseConfig.getConnection();
+        if (!created) {
+            try (Statement st = conn.createStatement()) {
+                st.execute(CREATE_TABLE);
+            } catch (SQLException e) {
+                conn.close();
+                throw e;
+            }
+            created = true;
+        }
+        return conn;
+    }
+
+    // 유니크 인덱스 길이 제한(utf8mb4 191자) 안으로 자릅니다.
+    private static String key(String question) {
+        String key = SingleFlight.normalize(question);
+        return key.length() > 191 ? key.substring(0, 191) : key;
+    }
+
+    private static byte[] toBytes(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    private static float[] toFloats(byte[] bytes) {
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+}
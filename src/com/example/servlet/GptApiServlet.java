@@ -6,6 +6,7 @@ import javax.servlet.http.*;
 import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
@@ -13,8 +14,19 @@ import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.example.util.Bulkhead;
+import com.example.util.CircuitBreaker;
+import com.example.util.ContextAssembler;
+import com.example.util.ConversationMemory;
+import com.example.util.FaqIndex;
+import com.example.util.Metrics;
+import com.example.util.ModelRouter;
 import com.example.util.RagHelper;
+import com.example.util.SearchHit;
+import com.example.util.Trace;
+import com.example.util.Log;
+import com.example.util.UserSearchIndex;
 
 @WebServlet("/api/gpt")
 public class GptApiServlet extends HttpServlet {
@@ -23,26 +35,32 @@ public class GptApiServlet extends HttpServlet {
     // API 키를 환경 변수에서 읽어옵니다.
     private static final String OPENAI_API_KEY = System.getenv("OPENAI_API_KEY");
 
-    private final Gson gson = new Gson();
-
     // --- JSON 헬퍼 클래스들 ---
-    private static class ApiResponse {
-        boolean success;
-        String message;
-        Object data;
-
-        ApiResponse(boolean success, String message, Object data) {
-            this.success = success;
-            this.message = message;
-            this.data = data;
-        }
-    }
-
-    private static class GptHistoryItem {
+    private static class GptHistoryItem implements ApiJson.Writable {
         int id;
         String question;
         String answer;
         String created_at;
+
+        @Override
+        public void writeJson(JsonWriter out) throws IOException {
+            out.beginObject();
+            out.name("id").value(id);
+            out.name("question").value(question);
+            out.name("answer").value(answer);
+            out.name("created_at").value(created_at);
+            out.endObject();
+        }
+
+        // 조회 결과의 현재 행을 같은 모양으로 바로 씁니다. (객체를 만들지 않음)
+        static void writeRow(JsonWriter out, ResultSet rs) throws IOException, SQLException {
+            out.beginObject();
+            out.name("id").value(rs.getInt("id"));
+            out.name("question").value(rs.getString("question"));
+            out.name("answer").value(rs.getString("answer"));
+            out.name("created_at").value(rs.getTimestamp("created_at").toString());
+            out.endObject();
+        }
     }
 
     private static class GptPromptRequest {
@@ -85,107 +103,200 @@ public class GptApiServlet extends HttpServlet {
     }
     // --- 헬퍼 클래스 끝 ---
 
+    /** 목록 조회의 한 행을 쓰는 부분 (벤치마크도 같은 것을 씀) */
+    public static final ApiJson.RowWriter LIST_ROW = GptHistoryItem::writeRow;
+
     @Override
-    protected void doGet(HttpServletRequest request, HttpServletResponse response)
-            throws ServletException, IOException {
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
+    public void init() throws ServletException {
+        // 사용자의 첫 질문 때만 gpt_history 에서 최근 대화를 읽고, 이후로는 메모리의 링 버퍼를 씁니다.
+        ConversationMemory.INSTANCE.setLoader(GptApiServlet::loadRecentTurns);
+    }
 
-        HttpSession session = request.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "로그인이 필요합니다.", null)));
-            return;
+    private static List<ConversationMemory.Turn> loadRecentTurns(String username, int limit) throws Exception {
+        List<ConversationMemory.Turn> turns = new ArrayList<>();
+        String sql = "SELECT question, answer FROM gpt_history WHERE username = ? ORDER BY id DESC LIMIT ?";
+        try (Connection conn = DatabaseConfig.getConnection();
+                PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, username);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    turns.add(new ConversationMemory.Turn(rs.getString("question"), rs.getString("answer")));
+                }
+            }
         }
-        String username = (String) session.getAttribute("username");
+        Collections.reverse(turns); // 오래된 턴 -> 최신 턴
+        return turns;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        String username = AuthFilter.username(request);
 
-        List<GptHistoryItem> historyList = new ArrayList<>();
         String sql = "SELECT id, question, answer, created_at FROM gpt_history WHERE username = ? ORDER BY created_at ASC";
 
         try (Connection conn = DatabaseConfig.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
+                PreparedStatement ps = DatabaseConfig.prepareStreaming(conn, sql)) {
 
             ps.setString(1, username);
             try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    GptHistoryItem item = new GptHistoryItem();
-                    item.id = rs.getInt("id");
-                    item.question = rs.getString("question");
-                    item.answer = rs.getString("answer");
-                    item.created_at = rs.getTimestamp("created_at").toString();
-                    historyList.add(item);
-                }
+                ApiJson.okRows(response, "조회 성공", rs, LIST_ROW);
             }
-            response.getWriter().write(gson.toJson(new ApiResponse(true, "조회 성공", historyList)));
 
         } catch (Exception e) {
-            e.printStackTrace();
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "DB 조회 오류: " + e.getMessage(), null)));
+            Log.error("gpt", "doGet 실패", e, "user", username);
+            ApiJson.fail(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "DB 조회 오류: " + e.getMessage());
+        }
+    }
+
+    /**
+     * FAQ 답변을 만듭니다. 이전 대화 없이 실제 질문과 같은 경로(RAG 검색 + Gemini)로 답합니다. (FaqJob 이 부름)
+     * 검색이 실패하면 근거 없는 답변을 FAQ 로 남기지 않도록 예외를 그대로 던집니다.
+     */
+    static String answerWithoutHistory(String question) throws Exception {
+        String context = ContextAssembler.assemble(RagHelper.retrieve(question)).context;
+        String prompt = buildPrompt(question, context, Collections.emptyList());
+        return RagHelper.callGeminiApi(prompt, ModelRouter.current().route(question, prompt.length() - question.length()));
+    }
+
+    /**
+     * Gemini 에 보낼 프롬프트를 만듭니다. (검색된 지식 + 이전 대화 + 원래 질문)
+     * 문맥도 이전 대화도 없으면 질문을 그대로 보냅니다.
+     */
+    public static String buildPrompt(String prompt, String relatedContext, List<ConversationMemory.Turn> turns) {
+        boolean hasContext = relatedContext != null && !relatedContext.isEmpty();
+        if (!hasContext && turns.isEmpty()) {
+            return prompt;
+        }
+        StringBuilder sb = new StringBuilder("당신은 IT 학습 도우미입니다.");
+        if (hasContext) {
+            sb.append(" 아래 [학습 메모]를 참고하여 질문에 답해주세요.\n")
+                    .append("메모에 없는 내용은 당신의 일반적인 지식으로 답변하세요.\n\n")
+                    .append("[학습 메모]\n").append(relatedContext).append("\n\n");
+        } else {
+            sb.append("\n\n");
         }
+        if (!turns.isEmpty()) {
+            // 후속 질문("그럼 그거는?")의 지시 대상을 알 수 있도록 앞 대화를 붙입니다.
+            sb.append("[이전 대화]\n");
+            for (ConversationMemory.Turn turn : turns) {
+                sb.append("사용자: ").append(turn.question).append("\n")
+                        .append("도우미: ").append(turn.answer).append("\n\n");
+            }
+        }
+        sb.append("[질문]\n").append(prompt);
+        return sb.toString();
     }
 
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        // 1. 기본 설정 및 세션 체크
+        // 1. 기본 설정 (로그인 확인은 AuthFilter 가 먼저 함)
         request.setCharacterEncoding("UTF-8");
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
 
-        HttpSession session = request.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "로그인이 필요합니다.", null)));
-            return;
-        }
-        String username = (String) session.getAttribute("username");
+        String username = AuthFilter.username(request);
 
         // 2. 요청 파싱 (여기서 prompt 변수가 만들어집니다!)
         BufferedReader reader = request.getReader();
-        GptPromptRequest reqData = gson.fromJson(reader, GptPromptRequest.class);
+        GptPromptRequest reqData = ApiJson.GSON.fromJson(reader, GptPromptRequest.class);
 
         // [핵심] 에러가 났던 이유: 이 줄이 없어서였습니다.
         String prompt = reqData.prompt;
 
         // 유효성 검사
         if (prompt == null || prompt.trim().isEmpty()) {
-            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "질문 내용이 비어있습니다.", null)));
+            ApiJson.fail(response, HttpServletResponse.SC_BAD_REQUEST, "질문 내용이 비어있습니다.");
             return;
         }
 
+        // 요청 1건당 로그 1줄: 요청 ID, 사용자, 단계별 소요 시간(ms)을 끝에 한 번에 남깁니다.
+        // 단계별 시간은 Trace 에도 남겨서 Server-Timing 헤더로 돌려주고, 느린 요청은 관리자 API 로 볼 수 있게 합니다.
+        String requestId = Log.newRequestId();
+        response.setHeader("X-Request-Id", requestId);
+        Trace trace = Trace.start(requestId, "chat", username);
+        long startedAt = System.nanoTime();
+        long faqMs = -1, retrieveMs = -1, generateMs = -1, dbMs = -1;
+        String faqResult = "-", routeName = "-";
+        int hitCount = 0, contextTokens = 0, droppedPassages = 0, droppedTokens = 0, historyTurns = 0;
+        int status = HttpServletResponse.SC_OK;
+
         try {
-            // 3. [RAG] Pinecone 검색 (Gemini 임베딩 사용)
-            String relatedContext = "";
-            try {
-                // RagHelper가 내부적으로 Gemini API를 써서 벡터를 만듭니다.
-                List<Double> vector = RagHelper.getEmbedding(prompt);
-                relatedContext = RagHelper.searchPinecone(vector);
-                System.out.println("[RAG 검색 결과] " + relatedContext);
-            } catch (Exception e) {
-                System.err.println("[RAG 오류] 검색 실패 (답변은 계속 진행): " + e.getMessage());
+            // 2-1. [FAQ] 자주 나온 질문이면 미리 만들어 둔 답변을 바로 씁니다. (검색/생성 생략)
+            // 정규화한 질문이 같으면 임베딩 없이 찾고, 아니면 질문 임베딩으로 가장 가까운 대표 질문을 찾습니다.
+            // 여기서 구한 임베딩은 아래 검색에서 그대로 씁니다.
+            // 이어지는 대화(최근 턴이 있음)는 앞의 대화를 봐야 답할 수 있으므로 FAQ 를 보지 않습니다.
+            // 이전 대화는 메모리 링 버퍼에서 꺼냅니다. (토큰 예산 안의 최근 몇 턴만)
+            List<ConversationMemory.Turn> turns = ConversationMemory.INSTANCE.recent(username);
+            String answer = null;
+            List<Double> promptEmbedding = null;
+            long stageStart = System.nanoTime();
+            FaqIndex faq = FaqIndex.current();
+            if (!faq.isEmpty() && !turns.isEmpty()) {
+                faqResult = "skipped_history";
+                Metrics.inc(Metrics.name("faq_lookups_total", "result", faqResult));
+            } else if (!faq.isEmpty()) {
+                FaqIndex.Entry entry = faq.exact(prompt);
+                faqResult = entry != null ? "exact" : "miss";
+                if (entry == null && RagHelper.isRetrievalAvailable()) {
+                    try {
+                        promptEmbedding = RagHelper.getEmbedding(prompt);
+                        FaqIndex.Match match = faq.nearest(promptEmbedding);
+                        if (match != null) {
+                            entry = match.entry;
+                            faqResult = "similar";
+                        }
+                    } catch (Exception e) {
+                        Log.warn("faq", "FAQ 임베딩 실패 (답변은 계속 진행)", "req", requestId, "error_msg", e.getMessage());
+                    }
+                }
+                if (entry != null) {
+                    answer = entry.answer;
+                }
+                faqMs = trace.record("faq", faqResult, stageStart);
+                Metrics.inc(Metrics.name("faq_lookups_total", "result", faqResult));
             }
 
-            // 4. 프롬프트 구성 (검색된 지식 + 원래 질문)
-            String finalPrompt;
-            if (relatedContext != null && !relatedContext.isEmpty()) {
-                finalPrompt = "당신은 IT 학습 도우미입니다. 아래 [학습 메모]를 참고하여 질문에 답해주세요.\n" +
-                        "메모에 없는 내용은 당신의 일반적인 지식으로 답변하세요.\n\n" +
-                        "[학습 메모]\n" + relatedContext + "\n\n" +
-                        "[질문]\n" + prompt;
-            } else {
-                finalPrompt = prompt;
+            if (answer == null) {
+                // 3. [RAG] Pinecone 검색 (Gemini 임베딩 사용)
+                String relatedContext = "";
+                stageStart = System.nanoTime();
+                try {
+                    // 키워드 색인 + Pinecone 하이브리드 검색.
+                    // 임베딩/검색 서킷이 열려 있으면 RagHelper 가 기다리지 않고 키워드 결과만 돌려줍니다.
+                    // 점수 낮은 문서/중복 문서를 거르고 토큰 예산 안에서만 문맥을 채웁니다.
+                    List<SearchHit> hits = RagHelper.retrieve(prompt, promptEmbedding);
+                    ContextAssembler.Result assembled = ContextAssembler.assemble(hits);
+                    relatedContext = assembled.context;
+                    hitCount = hits.size();
+                    contextTokens = assembled.usedTokens;
+                    droppedPassages = assembled.droppedPassages;
+                    droppedTokens = assembled.droppedTokens;
+                } catch (Exception e) {
+                    Log.warn("rag", "검색 실패 (답변은 계속 진행)", "req", requestId, "error_msg", e.getMessage());
+                }
+                retrieveMs = trace.record("retrieve", null, stageStart);
+
+                // 4. 프롬프트 구성 (검색된 지식 + 이전 대화 + 원래 질문)
+                historyTurns = turns.size();
+                String finalPrompt = buildPrompt(prompt, relatedContext, turns);
+
+                // 5. [Gemini 호출] (기존 callOpenAiApi 대신 RagHelper 사용)
+                // 질문 길이, 붙은 문맥(검색 + 이전 대화) 크기, 질문 내용으로 빠른 모델과 강한 모델 중 하나를 고릅니다.
+                ModelRouter.Route route = ModelRouter.current().route(prompt, finalPrompt.length() - prompt.length());
+                routeName = route.name;
+                stageStart = System.nanoTime();
+                request.setAttribute(GptRateLimitFilter.GENERATION_ATTR, Boolean.TRUE);
+                answer = RagHelper.callGeminiApi(finalPrompt, route);
+                generateMs = (System.nanoTime() - stageStart) / 1_000_000;
             }
 
-            // 5. [Gemini 호출] (기존 callOpenAiApi 대신 RagHelper 사용)
-            String answer = RagHelper.callGeminiApi(finalPrompt);
-
             // 6. DB 저장 (질문 내역 기록)
             // 주의: DB에는 '검색된 내용이 섞인 finalPrompt'가 아니라 사용자의 '원래 질문(prompt)'을 저장합니다.
             String sql = "INSERT INTO gpt_history (username, question, answer) VALUES (?, ?, ?)";
             GptHistoryItem newHistoryItem = new GptHistoryItem();
 
+            stageStart = System.nanoTime();
             try (Connection conn = DatabaseConfig.getConnection();
                     PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
@@ -200,19 +311,41 @@ public class GptApiServlet extends HttpServlet {
                         newHistoryItem.question = prompt;
                         newHistoryItem.answer = answer;
                         newHistoryItem.created_at = new Timestamp(System.currentTimeMillis()).toString();
+                        UserSearchIndex.INSTANCE.put(username, "gpt", String.valueOf(newHistoryItem.id), prompt + "\n" + answer);
+                        ConversationMemory.INSTANCE.append(username, prompt, answer);
                     } else {
                         throw new SQLException("ID 생성 실패");
                     }
                 }
             }
+            dbMs = trace.record("db", null, stageStart);
 
             // 7. 결과 응답
-            response.getWriter().write(gson.toJson(new ApiResponse(true, "질문 성공", newHistoryItem)));
-
+            response.setHeader("Server-Timing", trace.serverTiming());
+            ApiJson.ok(response, "질문 성공", newHistoryItem);
+
+        } catch (CircuitBreaker.OpenException | Bulkhead.FullException e) {
+            // Gemini 서킷이 열려 있거나 동시 호출 한도가 찼으면 스레드를 붙잡지 않고 바로 503으로 돌려보냅니다.
+            status = HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+            response.setHeader("Server-Timing", trace.serverTiming());
+            ApiJson.fail(response, status, "AI 서비스가 일시적으로 불안정합니다. 잠시 후 다시 시도해주세요.");
         } catch (Exception e) {
-            e.printStackTrace();
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "오류 발생: " + e.getMessage(), null)));
+            status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+            Log.error("gpt", "doPost 실패", e, "req", requestId, "user", username);
+            response.setHeader("Server-Timing", trace.serverTiming());
+            ApiJson.fail(response, status, "오류 발생: " + e.getMessage());
+        } finally {
+            trace.tag("faq", faqResult);
+            trace.tag("route", routeName);
+            trace.tag("hits", hitCount);
+            trace.tag("ctx_tokens", contextTokens);
+            trace.tag("history_turns", historyTurns);
+            trace.finish(status);
+            Log.info("gpt", "chat", "req", requestId, "user", username, "status", status,
+                    "faq", faqResult, "faq_ms", faqMs,
+                    "hits", hitCount, "ctx_tokens", contextTokens, "ctx_dropped", droppedPassages,
+                    "ctx_dropped_tokens", droppedTokens, "history_turns", historyTurns, "retrieve_ms", retrieveMs,
+                    "route", routeName, "generate_ms", generateMs, "db_ms", dbMs, "total_ms", (System.nanoTime() - startedAt) / 1_000_000);
         }
     }
 }
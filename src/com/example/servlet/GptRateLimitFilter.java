@@ -0,0 +1,105 @@
+package com.example.servlet;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.*;
+import java.io.IOException;
+import com.example.util.AdaptiveLimiter;
+import com.example.util.Env;
+import com.example.util.FairQueue;
+import com.example.util.TokenBucketLimiter;
+
+/**
+ * /api/gpt 질문(POST) 앞단의 요청 제한 필터입니다.
+ * 1) 사용자별 토큰 버킷: 한 사람이 전송 버튼을 연타해도 Gemini 할당량을 혼자 쓰지 못하게 429 + Retry-After 로 돌려보냅니다.
+ * 2) 공정 대기열: 동시에 처리하는 질문 수를 제한하고, 기다리는 요청은 사용자별로 번갈아 들여보냅니다.
+ *    동시 처리 수는 고정값이 아니라 질문 응답 시간을 보고 AdaptiveLimiter 가 조절합니다.
+ *    응답 시간은 실제로 답변 생성(Gemini)까지 간 요청만 씁니다. 빈 질문(400)이나 FAQ 답변처럼 몇 ms 만에 끝나는 요청까지 넣으면
+ *    기준 RTT 가 그쪽으로 내려가서 생성 요청이 늘 "느린" 것으로 보이고 한도가 GPT_LIMIT_MIN 에 붙어 버립니다.
+ *
+ * 설정 (환경 변수)
+ * - GPT_RATE_PER_MIN (기본 6), GPT_RATE_BURST (기본 3)
+ * - GPT_MAX_CONCURRENT (시작 한도, 기본 8), GPT_LIMIT_MIN (기본 2), GPT_LIMIT_MAX (기본 16)
+ * - GPT_QUEUE_MAX (기본 64), GPT_QUEUE_WAIT_MS (기본 15000)
+ * - RATE_LIMIT_MAX_USERS (기본 10000), RATE_LIMIT_IDLE_MS (기본 600000)
+ */
+@WebFilter("/api/gpt")
+public class GptRateLimitFilter extends HttpFilter {
+    private static final long serialVersionUID = 1L;
+
+    /** GptApiServlet 이 답변 생성을 시작할 때 붙이는 요청 속성 (이게 있는 요청만 한도 조절에 씀) */
+    static final String GENERATION_ATTR = "gpt.generation";
+
+    private static final long QUEUE_WAIT_MS = Env.getLong("GPT_QUEUE_WAIT_MS", 15000);
+
+    private static final TokenBucketLimiter LIMITER = new TokenBucketLimiter("gpt",
+            Env.getInt("GPT_RATE_PER_MIN", 6) / 60.0,
+            Env.getInt("GPT_RATE_BURST", 3),
+            Env.getInt("RATE_LIMIT_MAX_USERS", 10000),
+            Env.getLong("RATE_LIMIT_IDLE_MS", 600000));
+
+    private static final AdaptiveLimiter CONCURRENCY = new AdaptiveLimiter("gpt",
+            Env.getInt("GPT_MAX_CONCURRENT", 8),
+            Env.getInt("GPT_LIMIT_MIN", 2),
+            Env.getInt("GPT_LIMIT_MAX", 16),
+            5, 5000);
+
+    private static final FairQueue QUEUE = new FairQueue("gpt",
+            CONCURRENCY::getLimit,
+            Env.getInt("GPT_QUEUE_MAX", 64));
+
+    @Override
+    protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        // 기록 조회(GET)는 가벼우므로 질문(POST)만 제한합니다.
+        if (!"POST".equals(request.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpSession session = request.getSession(false);
+        String username = session == null ? null : (String) session.getAttribute("username");
+        if (username == null) {
+            // 로그인 안 된 요청은 AuthFilter 가 401 로 처리합니다.
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long waitMillis = LIMITER.tryAcquire(username);
+        if (waitMillis > 0) {
+            reject(response, 429, (waitMillis + 999) / 1000, "질문이 너무 잦습니다. 잠시 후 다시 시도해주세요.");
+            return;
+        }
+
+        boolean admitted;
+        try {
+            admitted = QUEUE.acquire(username, QUEUE_WAIT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            reject(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, 5, "질문이 몰려 있습니다. 잠시 후 다시 시도해주세요.");
+            return;
+        }
+        int inFlight = QUEUE.inUse();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = response.getStatus() >= 500;
+        } finally {
+            QUEUE.release();
+            // 대기열에서 기다린 시간은 빼고, 실제 처리 시간만 한도 조절에 씁니다.
+            if (request.getAttribute(GENERATION_ATTR) != null) {
+                CONCURRENCY.onSample(System.nanoTime() - start, inFlight, failed);
+            }
+        }
+    }
+
+    private void reject(HttpServletResponse response, int status, long retryAfterSeconds, String message)
+            throws IOException {
+        response.setHeader("Retry-After", String.valueOf(Math.max(1, retryAfterSeconds)));
+        ApiJson.fail(response, status, message);
+    }
+}
@@ -5,92 +5,78 @@ import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.*;
 import java.io.IOException;
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.List;
 import java.io.BufferedReader;
-import com.google.gson.Gson; 
+import com.google.gson.stream.JsonWriter;
+import com.example.util.Log;
 
 @WebServlet("/api/links")
 public class LinkApiServlet extends HttpServlet {
     private static final long serialVersionUID = 1L;
 
-    private final Gson gson = new Gson();
-
     // --- JSON 헬퍼 클래스들 ---
-    private static class ApiResponse {
-        boolean success; String message; Object data; 
-        ApiResponse(boolean success, String message, Object data) {
-            this.success = success; this.message = message; this.data = data;
-        }
-    }
-    private static class LinkItem {
+    private static class LinkItem implements ApiJson.Writable {
         int id; String username; String link_name; String url;
+
+        @Override
+        public void writeJson(JsonWriter out) throws IOException {
+            out.beginObject();
+            out.name("id").value(id);
+            out.name("username").value(username);
+            out.name("link_name").value(link_name);
+            out.name("url").value(url);
+            out.endObject();
+        }
+
+        // 조회 결과의 현재 행을 같은 모양으로 바로 씁니다. (객체를 만들지 않음)
+        static void writeRow(JsonWriter out, ResultSet rs) throws IOException, SQLException {
+            out.beginObject();
+            out.name("id").value(rs.getInt("id"));
+            out.name("username").value(rs.getString("username"));
+            out.name("link_name").value(rs.getString("link_name"));
+            out.name("url").value(rs.getString("url"));
+            out.endObject();
+        }
     }
     private static class NewLinkRequest {
         String link_name; String url;
     }
     // --- 헬퍼 클래스 끝 ---
 
+    /** 목록 조회의 한 행을 쓰는 부분 (벤치마크도 같은 것을 씀) */
+    public static final ApiJson.RowWriter LIST_ROW = LinkItem::writeRow;
+
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
-
-        HttpSession session = request.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "로그인이 필요합니다.", null)));
-            return;
-        }
-        String username = (String) session.getAttribute("username");
+        String username = AuthFilter.username(request);
 
-        List<LinkItem> linkList = new ArrayList<>();
         String sql = "SELECT id, username, link_name, url FROM links WHERE username IS NULL OR username = ?";
 
         try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+             PreparedStatement ps = DatabaseConfig.prepareStreaming(conn, sql)) {
             
             ps.setString(1, username);
             try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    LinkItem item = new LinkItem();
-                    item.id = rs.getInt("id");
-                    item.username = rs.getString("username");
-                    item.link_name = rs.getString("link_name");
-                    item.url = rs.getString("url");
-                    linkList.add(item);
-                }
+                ApiJson.okRows(response, "조회 성공", rs, LIST_ROW);
             }
-            response.getWriter().write(gson.toJson(new ApiResponse(true, "조회 성공", linkList)));
 
         } catch (Exception e) {
-            e.printStackTrace();
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "DB 조회 오류: " + e.getMessage(), null)));
+            Log.error("link", "doGet 실패", e, "user", username);
+            ApiJson.fail(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "DB 조회 오류: " + e.getMessage());
         }
     }
 
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         request.setCharacterEncoding("UTF-8");
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
 
-        HttpSession session = request.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "로그인이 필요합니다.", null)));
-            return;
-        }
-        String username = (String) session.getAttribute("username");
+        String username = AuthFilter.username(request);
 
         BufferedReader reader = request.getReader();
-        NewLinkRequest reqData = gson.fromJson(reader, NewLinkRequest.class);
+        NewLinkRequest reqData = ApiJson.GSON.fromJson(reader, NewLinkRequest.class);
 
         if (reqData.link_name == null || reqData.link_name.trim().isEmpty() ||
             reqData.url == null || reqData.url.trim().isEmpty()) {
-            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "링크 이름과 URL을 모두 입력해야 합니다.", null)));
+            ApiJson.fail(response, HttpServletResponse.SC_BAD_REQUEST, "링크 이름과 URL을 모두 입력해야 합니다.");
             return;
         }
 
@@ -111,30 +97,20 @@ public class LinkApiServlet extends HttpServlet {
                     newItem.username = username;
                     newItem.link_name = reqData.link_name;
                     newItem.url = reqData.url;
-                    response.getWriter().write(gson.toJson(new ApiResponse(true, "링크 추가 성공", newItem)));
+                    ApiJson.ok(response, "링크 추가 성공", newItem);
                 } else {
                     throw new SQLException("ID 생성 실패");
                 }
             }
         } catch (Exception e) {
-            e.printStackTrace();
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "DB 저장 오류: " + e.getMessage(), null)));
+            Log.error("link", "doPost 실패", e, "user", username);
+            ApiJson.fail(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "DB 저장 오류: " + e.getMessage());
         }
     }
     
     @Override
     protected void doDelete(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
-
-        HttpSession session = request.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "로그인이 필요합니다.", null)));
-            return;
-        }
-        String username = (String) session.getAttribute("username");
+        String username = AuthFilter.username(request);
         
         int id = Integer.parseInt(request.getParameter("id"));
 
@@ -149,15 +125,13 @@ public class LinkApiServlet extends HttpServlet {
             int rowsAffected = ps.executeUpdate();
 
             if (rowsAffected > 0) {
-                response.getWriter().write(gson.toJson(new ApiResponse(true, "삭제 성공", null)));
+                ApiJson.ok(response, "삭제 성공", null);
             } else {
-                response.setStatus(HttpServletResponse.SC_FORBIDDEN);
-                response.getWriter().write(gson.toJson(new ApiResponse(false, "기본 링크는 삭제할 수 없거나 존재하지 않는 링크입니다.", null)));
+                ApiJson.fail(response, HttpServletResponse.SC_FORBIDDEN, "기본 링크는 삭제할 수 없거나 존재하지 않는 링크입니다.");
             }
         } catch (Exception e) {
-            e.printStackTrace();
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "DB 삭제 오류: " + e.getMessage(), null)));
+            Log.error("link", "doDelete 실패", e, "user", username);
+            ApiJson.fail(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "DB 삭제 오류: " + e.getMessage());
         }
     }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.*;
 import java.io.IOException;
 import java.sql.*;
+import com.example.util.Log;
 
 @WebServlet(urlPatterns = {"/login", "/welcome"})
 public class LoginServlet extends HttpServlet {
@@ -13,8 +14,6 @@ public class LoginServlet extends HttpServlet {
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         request.setCharacterEncoding("UTF-8");
-        response.setContentType("application/json"); 
-        response.setCharacterEncoding("UTF-8");
 
         String username = request.getParameter("username");
         String password = request.getParameter("password");
@@ -29,21 +28,20 @@ public class LoginServlet extends HttpServlet {
                     if (password.equals(dbPassword)) {
                         HttpSession session = request.getSession();
                         session.setAttribute("username", username);
-                        response.getWriter().write("{\"success\": true, \"redirect\": \"welcome\"}"); 
+                        ApiJson.write(response, HttpServletResponse.SC_OK, true, null, "redirect", "welcome");
                     } else {
-                        response.getWriter().write("{\"success\": false, \"message\": \"비밀번호가 일치하지 않습니다.\"}");
+                        ApiJson.fail(response, HttpServletResponse.SC_OK, "비밀번호가 일치하지 않습니다.");
                     }
                 } else {
-                    response.getWriter().write("{\"success\": false, \"message\": \"존재하지 않는 아이디입니다.\"}");
+                    ApiJson.fail(response, HttpServletResponse.SC_OK, "존재하지 않는 아이디입니다.");
                 }
             }
         } catch (Exception e) {
-            e.printStackTrace();
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            if (e.getMessage().contains("환경 변수")) {
-                response.getWriter().write("{\"success\": false, \"message\": \"" + e.getMessage() + "\"}");
+            Log.error("login", "doPost 실패", e, "user", username);
+            if (e.getMessage() != null && e.getMessage().contains("환경 변수")) {
+                ApiJson.fail(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
             } else {
-                response.getWriter().write("{\"success\": false, \"message\": \"DB 오류가 발생했습니다.\"}");
+                ApiJson.fail(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "DB 오류가 발생했습니다.");
             }
         }
     }
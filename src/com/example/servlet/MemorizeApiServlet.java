@@ -8,23 +8,25 @@ import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.io.BufferedReader;
-import com.google.gson.Gson; 
+import com.google.gson.stream.JsonWriter;
+import com.example.util.Log;
 
 @WebServlet("/api/memorize")
 public class MemorizeApiServlet extends HttpServlet {
     private static final long serialVersionUID = 1L;
 
-    private final Gson gson = new Gson();
-
     // --- JSON 헬퍼 클래스들 ---
-    private static class ApiResponse {
-        boolean success; String message; Object data; 
-        ApiResponse(boolean success, String message, Object data) {
-            this.success = success; this.message = message; this.data = data;
-        }
-    }
-    private static class MemorizeItem {
+    private static class MemorizeItem implements ApiJson.Writable {
         int id; String item_text; boolean is_memorized;
+
+        @Override
+        public void writeJson(JsonWriter out) throws IOException {
+            out.beginObject();
+            out.name("id").value(id);
+            out.name("item_text").value(item_text);
+            out.name("is_memorized").value(is_memorized);
+            out.endObject();
+        }
     }
     private static class UpdateMemorizeRequest {
         int item_id; boolean is_memorized;
@@ -33,16 +35,7 @@ public class MemorizeApiServlet extends HttpServlet {
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
-
-        HttpSession session = request.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "로그인이 필요합니다.", null)));
-            return;
-        }
-        String username = (String) session.getAttribute("username");
+        String username = AuthFilter.username(request);
 
         List<MemorizeItem> memorizeList = new ArrayList<>();
         String sql = "SELECT m.id, m.item_text, IFNULL(s.is_memorized, 0) as is_memorized " +
@@ -63,12 +56,11 @@ public class MemorizeApiServlet extends HttpServlet {
                     memorizeList.add(item);
                 }
             }
-            response.getWriter().write(gson.toJson(new ApiResponse(true, "조회 성공", memorizeList)));
+            ApiJson.ok(response, "조회 성공", memorizeList);
 
         } catch (Exception e) {
-            e.printStackTrace();
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "DB 조회 오류: " + e.getMessage(), null)));
+            Log.error("memorize", "doGet 실패", e, "user", username);
+            ApiJson.fail(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "DB 조회 오류: " + e.getMessage());
         }
     }
 
@@ -76,19 +68,11 @@ public class MemorizeApiServlet extends HttpServlet {
     @Override
     protected void doPut(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         request.setCharacterEncoding("UTF-8");
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
 
-        HttpSession session = request.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "로그인이 필요합니다.", null)));
-            return;
-        }
-        String username = (String) session.getAttribute("username");
+        String username = AuthFilter.username(request);
 
         BufferedReader reader = request.getReader();
-        UpdateMemorizeRequest reqData = gson.fromJson(reader, UpdateMemorizeRequest.class);
+        UpdateMemorizeRequest reqData = ApiJson.GSON.fromJson(reader, UpdateMemorizeRequest.class);
 
         String sql = "INSERT INTO user_memorize_status (username, item_id, is_memorized) VALUES (?, ?, ?) " +
                      "ON DUPLICATE KEY UPDATE is_memorized = ?";
@@ -103,12 +87,11 @@ public class MemorizeApiServlet extends HttpServlet {
             
             ps.executeUpdate();
             
-            response.getWriter().write(gson.toJson(new ApiResponse(true, "상태 저장 성공", null)));
+            ApiJson.ok(response, "상태 저장 성공", null);
 
         } catch (Exception e) {
-            e.printStackTrace();
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "DB 저장 오류: " + e.getMessage(), null)));
+            Log.error("memorize", "doPut 실패", e, "user", username);
+            ApiJson.fail(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "DB 저장 오류: " + e.getMessage());
         }
     }
 }
\ No newline at end of file
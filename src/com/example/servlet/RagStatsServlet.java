@@ -0,0 +1,43 @@
+package com.example.servlet;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import com.example.util.RagHelper;
+import com.example.util.SingleFlight;
+
+/**
+ * RAG 외부 호출 합치기(single-flight) 현황을 보여줍니다.
+ * 작업(임베딩/검색/생성)별로 실제 호출 수, 합쳐진 호출 수, 지금 진행 중인 키별 대기자 수를 돌려줍니다.
+ */
+@WebServlet("/api/rag/inflight")
+public class RagStatsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    // --- JSON 헬퍼 클래스들 ---
+    private static class FlightStats {
+        String op; long leaders; long coalesced; List<SingleFlight.InFlight> inFlight;
+    }
+    // --- 헬퍼 클래스 끝 ---
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        List<FlightStats> stats = new ArrayList<>();
+        stats.add(toStats(RagHelper.EMBEDDING_FLIGHT));
+        stats.add(toStats(RagHelper.SEARCH_FLIGHT));
+        stats.add(toStats(RagHelper.GENERATION_FLIGHT));
+        ApiJson.ok(response, "조회 성공", stats);
+    }
+
+    private static FlightStats toStats(SingleFlight<?, ?> flight) {
+        FlightStats s = new FlightStats();
+        s.op = flight.getName();
+        s.leaders = flight.leaderCount();
+        s.coalesced = flight.followerCount();
+        s.inFlight = flight.snapshot();
+        return s;
+    }
+}
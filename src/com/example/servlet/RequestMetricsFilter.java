@@ -0,0 +1,61 @@
+package com.example.servlet;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.*;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import com.example.util.Histogram;
+import com.example.util.Metrics;
+
+/**
+ * 모든 요청의 처리 시간을 서블릿 + HTTP 메서드별 히스토그램(http_request_seconds{servlet,method})으로 남기는 필터입니다.
+ * 5xx 응답과 서블릿이 던진 예외는 원인별로 http_errors_total{servlet,cause} 에 셉니다.
+ * 히스토그램은 (서블릿, 메서드) 로 한 번만 찾아 두므로 요청마다 메트릭 이름 문자열을 만들지 않습니다.
+ */
+@WebFilter("/*")
+public class RequestMetricsFilter extends HttpFilter {
+    private static final long serialVersionUID = 1L;
+
+    // 서블릿 이름 -> HTTP 메서드 -> 히스토그램
+    private static final Map<String, Map<String, Histogram>> LATENCY = new ConcurrentHashMap<>();
+    // 이 밖의 메서드는 OTHER 로 묶습니다. (아무 메서드 이름으로 요청해서 시계열을 늘리지 못하게)
+    private static final Set<String> METHODS = Set.of("GET", "POST", "PUT", "DELETE", "PATCH", "HEAD", "OPTIONS");
+
+    @Override
+    protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        String servlet = request.getHttpServletMapping().getServletName();
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+            if (response.getStatus() >= 500) {
+                countError(servlet, "status_" + response.getStatus());
+            }
+        } catch (IOException | ServletException | RuntimeException e) {
+            countError(servlet, e.getClass().getSimpleName());
+            throw e;
+        } finally {
+            String method = request.getMethod();
+            histogram(servlet, METHODS.contains(method) ? method : "OTHER").observeSince(start);
+        }
+    }
+
+    private static Histogram histogram(String servlet, String method) {
+        return LATENCY.computeIfAbsent(servlet, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(method, m -> Metrics.histogram(
+                        Metrics.name("http_request_seconds", "servlet", shortName(servlet), "method", m)));
+    }
+
+    private static void countError(String servlet, String cause) {
+        Metrics.inc(Metrics.name("http_errors_total", "servlet", shortName(servlet), "cause", cause));
+    }
+
+    // 어노테이션으로 등록한 서블릿은 이름이 클래스 전체 이름이므로 패키지를 뗍니다.
+    private static String shortName(String servlet) {
+        return servlet.substring(servlet.lastIndexOf('.') + 1);
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.servlet;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.*;
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.example.util.Log;
+import com.example.util.UserSearchIndex;
+
+/**
+ * 내 할 일 / 메모 / GPT 질문 기록 통합 검색입니다. (GET /api/search?q=검색어&limit=20)
+ * MySQL LIKE 검색 대신 UserSearchIndex(사용자별 역색인)에서 찾습니다.
+ */
+@WebServlet("/api/search")
+public class SearchApiServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private static final int MAX_LIMIT = 50;
+
+    @Override
+    public void init() throws ServletException {
+        // 사용자가 처음 검색할 때 한 번만 DB 에서 읽어 색인을 만들고, 미리보기는 결과 문서만 다시 읽습니다.
+        UserSearchIndex.INSTANCE.setLoader(new UserSearchIndex.Loader() {
+            @Override
+            public List<UserSearchIndex.Entry> load(String username, int maxRows) throws Exception {
+                return loadUserData(username, maxRows);
+            }
+
+            @Override
+            public Map<String, String> texts(String username, List<UserSearchIndex.Result> hits) throws Exception {
+                return loadTexts(username, hits);
+            }
+        });
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        request.setCharacterEncoding("UTF-8");
+
+        String username = AuthFilter.username(request);
+
+        String query = request.getParameter("q");
+        if (query == null || query.trim().isEmpty()) {
+            ApiJson.fail(response, HttpServletResponse.SC_BAD_REQUEST, "검색어가 비어있습니다.");
+            return;
+        }
+
+        int limit = 20;
+        try {
+            if (request.getParameter("limit") != null) {
+                limit = Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(request.getParameter("limit"))));
+            }
+        } catch (NumberFormatException e) {
+            // 잘못된 값이면 기본값 사용
+        }
+
+        long start = System.nanoTime();
+        try {
+            List<UserSearchIndex.Result> results = UserSearchIndex.INSTANCE.search(username, query, limit);
+            Log.info("search", "query", "user", username, "hits", results.size(),
+                    "ms", (System.nanoTime() - start) / 1_000_000);
+            ApiJson.ok(response, "검색 성공", results);
+        } catch (Exception e) {
+            Log.error("search", "doGet 실패", e, "user", username);
+            ApiJson.fail(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "검색 오류: " + e.getMessage());
+        }
+    }
+
+    // 종류별로 최신 것부터 maxRows 건만 읽습니다. (본문은 색인할 때만 쓰고 들고 있지 않음)
+    private static List<UserSearchIndex.Entry> loadUserData(String username, int maxRows) throws Exception {
+        List<UserSearchIndex.Entry> entries = new ArrayList<>();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT id, task FROM todos WHERE username = ? ORDER BY id DESC LIMIT ?")) {
+                ps.setString(1, username);
+                ps.setInt(2, maxRows);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        entries.add(new UserSearchIndex.Entry("todo", String.valueOf(rs.getInt("id")), rs.getString("task")));
+                    }
+                }
+            }
+            String memo = loadMemo(conn, username);
+            if (memo != null) {
+                entries.add(new UserSearchIndex.Entry("memo", username, memo));
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT id, question, answer FROM gpt_history WHERE username = ? ORDER BY id DESC LIMIT ?")) {
+                ps.setString(1, username);
+                ps.setInt(2, maxRows);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        entries.add(new UserSearchIndex.Entry("gpt", String.valueOf(rs.getInt("id")),
+                                rs.getString("question") + "\n" + rs.getString("answer")));
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    // 검색 결과로 고른 문서(최대 MAX_LIMIT 건)의 본문만 다시 읽습니다. (미리보기용)
+    private static Map<String, String> loadTexts(String username, List<UserSearchIndex.Result> hits) throws Exception {
+        List<Integer> todoIds = new ArrayList<>();
+        List<Integer> gptIds = new ArrayList<>();
+        boolean memo = false;
+        for (UserSearchIndex.Result hit : hits) {
+            if ("todo".equals(hit.type)) {
+                todoIds.add(Integer.parseInt(hit.id));
+            } else if ("gpt".equals(hit.type)) {
+                gptIds.add(Integer.parseInt(hit.id));
+            } else if ("memo".equals(hit.type)) {
+                memo = true;
+            }
+        }
+
+        Map<String, String> texts = new HashMap<>();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            if (!todoIds.isEmpty()) {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT id, task FROM todos WHERE username = ? AND id IN (" + placeholders(todoIds.size()) + ")")) {
+                    bind(ps, username, todoIds);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            texts.put("todo:" + rs.getInt("id"), rs.getString("task"));
+                        }
+                    }
+                }
+            }
+            if (memo) {
+                String content = loadMemo(conn, username);
+                if (content != null) {
+                    texts.put("memo:" + username, content);
+                }
+            }
+            if (!gptIds.isEmpty()) {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT id, question, answer FROM gpt_history WHERE username = ? AND id IN (" + placeholders(gptIds.size()) + ")")) {
+                    bind(ps, username, gptIds);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            texts.put("gpt:" + rs.getInt("id"), rs.getString("question") + "\n" + rs.getString("answer"));
+                        }
+                    }
+                }
+            }
+        }
+        return texts;
+    }
+
+    private static String loadMemo(Connection conn, String username) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT content FROM memos WHERE username = ?")) {
+            ps.setString(1, username);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString("content") : null;
+            }
+        }
+    }
+
+    private static String placeholders(int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+
+    private static void bind(PreparedStatement ps, String username, List<Integer> ids) throws SQLException {
+        ps.setString(1, username);
+        for (int i = 0; i < ids.size(); i++) {
+            ps.setInt(i + 2, ids.get(i));
+        }
+    }
+}
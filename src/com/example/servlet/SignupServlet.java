@@ -5,6 +5,7 @@ import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.*;
 import java.io.IOException;
 import java.sql.*;
+import com.example.util.Log;
 
 @WebServlet("/signup")
 public class SignupServlet extends HttpServlet {
@@ -21,8 +22,6 @@ public class SignupServlet extends HttpServlet {
             throws ServletException, IOException {
 
         request.setCharacterEncoding("UTF-8");
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
 
         String email = request.getParameter("email");
         String name = request.getParameter("name");
@@ -34,7 +33,7 @@ public class SignupServlet extends HttpServlet {
         if (username == null || username.isEmpty()
                 || password == null || password.isEmpty()
                 || email == null || email.isEmpty()) {
-            response.getWriter().write("{\"success\": false, \"message\": \"필수 입력값이 누락되었습니다.\"}");
+            ApiJson.fail(response, HttpServletResponse.SC_OK, "필수 입력값이 누락되었습니다.");
             return;
         }
 
@@ -71,13 +70,13 @@ public class SignupServlet extends HttpServlet {
 
             if (usernameExists) {
                 conn.rollback();
-                response.getWriter().write("{\"success\": false, \"message\": \"이미 존재하는 아이디입니다.\"}");
+                ApiJson.fail(response, HttpServletResponse.SC_OK, "이미 존재하는 아이디입니다.");
                 return;
             }
 
             if (emailExists) {
                 conn.rollback();
-                response.getWriter().write("{\"success\": false, \"message\": \"이미 존재하는 이메일입니다.\"}");
+                ApiJson.fail(response, HttpServletResponse.SC_OK, "이미 존재하는 이메일입니다.");
                 return;
             }
 
@@ -94,27 +93,24 @@ public class SignupServlet extends HttpServlet {
             int rows = ps.executeUpdate();
             if (rows > 0) {
                 conn.commit();
-                response.getWriter().write("{\"success\": true, \"message\": \"회원가입이 완료되었습니다.\"}");
+                ApiJson.ok(response, "회원가입이 완료되었습니다.", null);
             } else {
                 conn.rollback();
-                response.getWriter().write("{\"success\": false, \"message\": \"회원가입에 실패했습니다.\"}");
+                ApiJson.fail(response, HttpServletResponse.SC_OK, "회원가입에 실패했습니다.");
             }
 
         } catch (SQLException e) {
-            try { if (conn != null) conn.rollback(); } catch (SQLException se) { se.printStackTrace(); }
-            e.printStackTrace();
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-
+            try { if (conn != null) conn.rollback(); } catch (SQLException se) { Log.error("signup", "롤백 실패", se, "user", username); }
+            Log.error("signup", "doPost 실패", e, "user", username);
             if (e.getMessage() != null && e.getMessage().contains("환경 변수")) {
-                response.getWriter().write("{\"success\": false, \"message\": \"" + e.getMessage() + "\"}");
+                ApiJson.fail(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
             } else {
-                response.getWriter().write("{\"success\": false, \"message\": \"DB 작업 중 오류가 발생했습니다.\"}");
+                ApiJson.fail(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "DB 작업 중 오류가 발생했습니다.");
             }
 
         } catch (ClassNotFoundException e) {
-            e.printStackTrace();
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            response.getWriter().write("{\"success\": false, \"message\": \"DB 드라이버를 찾을 수 없습니다.\"}");
+            Log.error("signup", "doPost 실패", e, "user", username);
+            ApiJson.fail(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "DB 드라이버를 찾을 수 없습니다.");
 
         } finally {
             try { if (ps != null) ps.close(); } catch (SQLException ignore) {}
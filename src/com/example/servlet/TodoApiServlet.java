@@ -5,26 +5,36 @@ import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.*;
 import java.io.IOException;
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.List;
 import java.io.BufferedReader;
-import com.google.gson.Gson; 
+import com.google.gson.stream.JsonWriter;
+import com.example.util.Log;
+import com.example.util.UserSearchIndex;
 
 @WebServlet("/api/todo")
 public class TodoApiServlet extends HttpServlet {
     private static final long serialVersionUID = 1L;
 
-    private final Gson gson = new Gson();
-
     // --- JSON 헬퍼 클래스들 ---
-    private static class ApiResponse {
-        boolean success; String message; Object data; 
-        ApiResponse(boolean success, String message, Object data) {
-            this.success = success; this.message = message; this.data = data;
-        }
-    }
-    private static class TodoItem {
+    private static class TodoItem implements ApiJson.Writable {
         int id; String task; boolean is_completed;
+
+        @Override
+        public void writeJson(JsonWriter out) throws IOException {
+            out.beginObject();
+            out.name("id").value(id);
+            out.name("task").value(task);
+            out.name("is_completed").value(is_completed);
+            out.endObject();
+        }
+
+        // 조회 결과의 현재 행을 같은 모양으로 바로 씁니다. (객체를 만들지 않음)
+        static void writeRow(JsonWriter out, ResultSet rs) throws IOException, SQLException {
+            out.beginObject();
+            out.name("id").value(rs.getInt("id"));
+            out.name("task").value(rs.getString("task"));
+            out.name("is_completed").value(rs.getBoolean("is_completed"));
+            out.endObject();
+        }
     }
     private static class NewTodoRequest {
         String task;
@@ -34,65 +44,41 @@ public class TodoApiServlet extends HttpServlet {
     }
     // --- 헬퍼 클래스 끝 ---
 
+    /** 목록 조회의 한 행을 쓰는 부분 (벤치마크도 같은 것을 씀) */
+    public static final ApiJson.RowWriter LIST_ROW = TodoItem::writeRow;
+
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
+        String username = AuthFilter.username(request);
 
-        HttpSession session = request.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "로그인이 필요합니다.", null)));
-            return;
-        }
-        String username = (String) session.getAttribute("username");
-
-        List<TodoItem> todoList = new ArrayList<>();
         String sql = "SELECT id, task, is_completed FROM todos WHERE username = ? ORDER BY created_at DESC";
 
         try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+             PreparedStatement ps = DatabaseConfig.prepareStreaming(conn, sql)) {
             
             ps.setString(1, username);
             try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    TodoItem item = new TodoItem();
-                    item.id = rs.getInt("id");
-                    item.task = rs.getString("task");
-                    item.is_completed = rs.getBoolean("is_completed");
-                    todoList.add(item);
-                }
+                ApiJson.okRows(response, "조회 성공", rs, LIST_ROW);
             }
-            response.getWriter().write(gson.toJson(new ApiResponse(true, "조회 성공", todoList)));
 
         } catch (Exception e) {
-            e.printStackTrace();
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "DB 조회 오류: " + e.getMessage(), null)));
+            Log.error("todo", "doGet 실패", e, "user", username);
+            ApiJson.fail(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "DB 조회 오류: " + e.getMessage());
         }
     }
 
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         request.setCharacterEncoding("UTF-8");
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
 
-        HttpSession session = request.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "로그인이 필요합니다.", null)));
-            return;
-        }
-        String username = (String) session.getAttribute("username");
+        String username = AuthFilter.username(request);
 
         BufferedReader reader = request.getReader();
-        NewTodoRequest reqData = gson.fromJson(reader, NewTodoRequest.class);
+        NewTodoRequest reqData = ApiJson.GSON.fromJson(reader, NewTodoRequest.class);
         String task = reqData.task;
 
         if (task == null || task.trim().isEmpty()) {
-            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "할 일 내용이 비어있습니다.", null)));
+            ApiJson.fail(response, HttpServletResponse.SC_BAD_REQUEST, "할 일 내용이 비어있습니다.");
             return;
         }
 
@@ -111,34 +97,26 @@ public class TodoApiServlet extends HttpServlet {
                     newItem.id = generatedKeys.getInt(1);
                     newItem.task = task;
                     newItem.is_completed = false; 
-                    response.getWriter().write(gson.toJson(new ApiResponse(true, "추가 성공", newItem)));
+                    UserSearchIndex.INSTANCE.put(username, "todo", String.valueOf(newItem.id), task);
+                    ApiJson.ok(response, "추가 성공", newItem);
                 } else {
                     throw new SQLException("ID 생성 실패");
                 }
             }
         } catch (Exception e) {
-            e.printStackTrace();
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "DB 저장 오류: " + e.getMessage(), null)));
+            Log.error("todo", "doPost 실패", e, "user", username);
+            ApiJson.fail(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "DB 저장 오류: " + e.getMessage());
         }
     }
     
     @Override
     protected void doPut(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         request.setCharacterEncoding("UTF-8");
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
 
-        HttpSession session = request.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "로그인이 필요합니다.", null)));
-            return;
-        }
-        String username = (String) session.getAttribute("username");
+        String username = AuthFilter.username(request);
 
         BufferedReader reader = request.getReader();
-        UpdateTodoRequest reqData = gson.fromJson(reader, UpdateTodoRequest.class);
+        UpdateTodoRequest reqData = ApiJson.GSON.fromJson(reader, UpdateTodoRequest.class);
 
         String sql = "UPDATE todos SET is_completed = ? WHERE id = ? AND username = ?";
         
@@ -152,31 +130,21 @@ public class TodoApiServlet extends HttpServlet {
             int rowsAffected = ps.executeUpdate();
 
             if (rowsAffected > 0) {
-                response.getWriter().write(gson.toJson(new ApiResponse(true, "업데이트 성공", null)));
+                ApiJson.ok(response, "업데이트 성공", null);
             } else {
-                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                response.getWriter().write(gson.toJson(new ApiResponse(false, "항목을 찾을 수 없거나 권한이 없습니다.", null)));
+                ApiJson.fail(response, HttpServletResponse.SC_NOT_FOUND, "항목을 찾을 수 없거나 권한이 없습니다.");
             }
         } catch (Exception e) {
-            e.printStackTrace();
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "DB 업데이트 오류: " + e.getMessage(), null)));
+            Log.error("todo", "doPut 실패", e, "user", username);
+            ApiJson.fail(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "DB 업데이트 오류: " + e.getMessage());
         }
     }
 
     @Override
     protected void doDelete(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         request.setCharacterEncoding("UTF-8");
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
 
-        HttpSession session = request.getSession(false);
-        if (session == null || session.getAttribute("username") == null) {
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "로그인이 필요합니다.", null)));
-            return;
-        }
-        String username = (String) session.getAttribute("username");
+        String username = AuthFilter.username(request);
         
         int id = Integer.parseInt(request.getParameter("id"));
 
@@ -191,15 +159,14 @@ public class TodoApiServlet extends HttpServlet {
             int rowsAffected = ps.executeUpdate();
 
             if (rowsAffected > 0) {
-                response.getWriter().write(gson.toJson(new ApiResponse(true, "삭제 성공", null)));
+                UserSearchIndex.INSTANCE.remove(username, "todo", String.valueOf(id));
+                ApiJson.ok(response, "삭제 성공", null);
             } else {
-                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                response.getWriter().write(gson.toJson(new ApiResponse(false, "항목을 찾을 수 없거나 권한이 없습니다.", null)));
+                ApiJson.fail(response, HttpServletResponse.SC_NOT_FOUND, "항목을 찾을 수 없거나 권한이 없습니다.");
             }
         } catch (Exception e) {
-            e.printStackTrace();
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            response.getWriter().write(gson.toJson(new ApiResponse(false, "DB 삭제 오류: " + e.getMessage(), null)));
+            Log.error("todo", "doDelete 실패", e, "user", username);
+            ApiJson.fail(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "DB 삭제 오류: " + e.getMessage());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+package com.example.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 응답 시간을 보고 동시 처리 한도를 스스로 조절하는 limiter 입니다. (gradient 방식)
+ * - 한가할 때의 응답 시간(기준 RTT)과 최근 응답 시간(짧은 구간 평균)을 비교해서, 최근이 기준의 2배를 넘으면
+ *   한도를 그 비율만큼 줄이고, 그 안이면 sqrt(한도) 만큼 여유를 더해 천천히 늘립니다.
+ * - 기준 RTT 는 구간별 가장 빠른 응답의 최솟값이고, 조금씩 위로 풀어줘서(구간당 0.5%) 서비스가 실제로 느려진 경우도 따라갑니다.
+ * - 실패(타임아웃/5xx)는 과부하 신호로 보고 한도를 바로 10% 줄입니다.
+ * - 한도를 넘는 요청은 기다리게 하지 않고 바로 거절합니다. (Tomcat 스레드/힙에 요청이 쌓이지 않게)
+ */
+public class AdaptiveLimiter {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double RTT_TOLERANCE = 2.0;
+    private static final double BASE_RTT_DRIFT = 1.005;
+    private static final double DROP_FACTOR = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int windowSamples;
+    private final long windowNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+
+    // 구간 샘플 (this 로 동기화)
+    private long windowStart = System.nanoTime();
+    private long windowRttSum;
+    private long windowMinRtt = Long.MAX_VALUE;
+    private int windowCount;
+    private int windowMaxInFlight;
+    private boolean windowDropped;
+    private double baseRtt;
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit) {
+        this(name, initialLimit, minLimit, maxLimit, 20, 1000);
+    }
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit, int windowSamples, long windowMillis) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowSamples = windowSamples;
+        this.windowNanos = windowMillis * 1_000_000L;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+
+        Metrics.gauge(Metrics.name("adaptive_limit", "limiter", name), this::getLimit);
+        Metrics.gauge(Metrics.name("adaptive_in_flight", "limiter", name), inFlight::get);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** 현재 동시 처리 한도 */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 자리가 있으면 잡고 그때의 동시 처리 수(이 요청 포함, 1 이상)를, 한도가 찼으면 0 을 돌려줍니다.
+     * (0 이 아니면 반드시 그 값을 release 에 넘겨서 호출)
+     */
+    public int tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                Metrics.inc(Metrics.name("adaptive_shed_total", "limiter", name));
+                return 0;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * tryAcquire 로 잡은 자리를 돌려주면서 걸린 시간을 알려줍니다.
+     * inFlightAtStart 는 tryAcquire 가 돌려준 값입니다. (끝날 때의 동시 처리 수가 아니라 시작할 때 값으로 한도 사용률을 봄)
+     * failed 는 과부하로 볼 수 있는 실패(타임아웃, 5xx)일 때만 true 로 넘깁니다.
+     */
+    public void release(long rttNanos, int inFlightAtStart, boolean failed) {
+        inFlight.decrementAndGet();
+        onSample(rttNanos, inFlightAtStart, failed);
+    }
+
+    /**
+     * 자리 관리는 밖에서 하고(FairQueue 등) 응답 시간만 알려줄 때 씁니다.
+     */
+    public synchronized void onSample(long rttNanos, int inFlightAtStart, boolean failed) {
+        windowRttSum += rttNanos;
+        windowMinRtt = Math.min(windowMinRtt, rttNanos);
+        windowCount++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlightAtStart);
+        windowDropped |= failed;
+
+        long now = System.nanoTime();
+        // 구간은 시간(windowMillis)과 샘플 수(windowSamples)를 둘 다 채워야 끝납니다. (트래픽이 많아도 기준 RTT 가 빨리 풀리지 않게)
+        if (windowCount < windowSamples || now - windowStart < windowNanos) {
+            return;
+        }
+        double shortRtt = (double) windowRttSum / windowCount;
+        double current = limit;
+        double next;
+        if (windowDropped) {
+            next = current * DROP_FACTOR;
+        } else {
+            baseRtt = baseRtt == 0 ? windowMinRtt : Math.min(windowMinRtt, baseRtt * BASE_RTT_DRIFT);
+            // 최근이 기준보다 허용치 이상 느리면 gradient < 1 로 한도를 줄이고, 아니면 1 (0.5 ~ 1 로 제한)
+            double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * baseRtt / shortRtt));
+            double headroom = Math.sqrt(current);
+            // 한도의 절반도 안 쓰고 있으면 늘려도 의미가 없으므로 키우지 않습니다.
+            if (windowMaxInFlight < current / 2) {
+                headroom = 0;
+            }
+            // 한 구간의 값으로 크게 출렁이지 않도록 조금씩만 반영합니다.
+            next = current * (1 - SMOOTHING) + (current * gradient + headroom) * SMOOTHING;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+
+        windowStart = now;
+        windowRttSum = 0;
+        windowMinRtt = Long.MAX_VALUE;
+        windowCount = 0;
+        windowMaxInFlight = 0;
+        windowDropped = false;
+    }
+}
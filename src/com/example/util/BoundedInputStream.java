@@ -0,0 +1,70 @@
+package com.example.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 정해진 바이트 수까지만 읽게 하는 입력 스트림입니다.
+ * 외부 API 응답이 비정상적으로 크면(거대한 메타데이터, 끝나지 않는 답변 등) 다 읽기 전에 TooLargeException 으로 끊어서,
+ * 메모리 한도가 작은 파드에서 응답 하나 때문에 힙이 터지지 않게 합니다.
+ */
+public class BoundedInputStream extends FilterInputStream {
+
+    /** 응답이 한도를 넘었을 때 */
+    public static class TooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public TooLargeException(String name, long limit) {
+            super(name + " 응답이 너무 큽니다. (한도 " + limit + " bytes)");
+        }
+    }
+
+    private final String name;
+    private final long limit;
+    private long read;
+
+    public BoundedInputStream(InputStream in, long limit, String name) {
+        super(in);
+        this.limit = limit;
+        this.name = name;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        // 한도 바로 다음 1바이트까지만 요청해서, 넘었는지 알 수 있을 만큼만 읽습니다.
+        int n = super.read(b, off, (int) Math.min(len, limit - read + 1));
+        if (n > 0) {
+            count(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(Math.min(n, limit - read + 1));
+        count(skipped);
+        return skipped;
+    }
+
+    private void count(long n) throws TooLargeException {
+        read += n;
+        if (read > limit) {
+            throw new TooLargeException(name, limit);
+        }
+    }
+
+    /** 지금까지 읽은 바이트 수 */
+    public long bytesRead() {
+        return read;
+    }
+}
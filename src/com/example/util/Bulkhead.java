@@ -0,0 +1,54 @@
+package com.example.util;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 외부 의존성별 동시 호출 수 제한(벌크헤드)입니다.
+ * 생성(Gemini) 호출이 밀려도 임베딩/검색 호출 자리까지 잡아먹지 않도록 의존성마다 따로 둡니다.
+ */
+public class Bulkhead {
+
+    /** 자리가 나지 않아서 호출을 포기했을 때 던집니다. */
+    public static class FullException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public FullException(String name) {
+            super(name + " 동시 호출 한도를 넘어 요청을 거절했습니다.");
+        }
+    }
+
+    private final String name;
+    private final int maxConcurrent;
+    private final long maxWaitMillis;
+    private final Semaphore permits;
+
+    public Bulkhead(String name, int maxConcurrent, long maxWaitMillis) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = new Semaphore(maxConcurrent, true);
+
+        Metrics.gauge(Metrics.name("rag_upstream_in_flight", "upstream", name), this::inFlight);
+        Metrics.gauge(Metrics.name("rag_upstream_max_concurrent", "upstream", name), () -> maxConcurrent);
+        Metrics.gauge(Metrics.name("rag_upstream_waiting", "upstream", name), permits::getQueueLength);
+    }
+
+    public int inFlight() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * 최대 maxWaitMillis 동안 자리를 기다립니다. 끝내 못 얻으면 FullException 을 던집니다.
+     */
+    public void acquire() throws InterruptedException {
+        if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+            Metrics.inc(Metrics.name("rag_bulkhead_rejected_total", "upstream", name));
+            throw new FullException(name);
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+}
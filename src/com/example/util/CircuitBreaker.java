@@ -0,0 +1,150 @@
+package com.example.util;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 외부 API(Gemini, Pinecone) 호출용 서킷 브레이커입니다.
+ * 연속 실패가 threshold 번 쌓이면 OPEN 이 되어 openMillis 동안 호출을 바로 거절하고,
+ * 그 뒤에는 HALF_OPEN 상태에서 요청 1건만 시험 삼아 흘려보냅니다.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /** 브레이커가 열려 있어서 호출하지 않고 바로 거절했을 때 던집니다. */
+    public static class OpenException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public OpenException(String name) {
+            super(name + " 서킷이 열려 있어 호출을 건너뜁니다.");
+        }
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean trialInFlight = new AtomicBoolean();
+    private volatile State state = State.CLOSED;
+    private volatile long openedAt;
+
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+
+        Metrics.gauge(Metrics.name("rag_circuit_state", "upstream", name), () -> getState().ordinal());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 현재 상태를 돌려줍니다. OPEN 유지 시간이 지났으면 HALF_OPEN 으로 보입니다.
+     */
+    public State getState() {
+        State s = state;
+        if (s == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            return State.HALF_OPEN;
+        }
+        return s;
+    }
+
+    /**
+     * 부수효과 없이 "지금 호출하면 받아줄지"만 확인합니다. (서블릿에서 RAG 생략 여부 판단용)
+     */
+    public boolean isCallPermitted() {
+        State s = getState();
+        return s == State.CLOSED || (s == State.HALF_OPEN && !trialInFlight.get());
+    }
+
+    /**
+     * 실제로 호출 권한을 얻습니다. HALF_OPEN 에서는 시험 호출 1건만 통과시킵니다.
+     */
+    public boolean tryAcquire() {
+        State s = getState();
+        if (s == State.CLOSED) {
+            return true;
+        }
+        if (s == State.HALF_OPEN && trialInFlight.compareAndSet(false, true)) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+        Metrics.inc(Metrics.name("rag_circuit_rejected_total", "upstream", name));
+        return false;
+    }
+
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        if (state != State.CLOSED) {
+            Log.warn("circuit", "복구됨 (CLOSED)", "upstream", name);
+        }
+        state = State.CLOSED;
+        trialInFlight.set(false);
+    }
+
+    /**
+     * tryAcquire 로 얻은 권한을 결과 없이 돌려줍니다. (다른 이유로 실제 호출을 못 했을 때 HALF_OPEN 시험 자리를 비움)
+     */
+    public void release() {
+        trialInFlight.set(false);
+    }
+
+    public void onFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            if (state != State.OPEN) {
+                Metrics.inc(Metrics.name("rag_circuit_opened_total", "upstream", name));
+                Log.warn("circuit", "차단 (OPEN)", "upstream", name, "failures", failures, "open_ms", openMillis);
+            }
+            openedAt = System.currentTimeMillis();
+            state = State.OPEN;
+        }
+        trialInFlight.set(false);
+    }
+
+    /**
+     * 브레이커를 거쳐 호출합니다. 열려 있으면 OpenException 을 던집니다.
+     */
+    public <T> T call(Callable<T> action) throws Exception {
+        if (!tryAcquire()) {
+            throw new OpenException(name);
+        }
+        boolean recorded = false;
+        try {
+            T result = action.call();
+            onSuccess();
+            recorded = true;
+            return result;
+        } catch (Exception e) {
+            if (isFailure(e)) {
+                onFailure();
+                recorded = true;
+            }
+            throw e;
+        } finally {
+            // Error 나 상대 서버 탓이 아닌 실패로 끝났으면 HALF_OPEN 시험 자리만 비웁니다. (안 비우면 영영 닫히지 않음)
+            if (!recorded) {
+                release();
+            }
+        }
+    }
+
+    /**
+     * 상대 서버 장애로 셀 실패인지 알려줍니다. 타임아웃/I/O 오류와 5xx 응답만 세고,
+     * 4xx(요청 쪽 잘못), 인터럽트, 파싱 중 런타임 오류 같은 것은 세지 않습니다.
+     */
+    public static boolean isFailure(Exception e) {
+        if (e instanceof Upstream.StatusException) {
+            return ((Upstream.StatusException) e).status >= 500;
+        }
+        return e instanceof IOException;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 검색 결과를 Gemini 프롬프트에 넣을 문맥으로 조립합니다.
+ * 1) 거의 같은 내용의 중복 문서는 하나만 남기고 (RAG_CONTEXT_DEDUP_PCT)
+ * 2) 점수 높은 순서대로 토큰 예산 안에 채워 넣습니다. (RAG_CONTEXT_TOKEN_BUDGET)
+ * 점수가 낮은 결과는 여기서 거르지 않고 RagHelper.retrieve 가 섞기 전에 벡터 코사인 유사도로 거릅니다.
+ * (키워드 점수는 1등 대비 비율, 섞은 점수는 가중합이라 한 임계값으로 비교할 수 없음)
+ * 문맥이 길수록 Gemini 응답이 느려지므로, 요청 로그의 사용/버림 토큰 수를 보고 예산을 조정합니다.
+ */
+public final class ContextAssembler {
+
+    private static final double DEDUP_SIMILARITY = Env.getInt("RAG_CONTEXT_DEDUP_PCT", 80) / 100.0;
+    private static final int TOKEN_BUDGET = Env.getInt("RAG_CONTEXT_TOKEN_BUDGET", 2000);
+
+    // 예산이 이만큼도 안 남았으면 잘라서 넣지 않고 버립니다. (문장 조각만 들어가면 오히려 방해)
+    private static final int MIN_PARTIAL_TOKENS = 200;
+
+    private static final String SEPARATOR = "\n---\n";
+
+    public static class Result {
+        public final String context;
+        public final int usedTokens;
+        public final int droppedTokens;
+        public final int keptPassages;
+        public final int droppedPassages;
+
+        Result(String context, int usedTokens, int droppedTokens, int keptPassages, int droppedPassages) {
+            this.context = context;
+            this.usedTokens = usedTokens;
+            this.droppedTokens = droppedTokens;
+            this.keptPassages = keptPassages;
+            this.droppedPassages = droppedPassages;
+        }
+    }
+
+    private ContextAssembler() {
+    }
+
+    public static Result assemble(List<SearchHit> hits) {
+        return assemble(hits, TOKEN_BUDGET);
+    }
+
+    public static Result assemble(List<SearchHit> hits, int tokenBudget) {
+        List<SearchHit> ranked = new ArrayList<>(hits);
+        ranked.sort((a, b) -> Double.compare(b.score, a.score));
+
+        StringBuilder context = new StringBuilder();
+        List<Set<String>> keptShingles = new ArrayList<>();
+        int used = 0;
+        int dropped = 0;
+        int kept = 0;
+        int droppedCount = 0;
+
+        for (SearchHit hit : ranked) {
+            int tokens = estimateTokens(hit.text);
+            Set<String> shingles = new HashSet<>(Tokenizer.tokenize(hit.text));
+            if (isNearDuplicate(shingles, keptShingles)) {
+                dropped += tokens;
+                droppedCount++;
+                continue;
+            }
+
+            int remaining = tokenBudget - used;
+            if (tokens <= remaining) {
+                context.append(hit.text).append(SEPARATOR);
+                used += tokens;
+            } else if (remaining >= MIN_PARTIAL_TOKENS) {
+                // 예산이 꽤 남았으면 앞부분만 잘라서라도 넣습니다. (문서 앞쪽이 보통 요약/제목)
+                String head = truncateToTokens(hit.text, remaining);
+                int headTokens = estimateTokens(head);
+                context.append(head).append(SEPARATOR);
+                used += headTokens;
+                dropped += tokens - headTokens;
+            } else {
+                dropped += tokens;
+                droppedCount++;
+                continue;
+            }
+            keptShingles.add(shingles);
+            kept++;
+        }
+
+        Metrics.add("rag_context_tokens_used_total", used);
+        Metrics.add("rag_context_tokens_dropped_total", dropped);
+        return new Result(context.toString(), used, dropped, kept, droppedCount);
+    }
+
+    /**
+     * Gemini 토큰 수 근사치: 한글은 대략 글자당 1토큰, 그 외(영문/숫자/기호)는 4글자당 1토큰으로 셉니다.
+     */
+    public static int estimateTokens(String text) {
+        int hangul = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '가' && c <= '힣') {
+                hangul++;
+            } else if (!Character.isWhitespace(c)) {
+                other++;
+            }
+        }
+        return hangul + (other + 3) / 4;
+    }
+
+    static String truncateToTokens(String text, int maxTokens) {
+        int hangul = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '가' && c <= '힣') {
+                hangul++;
+            } else if (!Character.isWhitespace(c)) {
+                other++;
+            }
+            if (hangul + (other + 3) / 4 > maxTokens) {
+                return text.substring(0, i);
+            }
+        }
+        return text;
+    }
+
+    private static boolean isNearDuplicate(Set<String> shingles, List<Set<String>> kept) {
+        for (Set<String> other : kept) {
+            if (jaccard(shingles, other) >= DEDUP_SIMILARITY) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return 1;
+        }
+        Set<String> small = a.size() <= b.size() ? a : b;
+        Set<String> large = small == a ? b : a;
+        int common = 0;
+        for (String s : small) {
+            if (large.contains(s)) {
+                common++;
+            }
+        }
+        return (double) common / (a.size() + b.size() - common);
+    }
+}
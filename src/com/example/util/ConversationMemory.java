@@ -0,0 +1,172 @@
+package com.example.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 사용자별 최근 대화(질문/답변)를 메모리에 들고 있는 고정 크기 링 버퍼입니다.
+ * 후속 질문("그럼 그거 가격은?")에 앞 대화를 붙여 보내려고 씁니다.
+ * - 처음 질문할 때만 loader 로 gpt_history 에서 최근 N 턴을 읽고, 그 뒤로는 답변마다 append 로 갱신합니다.
+ * - 사용자당 최대 maxTurns 턴, 프롬프트에 넣을 때는 토큰 예산 안에서 최신 턴부터 고릅니다.
+ * - idleMillis 동안 질문이 없거나 maxUsers 를 넘으면 가장 오래 안 쓴 사용자부터 메모리에서 내립니다.
+ */
+public class ConversationMemory {
+
+    /** 대화 1턴 */
+    public static class Turn {
+        public final String question;
+        public final String answer;
+
+        public Turn(String question, String answer) {
+            this.question = question;
+            this.answer = answer;
+        }
+
+        int tokens() {
+            return ContextAssembler.estimateTokens(question) + ContextAssembler.estimateTokens(answer);
+        }
+    }
+
+    /** 사용자의 최근 대화를 DB 에서 읽어오는 함수 (오래된 턴 -> 최신 턴 순서) */
+    public interface Loader {
+        List<Turn> load(String username, int limit) throws Exception;
+    }
+
+    public static final ConversationMemory INSTANCE = new ConversationMemory(
+            Env.getInt("CHAT_MEMORY_TURNS", 6),
+            Env.getInt("CHAT_MEMORY_TOKEN_BUDGET", 800),
+            Env.getInt("CHAT_MEMORY_MAX_USERS", 1000),
+            Env.getLong("CHAT_MEMORY_IDLE_MS", 30 * 60 * 1000L));
+
+    private static class UserTurns {
+        final ArrayDeque<Turn> turns = new ArrayDeque<>();
+        volatile long lastAccess = System.currentTimeMillis();
+        boolean loaded;
+    }
+
+    private final int maxTurns;
+    private final int tokenBudget;
+    private final int maxUsers;
+    private final long idleMillis;
+    // 접근 순서 LinkedHashMap: 맨 앞이 가장 오래 안 쓴 사용자
+    private final Map<String, UserTurns> users = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile Loader loader;
+
+    public ConversationMemory(int maxTurns, int tokenBudget, int maxUsers, long idleMillis) {
+        this.maxTurns = maxTurns;
+        this.tokenBudget = tokenBudget;
+        this.maxUsers = maxUsers;
+        this.idleMillis = idleMillis;
+        Metrics.gauge("chat_memory_users", this::userCount);
+    }
+
+    public void setLoader(Loader loader) {
+        this.loader = loader;
+    }
+
+    public int userCount() {
+        synchronized (users) {
+            return users.size();
+        }
+    }
+
+    /**
+     * 프롬프트에 넣을 최근 대화를 돌려줍니다. (오래된 턴 -> 최신 턴, 토큰 예산 안에서 최신 턴 우선)
+     * 메모리에 없으면 DB 에서 채웁니다. 읽기 실패 시에는 빈 목록 (대화 없이 답변은 계속)
+     */
+    public List<Turn> recent(String username) {
+        if (maxTurns <= 0) {
+            return Collections.emptyList();
+        }
+        UserTurns user;
+        synchronized (users) {
+            evictIdle(System.currentTimeMillis());
+            user = users.get(username);
+            if (user == null) {
+                user = new UserTurns();
+                users.put(username, user);
+                if (users.size() > maxUsers) {
+                    users.remove(users.keySet().iterator().next());
+                    Metrics.inc(Metrics.name("chat_memory_evictions_total", "reason", "capacity"));
+                }
+            }
+        }
+        user.lastAccess = System.currentTimeMillis();
+
+        synchronized (user) {
+            if (!user.loaded) {
+                // 등록해 둔 채로 잠그고 읽으므로, 읽는 동안 끝난 답변의 append 는 기다렸다가 뒤에 붙습니다.
+                Loader l = loader;
+                try {
+                    if (l != null) {
+                        for (Turn t : l.load(username, maxTurns)) {
+                            push(user, t);
+                        }
+                    }
+                    user.loaded = true;
+                    Metrics.inc(Metrics.name("chat_memory_lookups_total", "result", "miss"));
+                } catch (Exception e) {
+                    Log.warn("chat", "이전 대화 로딩 실패 - 대화 없이 진행", "user", username, "error_msg", e.getMessage());
+                    synchronized (users) {
+                        users.remove(username, user);
+                    }
+                    return Collections.emptyList();
+                }
+            } else {
+                Metrics.inc(Metrics.name("chat_memory_lookups_total", "result", "hit"));
+            }
+
+            List<Turn> picked = new ArrayList<>();
+            int used = 0;
+            for (Iterator<Turn> it = user.turns.descendingIterator(); it.hasNext();) {
+                Turn t = it.next();
+                used += t.tokens();
+                if (used > tokenBudget) {
+                    break;
+                }
+                picked.add(t);
+            }
+            Collections.reverse(picked);
+            return picked;
+        }
+    }
+
+    /**
+     * 답변이 저장된 뒤 호출합니다. 메모리에 없는 사용자는 무시합니다. (다음 질문 때 DB 에서 읽음)
+     */
+    public void append(String username, String question, String answer) {
+        UserTurns user;
+        synchronized (users) {
+            user = users.get(username);
+        }
+        if (user != null) {
+            synchronized (user) {
+                push(user, new Turn(question, answer));
+            }
+        }
+    }
+
+    private void push(UserTurns user, Turn turn) {
+        user.turns.addLast(turn);
+        while (user.turns.size() > maxTurns) {
+            user.turns.removeFirst();
+        }
+    }
+
+    // 맨 앞(가장 오래 안 쓴 사용자)부터 보고, idle 이 아닌 사용자를 만나면 멈춥니다. (users 잠금 안에서 호출)
+    private void evictIdle(long now) {
+        Iterator<UserTurns> it = users.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().lastAccess < idleMillis) {
+                break;
+            }
+            it.remove();
+            Metrics.inc(Metrics.name("chat_memory_evictions_total", "reason", "idle"));
+        }
+    }
+}
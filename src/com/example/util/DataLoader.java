@@ -2,15 +2,17 @@ package com.example.util; // RagHelper와 같은 방(패키지)이라고 선언
 
 import java.io.File;
 import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Base64; // [추가됨] 암호화 도구
-import java.nio.charset.StandardCharsets; // [추가됨] 문자셋 도구
 
 public class DataLoader {
     public static void main(String[] args) {
         // ---------------------------------------------------------------
-        // [수정 필요] .md 파일들이 들어있는 내 컴퓨터 경로 (역슬래시 2개씩 써야 함)
-        String folderPath = "C:\\Users\\DS10\\Downloads\\AWS Cloud";
+        // .md 파일들이 들어있는 경로: 실행 인자 > RAG_CORPUS_DIR 환경 변수 > 기본 경로 순서
+        // (서버의 키워드 검색도 RAG_CORPUS_DIR 의 같은 폴더를 읽습니다)
+        String folderPath = args.length > 0 ? args[0]
+                : Env.get("RAG_CORPUS_DIR", "C:\\Users\\DS10\\Downloads\\AWS Cloud");
         // ---------------------------------------------------------------
 
         File folder = new File(folderPath);
@@ -23,6 +25,23 @@ public class DataLoader {
 
         System.out.println("데이터 적재를 시작합니다...");
 
+        // 로컬 벡터 검색용 스냅샷에 넣을 벡터들 (RAG_VECTOR_SNAPSHOT 이 설정된 경우에만 파일로 씀)
+        String snapshotPath = Env.get("RAG_VECTOR_SNAPSHOT", null);
+        List<String> snapshotIds = new ArrayList<>();
+        List<float[]> snapshotVectors = new ArrayList<>();
+
+        // RAG_PASSAGE_STORE 가 설정되어 있으면 본문은 로컬 문서 저장소에 쓰고 Pinecone 에는 벡터만 올립니다.
+        String passageStorePath = Env.get("RAG_PASSAGE_STORE", null);
+        PassageStore.Writer passageWriter = null;
+        if (passageStorePath != null) {
+            try {
+                passageWriter = new PassageStore.Writer(Paths.get(passageStorePath));
+            } catch (Exception e) {
+                System.out.println("문서 저장소를 열 수 없습니다: " + passageStorePath + " (" + e.getMessage() + ")");
+                return;
+            }
+        }
+
         int count = 0;
         for (File file : listOfFiles) {
             // .md 파일만 골라서 처리
@@ -36,10 +55,18 @@ public class DataLoader {
                     // 2. 벡터 변환 (RagHelper 사용)
                     List<Double> vector = RagHelper.getEmbedding(content);
 
-                    String safeId = Base64.getEncoder().encodeToString(file.getName().getBytes(StandardCharsets.UTF_8));
+                    String safeId = Document.idForFile(file.getName());
+
+                    // 3. Pinecone 업로드 (ID는 파일명, 내용은 Metadata 또는 로컬 문서 저장소에 저장)
+                    if (passageWriter != null) {
+                        passageWriter.append(safeId, content);
+                        RagHelper.uploadToPinecone(safeId, null, vector);
+                    } else {
+                        RagHelper.uploadToPinecone(safeId, content, vector);
+                    }
 
-                    // 3. Pinecone 업로드 (ID는 파일명, 내용은 Metadata로 저장)
-                    RagHelper.uploadToPinecone("file_" + safeId, content, vector);
+                    snapshotIds.add(safeId);
+                    snapshotVectors.add(VectorSnapshot.toFloats(vector));
 
                     count++;
                     System.out.println("[성공]");
@@ -53,7 +80,25 @@ public class DataLoader {
                 }
             }
         }
+        if (passageWriter != null) {
+            try {
+                passageWriter.close();
+                System.out.println("문서 저장소 저장 완료: " + passageStorePath);
+            } catch (Exception e) {
+                System.out.println("[실패] 문서 저장소 닫기: " + e.getMessage());
+            }
+        }
         System.out.println("------------------------------------------------");
         System.out.println("총 " + count + "개의 파일이 Pinecone에 저장되었습니다.");
+
+        if (snapshotPath != null) {
+            try {
+                VectorSnapshot.write(Paths.get(snapshotPath), snapshotIds, snapshotVectors);
+                System.out.println("벡터 스냅샷 저장 완료 (int8, " + snapshotIds.size() + "건): " + snapshotPath);
+            } catch (Exception e) {
+                System.out.println("[실패] 벡터 스냅샷 저장: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.example.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 지식 베이스(.md 파일) 문서 1개입니다.
+ */
+public class Document {
+    public final String id;
+    public final String fileName;
+    public final String text;
+
+    public Document(String id, String fileName, String text) {
+        this.id = id;
+        this.fileName = fileName;
+        this.text = text;
+    }
+
+    /**
+     * 파일명으로 벡터 ID 를 만듭니다. (Pinecone 은 ID 에 한글을 못 쓰므로 Base64 로 바꿉니다)
+     */
+    public static String idForFile(String fileName) {
+        return "file_" + Base64.getEncoder().encodeToString(fileName.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 동시에 들어온 질문 임베딩 요청을 모아서 batchEmbedContents 1번으로 보내는 마이크로 배처입니다.
+ * 묶음의 첫 요청 스레드(leader)가 windowMillis 동안(또는 maxBatch 개가 찰 때까지) 기다렸다가
+ * 직접 묶음을 보내고, 나머지 요청들은 자기 순번의 결과만 받아갑니다. (별도 스레드 없음)
+ * 한가할 때는 묶음에 1건만 있으므로 일반 embedContent 로 보내고, 추가 지연은 windowMillis 이하입니다.
+ * leader 가 기다리다 인터럽트되면 묶음을 실패로 끝내서, 같은 묶음의 요청들이 영영 기다리지 않게 합니다.
+ * (결과를 기다리는 시간도 임베딩 타임아웃의 2배 + windowMillis 로 제한)
+ */
+public class EmbeddingBatcher {
+
+    private static class Batch {
+        final List<String> texts = new ArrayList<>();
+        final List<CompletableFuture<List<Double>>> results = new ArrayList<>();
+
+        int add(String text) {
+            texts.add(text);
+            results.add(new CompletableFuture<>());
+            return texts.size() - 1;
+        }
+    }
+
+    private final long windowMillis;
+    private final int maxBatch;
+    // 헤지 요청까지 끝날 시간 + 모으는 시간
+    private final long resultWaitMillis;
+
+    private final Object lock = new Object();
+    private Batch current;
+
+    public EmbeddingBatcher(long windowMillis, int maxBatch) {
+        this.windowMillis = windowMillis;
+        this.maxBatch = maxBatch;
+        this.resultWaitMillis = Upstream.EMBEDDING.timeout().toMillis() * 2 + windowMillis;
+    }
+
+    public List<Double> embed(String text) throws Exception {
+        Batch batch;
+        int index;
+        boolean leader;
+        synchronized (lock) {
+            leader = current == null;
+            if (leader) {
+                current = new Batch();
+            }
+            batch = current;
+            index = batch.add(text);
+            if (batch.texts.size() >= maxBatch) {
+                // 가득 찼으면 새 묶음을 시작하게 하고, 기다리던 leader 를 깨웁니다.
+                current = null;
+                lock.notifyAll();
+            }
+        }
+
+        if (leader) {
+            InterruptedException interrupted = null;
+            try {
+                synchronized (lock) {
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+                    long remaining;
+                    while (current == batch && (remaining = deadline - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                    }
+                }
+            } catch (InterruptedException e) {
+                interrupted = e;
+            } finally {
+                // 어떻게 끝나든 이 묶음에는 더 받지 않습니다. (뒤에 온 요청이 버려진 묶음에 붙지 않도록)
+                synchronized (lock) {
+                    if (current == batch) {
+                        current = null;
+                    }
+                }
+            }
+            if (interrupted != null) {
+                fail(batch, interrupted);
+                throw interrupted;
+            }
+            send(batch);
+        }
+
+        try {
+            return batch.results.get(index).get(resultWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw (cause instanceof Exception) ? (Exception) cause : e;
+        } catch (TimeoutException e) {
+            Metrics.inc("rag_embedding_batch_wait_timeouts_total");
+            throw e;
+        }
+    }
+
+    private void send(Batch batch) {
+        Metrics.inc("rag_embedding_batches_total");
+        Metrics.add("rag_embedding_batched_texts_total", batch.texts.size());
+        try {
+            List<List<Double>> vectors = batch.texts.size() == 1
+                    ? List.of(RagHelper.fetchEmbedding(batch.texts.get(0)))
+                    : RagHelper.fetchEmbeddings(batch.texts);
+            if (vectors.size() != batch.texts.size()) {
+                throw new RuntimeException("Gemini 배치 임베딩 개수 불일치: 요청 " + batch.texts.size()
+                        + "건, 응답 " + vectors.size() + "건");
+            }
+            for (int i = 0; i < vectors.size(); i++) {
+                batch.results.get(i).complete(vectors.get(i));
+            }
+        } catch (Throwable e) {
+            // Error 여도 기다리는 요청들은 풀어 줍니다.
+            fail(batch, e);
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+        }
+    }
+
+    // 묶음이 이미 닫혔으므로 results 는 더 늘지 않습니다. (이미 끝난 future 는 그대로)
+    private static void fail(Batch batch, Throwable e) {
+        for (CompletableFuture<List<Double>> f : batch.results) {
+            f.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.util;
+
+/**
+ * 환경 변수 읽기 헬퍼입니다.
+ * (DB_URL 처럼 Docker/K8s 에서 -e 옵션으로 주입하는 값들을 기본값과 함께 읽습니다)
+ */
+public final class Env {
+
+    private Env() {
+    }
+
+    public static String get(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return (value == null || value.trim().isEmpty()) ? defaultValue : value.trim();
+    }
+
+    public static int getInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("[설정 오류] " + name + " 값이 숫자가 아닙니다. 기본값 " + defaultValue + " 사용");
+            return defaultValue;
+        }
+    }
+
+    public static long getLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("[설정 오류] " + name + " 값이 숫자가 아닙니다. 기본값 " + defaultValue + " 사용");
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(String name, boolean defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return "true".equalsIgnoreCase(value.trim()) || "1".equals(value.trim());
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.util;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/**
+ * 동시 실행 자리 수를 제한하면서, 기다리는 요청을 사용자별로 번갈아(round-robin) 들여보내는 대기열입니다.
+ * 한 사용자가 요청을 여러 개 쌓아둬도 다른 사용자의 요청이 그 뒤에 줄 서지 않습니다.
+ */
+public class FairQueue {
+
+    private static class Waiter {
+        boolean granted;
+    }
+
+    private final IntSupplier permits;
+    private final int maxWaiting;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    // 사용자 -> 대기 요청들. 넣은 순서가 곧 차례 순서이고, 한 건 들여보내면 그 사용자를 맨 뒤로 보냅니다.
+    private final LinkedHashMap<String, ArrayDeque<Waiter>> queues = new LinkedHashMap<>();
+    private int inUse;
+    private int waiting;
+
+    public FairQueue(String name, int permits, int maxWaiting) {
+        this(name, () -> permits, maxWaiting);
+    }
+
+    /**
+     * 동시 실행 자리 수가 바뀌는 경우 (AdaptiveLimiter 의 한도 등). 늘어난 자리는 다음 release 때 대기자에게 돌아갑니다.
+     */
+    public FairQueue(String name, IntSupplier permits, int maxWaiting) {
+        this.permits = permits;
+        this.maxWaiting = maxWaiting;
+
+        Metrics.gauge(Metrics.name("fair_queue_in_use", "queue", name), () -> inUse);
+        Metrics.gauge(Metrics.name("fair_queue_waiting", "queue", name), () -> waiting);
+    }
+
+    /**
+     * 실행 자리를 얻습니다. 대기열이 가득 찼거나 timeoutMillis 안에 차례가 안 오면 false.
+     * true 를 받았으면 반드시 release() 를 불러야 합니다.
+     */
+    public boolean acquire(String user, long timeoutMillis) throws InterruptedException {
+        lock.lock();
+        try {
+            if (inUse < permits.getAsInt() && waiting == 0) {
+                inUse++;
+                return true;
+            }
+            if (waiting >= maxWaiting) {
+                return false;
+            }
+            Waiter me = new Waiter();
+            queues.computeIfAbsent(user, k -> new ArrayDeque<>()).addLast(me);
+            waiting++;
+
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            try {
+                while (!me.granted) {
+                    if (remaining <= 0) {
+                        ArrayDeque<Waiter> mine = queues.get(user);
+                        if (mine != null && mine.remove(me)) {
+                            waiting--;
+                            if (mine.isEmpty()) {
+                                queues.remove(user);
+                            }
+                        }
+                        return false;
+                    }
+                    remaining = changed.awaitNanos(remaining);
+                }
+                return true;
+            } catch (InterruptedException e) {
+                if (me.granted) {
+                    // 자리를 받은 직후 인터럽트되면 자리를 돌려놓습니다.
+                    releaseLocked();
+                } else {
+                    ArrayDeque<Waiter> mine = queues.get(user);
+                    if (mine != null && mine.remove(me)) {
+                        waiting--;
+                        if (mine.isEmpty()) {
+                            queues.remove(user);
+                        }
+                    }
+                }
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 지금 실행 중인 수 */
+    public int inUse() {
+        lock.lock();
+        try {
+            return inUse;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        lock.lock();
+        try {
+            releaseLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseLocked() {
+        inUse--;
+        boolean grantedAny = false;
+        while (inUse < permits.getAsInt() && !queues.isEmpty()) {
+            Iterator<Map.Entry<String, ArrayDeque<Waiter>>> it = queues.entrySet().iterator();
+            Map.Entry<String, ArrayDeque<Waiter>> next = it.next();
+            it.remove();
+            Waiter w = next.getValue().pollFirst();
+            if (!next.getValue().isEmpty()) {
+                queues.put(next.getKey(), next.getValue());
+            }
+            w.granted = true;
+            waiting--;
+            inUse++;
+            grantedAny = true;
+        }
+        if (grantedAny) {
+            changed.signalAll();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 미리 만들어 둔 FAQ(자주 나오는 질문과 답변) 묶음입니다. FaqJob 이 만들고, GptApiServlet 이 질문마다 찾아봅니다.
+ * - 정규화한 질문이 그대로 같으면 임베딩 없이 바로 찾고,
+ * - 아니면 질문 임베딩과 대표 질문 임베딩의 코사인 유사도가 FAQ_MATCH_SIMILARITY 이상인 것 중 가장 가까운 것을 씁니다.
+ * 만든 뒤에는 바꾸지 않고, 새로 만든 것으로 통째로 교체합니다. (KnowledgeBase 와 같은 방식)
+ */
+public class FaqIndex {
+
+    /** FAQ 항목 하나 (대표 질문, 미리 만든 답변, 대표 질문 임베딩) */
+    public static class Entry {
+        public final String question;
+        public final String answer;
+        public final int clusterSize;
+        final float[] unit;
+
+        public Entry(String question, String answer, int clusterSize, float[] vector) {
+            this.question = question;
+            this.answer = answer;
+            this.clusterSize = clusterSize;
+            this.unit = unit(vector);
+        }
+
+        /** 저장용 임베딩 (길이 1 로 맞춘 값 - 코사인 유사도에는 방향만 쓰임) */
+        public float[] vector() {
+            return unit;
+        }
+    }
+
+    /** 찾은 결과 (similarity 는 정확히 같은 질문이면 1) */
+    public static class Match {
+        public final Entry entry;
+        public final double similarity;
+        public final boolean exact;
+
+        Match(Entry entry, double similarity, boolean exact) {
+            this.entry = entry;
+            this.similarity = similarity;
+            this.exact = exact;
+        }
+    }
+
+    private static final double MATCH_SIMILARITY = Env.getInt("FAQ_MATCH_SIMILARITY_PCT", 92) / 100.0;
+
+    private static final FaqIndex EMPTY = new FaqIndex(Collections.emptyList(), 0);
+    private static volatile FaqIndex current = EMPTY;
+
+    private final List<Entry> entries;
+    private final Map<String, Entry> byQuestion = new HashMap<>();
+    private final long generation;
+
+    public FaqIndex(List<Entry> entries, long generation) {
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+        this.generation = generation;
+        for (Entry e : entries) {
+            byQuestion.put(SingleFlight.normalize(e.question), e);
+        }
+    }
+
+    public static FaqIndex current() {
+        return current;
+    }
+
+    /** 새 FAQ 묶음으로 바꿉니다. (진행 중인 질문은 이미 읽은 묶음을 그대로 씀) */
+    public static void swap(FaqIndex next) {
+        current = next;
+        Log.info("faq", "FAQ 교체", "entries", next.entries.size(), "generation", next.generation);
+    }
+
+    /** 지식 베이스가 바뀌어서 답변을 믿을 수 없을 때: 다시 만들 때까지 FAQ 를 쓰지 않습니다. */
+    public static void clear() {
+        current = EMPTY;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    /** 만든 시각(ms) - 여러 파드가 같은 FAQ 표를 보는지 비교하는 데 씁니다. (비어 있으면 0) */
+    public long generation() {
+        return generation;
+    }
+
+    /** 정규화한 질문이 그대로 같은 항목 (없으면 null) */
+    public Entry exact(String question) {
+        return byQuestion.get(SingleFlight.normalize(question));
+    }
+
+    /** 임베딩이 가장 가까운 항목 (FAQ_MATCH_SIMILARITY 미만이면 null) */
+    public Match nearest(List<Double> embedding) {
+        if (entries.isEmpty()) {
+            return null;
+        }
+        float[] query = unit(VectorSnapshot.toFloats(embedding));
+        Entry best = null;
+        double bestScore = MATCH_SIMILARITY;
+        for (Entry e : entries) {
+            double score = dot(query, e.unit);
+            if (score >= bestScore) {
+                best = e;
+                bestScore = score;
+            }
+        }
+        return best == null ? null : new Match(best, bestScore, false);
+    }
+
+    /** 비슷한 질문 묶음 하나 (대표 질문과 전체 질문 수) */
+    public static class Cluster {
+        public final String representative;
+        public final float[] vector;
+        public final int size;
+
+        Cluster(String representative, float[] vector, int size) {
+            this.representative = representative;
+            this.vector = vector;
+            this.size = size;
+        }
+    }
+
+    /**
+     * 질문들을 임베딩 유사도로 묶고, 묶음마다 중심에 가장 가까운 질문을 대표로 고릅니다.
+     * 많이 나온 질문부터 차례로 보면서 가장 가까운 묶음 중심과 similarity 이상이면 그 묶음에 넣고, 아니면 새 묶음을 만듭니다.
+     * (질문 수 N, 묶음 수 C 에 대해 O(N*C*차원) - 수천 건이면 1초 안쪽)
+     *
+     * @param questions 서로 다른 질문 (counts 와 같은 순서)
+     * @param counts    질문이 나온 횟수
+     * @param vectors   질문 임베딩
+     * @return 크기가 minSize 이상인 묶음을 큰 순서로 최대 limit 개
+     */
+    public static List<Cluster> cluster(List<String> questions, List<Integer> counts, List<float[]> vectors,
+            double similarity, int minSize, int limit) {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < questions.size(); i++) {
+            order.add(i);
+        }
+        order.sort((a, b) -> Integer.compare(counts.get(b), counts.get(a)));
+
+        List<float[]> sums = new ArrayList<>();
+        List<float[]> centroids = new ArrayList<>();
+        List<List<Integer>> members = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        for (int i : order) {
+            float[] v = unit(vectors.get(i));
+            int best = -1;
+            double bestScore = similarity;
+            for (int c = 0; c < centroids.size(); c++) {
+                double score = dot(v, centroids.get(c));
+                if (score >= bestScore) {
+                    best = c;
+                    bestScore = score;
+                }
+            }
+            int count = counts.get(i);
+            if (best < 0) {
+                sums.add(new float[v.length]);
+                centroids.add(v);
+                members.add(new ArrayList<>());
+                sizes.add(0);
+                best = centroids.size() - 1;
+            }
+            // 중심은 나온 횟수로 가중한 평균 방향입니다.
+            float[] sum = sums.get(best);
+            for (int d = 0; d < v.length; d++) {
+                sum[d] += v[d] * count;
+            }
+            centroids.set(best, unit(sum));
+            members.get(best).add(i);
+            sizes.set(best, sizes.get(best) + count);
+        }
+
+        List<Cluster> clusters = new ArrayList<>();
+        for (int c = 0; c < centroids.size(); c++) {
+            if (sizes.get(c) < minSize) {
+                continue;
+            }
+            int representative = -1;
+            double bestScore = -2;
+            for (int i : members.get(c)) {
+                double score = dot(unit(vectors.get(i)), centroids.get(c));
+                if (score > bestScore) {
+                    representative = i;
+                    bestScore = score;
+                }
+            }
+            clusters.add(new Cluster(questions.get(representative), vectors.get(representative), sizes.get(c)));
+        }
+        clusters.sort((a, b) -> Integer.compare(b.size, a.size));
+        return clusters.size() > limit ? new ArrayList<>(clusters.subList(0, limit)) : clusters;
+    }
+
+    private static float[] unit(float[] v) {
+        double norm = Math.sqrt(dot(v, v));
+        float[] u = new float[v.length];
+        if (norm == 0) {
+            return u;
+        }
+        for (int i = 0; i < v.length; i++) {
+            u[i] = (float) (v[i] / norm);
+        }
+        return u;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
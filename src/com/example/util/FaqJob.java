@@ -0,0 +1,268 @@
+package com.example.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * gpt_history 의 질문으로 FAQ 를 미리 만들어 두는 백그라운드 작업입니다.
+ * 1. 최근 질문을 정규화해서 같은 질문끼리 세고, 많이 나온 질문부터 임베딩합니다. (배치 임베딩)
+ * 2. FaqIndex.cluster 로 비슷한 질문을 묶어 묶음마다 대표 질문을 고릅니다.
+ * 3. 대표 질문마다 실제 질문과 같은 경로(RAG 검색 + Gemini)로 답변을 만들어 FAQ 표에 통째로 바꿔 씁니다.
+ * 지식 베이스가 바뀌면(KnowledgeBase.swap) 지금 FAQ 를 내리고 다시 만듭니다.
+ * 파드마다 FAQ_RELOAD_SECONDS 마다 표를 확인해서 다른 파드가 만든 새 FAQ 를 읽고,
+ * 가장 최근 FAQ 가 FAQ_BUILD_INTERVAL_HOURS 보다 오래됐으면 그 파드가 다시 만듭니다. 한 번에 작업 하나만 돌립니다.
+ */
+public class FaqJob {
+
+    /** FAQ 를 읽고 쓰는 곳 (서블릿 쪽 FaqTable 이 gpt_history / faq 테이블로 구현) */
+    public interface Store {
+        /** 최근 질문 limit 개 (중복 포함, 최신순) */
+        List<String> recentQuestions(int limit) throws Exception;
+
+        /** 저장된 FAQ 의 generation (없으면 0) */
+        long latestGeneration() throws Exception;
+
+        FaqIndex load() throws Exception;
+
+        /** 저장된 FAQ 를 entries 로 통째로 바꿉니다. */
+        void replace(List<FaqIndex.Entry> entries, long generation) throws Exception;
+    }
+
+    /** 대표 질문의 답변을 만드는 함수 (이전 대화 없이 RAG 검색 + Gemini) */
+    public interface Answerer {
+        String answer(String question) throws Exception;
+    }
+
+    /** 마지막 작업 상황 (관리자 API 가 그대로 JSON 으로 돌려줌) */
+    public static class Status {
+        public final String reason;
+        volatile String state = "RUNNING";
+        volatile int questions;
+        volatile int clusters;
+        volatile int answered;
+        volatile int failed;
+        volatile String message;
+        final long startedAt = System.currentTimeMillis();
+        volatile long finishedAt;
+
+        Status(String reason) {
+            this.reason = reason;
+        }
+    }
+
+    private static final boolean ENABLED = Env.getBoolean("FAQ_ENABLED", true);
+    private static final int HISTORY_LIMIT = Env.getInt("FAQ_HISTORY_LIMIT", 5000);
+    private static final int MAX_DISTINCT = Env.getInt("FAQ_MAX_DISTINCT", 1000);
+    private static final int MIN_QUESTION_CHARS = Env.getInt("FAQ_MIN_QUESTION_CHARS", 10);
+    private static final int MAX_QUESTION_CHARS = 500;
+    private static final double CLUSTER_SIMILARITY = Env.getInt("FAQ_CLUSTER_SIMILARITY_PCT", 85) / 100.0;
+    private static final int MIN_CLUSTER_SIZE = Env.getInt("FAQ_MIN_CLUSTER_SIZE", 3);
+    private static final int MAX_ENTRIES = Env.getInt("FAQ_MAX_ENTRIES", 50);
+    private static final long BUILD_INTERVAL_MS = TimeUnit.HOURS.toMillis(Env.getLong("FAQ_BUILD_INTERVAL_HOURS", 24));
+    private static final long RELOAD_SECONDS = Env.getLong("FAQ_RELOAD_SECONDS", 300);
+    private static final int EMBED_BATCH = Env.getInt("RAG_INGEST_EMBED_BATCH", 16);
+    // Gemini 가 답변 대신 돌려주는 파싱 오류 문구 (RagHelper.parseGeneration) - FAQ 로 저장하지 않습니다.
+    private static final String PARSE_ERROR_PREFIX = "Gemini 응답 파싱 오류";
+
+    private static final ScheduledExecutorService WORKER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "faq-job");
+        t.setDaemon(true);
+        return t;
+    });
+    // 작업이 이미 대기 중이면 다시 넣지 않습니다. (지식 베이스가 연달아 바뀌어도 한 번만 만듦)
+    private static final AtomicBoolean QUEUED = new AtomicBoolean();
+
+    private static volatile Store store;
+    private static volatile Answerer answerer;
+    private static volatile Status latest;
+    // 이 파드가 마지막으로 만들기 시작한 시각 (만들어도 FAQ 가 0건이면 표의 generation 이 없으므로 따로 기억)
+    private static volatile long lastBuildAt;
+    // 지식 베이스가 바뀐 시각: 이보다 먼저 만든 FAQ 는 표에 남아 있어도 다시 읽지 않습니다.
+    private static volatile long staleBefore;
+
+    static {
+        Metrics.gauge("faq_entries", () -> FaqIndex.current().entries().size());
+    }
+
+    /**
+     * 웹앱 시작 때 부릅니다. 저장된 FAQ 를 읽고, 주기 확인을 걸고, 지식 베이스 교체를 구독합니다.
+     * (FAQ_ENABLED=false 면 아무것도 하지 않음)
+     */
+    public static void start(Store store, Answerer answerer) {
+        if (!ENABLED) {
+            return;
+        }
+        FaqJob.store = store;
+        FaqJob.answerer = answerer;
+        KnowledgeBase.addListener(kb -> {
+            // 이전 지식 베이스로 만든 답변이므로 다시 만들 때까지 쓰지 않습니다.
+            staleBefore = System.currentTimeMillis();
+            FaqIndex.clear();
+            rebuild("kb_version_" + kb.version());
+        });
+        // 저장된 FAQ 는 바로 읽고, 여러 파드가 같은 순간에 다시 만들지 않도록 주기 확인 시점은 흩어 둡니다.
+        WORKER.execute(() -> {
+            try {
+                reload();
+            } catch (Exception e) {
+                Log.warn("faq", "FAQ 읽기 실패", "error_msg", e.getMessage());
+            }
+        });
+        long initialDelay = ThreadLocalRandom.current().nextLong(Math.max(1, RELOAD_SECONDS));
+        WORKER.scheduleWithFixedDelay(FaqJob::check, initialDelay, RELOAD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /** 웹앱 종료 시 작업 스레드를 멈춥니다. */
+    public static void shutdown() {
+        WORKER.shutdownNow();
+    }
+
+    /** 가장 최근 작업 상황 (한 번도 안 돌렸으면 null) */
+    public static Status latest() {
+        return latest;
+    }
+
+    /**
+     * FAQ 를 다시 만들도록 작업을 넣습니다. 이미 대기 중이면 false.
+     */
+    public static boolean rebuild(String reason) {
+        if (store == null || !QUEUED.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            WORKER.execute(() -> {
+                QUEUED.set(false);
+                build(reason);
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            QUEUED.set(false);
+            return false;
+        }
+    }
+
+    // 주기 확인: 다른 파드가 만든 새 FAQ 가 있으면 읽고, 너무 오래됐으면 다시 만듭니다.
+    private static void check() {
+        try {
+            long stored = reload();
+            if (BUILD_INTERVAL_MS > 0 && System.currentTimeMillis() - Math.max(stored, lastBuildAt) >= BUILD_INTERVAL_MS) {
+                build(stored == 0 ? "empty" : "schedule");
+            }
+        } catch (Exception e) {
+            // 예외를 던지면 주기 작업이 멈추므로 기록만 합니다.
+            Log.warn("faq", "FAQ 확인 실패", "error_msg", e.getMessage());
+        }
+    }
+
+    // 표에 이 파드가 들고 있는 것과 다른 FAQ 가 있으면 읽어 옵니다. 표의 generation 을 돌려줍니다.
+    private static long reload() throws Exception {
+        long stored = store.latestGeneration();
+        if (stored > staleBefore && stored != FaqIndex.current().generation()) {
+            FaqIndex.swap(store.load());
+        }
+        return stored;
+    }
+
+    private static void build(String reason) {
+        Status status = new Status(reason);
+        latest = status;
+        lastBuildAt = status.startedAt;
+        long kbVersion = KnowledgeBase.current().version();
+        Log.info("faq", "FAQ 생성 시작", "reason", reason);
+        try {
+            List<FaqIndex.Entry> entries = buildEntries(status);
+            long generation = System.currentTimeMillis();
+            if (KnowledgeBase.current().version() != kbVersion) {
+                // 만드는 동안 지식 베이스가 바뀌었으면 그 알림으로 들어온 작업이 다시 만듭니다.
+                status.state = "STALE";
+                status.message = "생성 중 지식 베이스가 바뀌어 저장하지 않았습니다.";
+                return;
+            }
+            store.replace(entries, generation);
+            FaqIndex.swap(new FaqIndex(entries, generation));
+            status.state = "DONE";
+            status.message = "FAQ " + entries.size() + "건을 만들었습니다.";
+        } catch (Exception e) {
+            Log.error("faq", "FAQ 생성 실패", e, "reason", reason);
+            status.state = "FAILED";
+            status.message = e.getMessage();
+        } finally {
+            status.finishedAt = System.currentTimeMillis();
+            Metrics.inc(Metrics.name("faq_build_total", "state", status.state.toLowerCase()));
+            Log.info("faq", "FAQ 생성 종료", "reason", reason, "state", status.state, "questions", status.questions,
+                    "clusters", status.clusters, "answered", status.answered, "failed", status.failed,
+                    "ms", status.finishedAt - status.startedAt);
+        }
+    }
+
+    private static List<FaqIndex.Entry> buildEntries(Status status) throws Exception {
+        // 1. 같은 질문끼리 세기 (공백/유니코드 정규화 기준)
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String q : store.recentQuestions(HISTORY_LIMIT)) {
+            String key = SingleFlight.normalize(q);
+            if (key.length() < MIN_QUESTION_CHARS || key.length() > MAX_QUESTION_CHARS) {
+                continue;
+            }
+            counts.merge(key, 1, Integer::sum);
+        }
+        // 한 번만 나온 질문은 묶음 크기를 채우기 어려우므로 많이 나온 질문부터 MAX_DISTINCT 개만 임베딩합니다.
+        List<String> keys = new ArrayList<>(counts.keySet());
+        keys.sort((a, b) -> Integer.compare(counts.get(b), counts.get(a)));
+        if (keys.size() > MAX_DISTINCT) {
+            keys = keys.subList(0, MAX_DISTINCT);
+        }
+        status.questions = keys.size();
+
+        // 2. 임베딩 (실패한 배치는 건너뜀)
+        List<String> questions = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        List<float[]> vectors = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += EMBED_BATCH) {
+            List<String> batch = keys.subList(from, Math.min(keys.size(), from + EMBED_BATCH));
+            List<List<Double>> embeddings;
+            try {
+                embeddings = RagHelper.fetchEmbeddings(batch);
+            } catch (Exception e) {
+                Log.warn("faq", "임베딩 실패 - 배치 건너뜀", "size", batch.size(), "error_msg", e.getMessage());
+                continue;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                questions.add(batch.get(i));
+                weights.add(counts.get(batch.get(i)));
+                vectors.add(VectorSnapshot.toFloats(embeddings.get(i)));
+            }
+        }
+
+        // 3. 묶고 대표 질문마다 답변 만들기
+        List<FaqIndex.Cluster> clusters = FaqIndex.cluster(questions, weights, vectors,
+                CLUSTER_SIMILARITY, MIN_CLUSTER_SIZE, MAX_ENTRIES);
+        status.clusters = clusters.size();
+        List<FaqIndex.Entry> entries = new ArrayList<>();
+        for (FaqIndex.Cluster c : clusters) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("FAQ 생성이 중단되었습니다.");
+            }
+            try {
+                String answer = answerer.answer(c.representative);
+                if (answer == null || answer.isEmpty() || answer.startsWith(PARSE_ERROR_PREFIX)) {
+                    status.failed++;
+                    continue;
+                }
+                entries.add(new FaqIndex.Entry(c.representative, answer, c.size, c.vector));
+                status.answered++;
+            } catch (Exception e) {
+                Log.warn("faq", "답변 생성 실패 - 건너뜀", "question", c.representative, "error_msg", e.getMessage());
+                status.failed++;
+            }
+        }
+        return entries;
+    }
+}
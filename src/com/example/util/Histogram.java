@@ -0,0 +1,87 @@
+package com.example.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 잠금 없는 지연 시간 히스토그램입니다. (Prometheus histogram 형식, 단위: 초)
+ * 구간 경계가 고정되어 있어서 기록은 이진 탐색 + LongAdder 증가 두 번이면 끝나고, 스크레이프도 구간 수만큼만 읽습니다.
+ * 요청 경로에서 부르므로 한 번 만든 인스턴스를 필드에 들고 재사용하세요. (Metrics.histogram)
+ */
+public final class Histogram {
+
+    // 구간 상한 (초): 1ms ~ 30s
+    private static final double[] BOUNDS = {
+        0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30
+    };
+    private static final long[] BOUND_NANOS = new long[BOUNDS.length];
+    private static final String[] BOUND_LABELS = new String[BOUNDS.length];
+
+    static {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            BOUND_NANOS[i] = (long) (BOUNDS[i] * 1_000_000_000L);
+            BOUND_LABELS[i] = Double.toString(BOUNDS[i]);
+        }
+    }
+
+    // 마지막 칸은 +Inf
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    Histogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /** 걸린 시간(나노초)을 기록합니다. */
+    public void observeNanos(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int lo = 0;
+        int hi = BOUND_NANOS.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (BOUND_NANOS[mid] < nanos) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        buckets[lo].increment();
+        sumNanos.add(nanos);
+    }
+
+    /** 시작 시각(System.nanoTime)부터 지금까지 걸린 시간을 기록합니다. */
+    public void observeSince(long startNanos) {
+        observeNanos(System.nanoTime() - startNanos);
+    }
+
+    public long count() {
+        long total = 0;
+        for (LongAdder b : buckets) {
+            total += b.sum();
+        }
+        return total;
+    }
+
+    /**
+     * family_bucket{라벨..,le=".."} / family_sum / family_count 줄을 씁니다. (# TYPE 줄은 Metrics 가 씀)
+     * labels 는 중괄호 안쪽 문자열입니다. (없으면 빈 문자열)
+     */
+    void writeTo(Writer out, String family, String labels) throws IOException {
+        String prefix = labels.isEmpty() ? "{" : "{" + labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulative += buckets[i].sum();
+            String le = i < BOUND_LABELS.length ? BOUND_LABELS[i] : "+Inf";
+            out.write(family + "_bucket" + prefix + "le=\"" + le + "\"} " + cumulative + "\n");
+        }
+        String suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.write(family + "_sum" + suffix + " " + sumNanos.sum() / 1e9 + "\n");
+        // count 는 따로 세지 않고 +Inf 구간 누적값을 씁니다. (스크레이프 도중 기록이 있어도 둘이 어긋나지 않게)
+        out.write(family + "_count" + suffix + " " + cumulative + "\n");
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 서버 안에서 돌리는 문서 적재(DataLoader 의 웹 버전)입니다.
+ * 올라온 .md 문서를 백그라운드 스레드 하나에서 임베딩 -> Pinecone/문서 저장소/벡터 스냅샷에 반영하고,
+ * 키워드 색인까지 새로 만든 지식 베이스를 옆에 완성한 뒤 KnowledgeBase.swap 으로 한 번에 바꿉니다.
+ * 그동안 질문은 이전 지식 베이스로 계속 처리됩니다. 한 번에 작업 하나만 돌립니다.
+ * 교체는 요청을 받은 파드 안에서만 일어납니다. (키워드 색인, 문서 저장소, 벡터 스냅샷은 파드마다 따로 있음)
+ * 다른 파드는 재시작해서 RAG_CORPUS_DIR/스냅샷 파일을 다시 읽을 때까지 이전 지식 베이스와 FAQ 를 씁니다.
+ * 모든 파드에 바로 반영하려면 파드마다 적재를 돌리거나 롤링 재시작하세요. (Pinecone 에 올린 벡터만 모든 파드가 공유)
+ */
+public class Ingestion {
+
+    /** 작업 진행 상황 (관리자 API 가 그대로 JSON 으로 돌려줌) */
+    public static class Progress {
+        public final long jobId;
+        public final String source;
+        public final int total;
+        volatile String state = "QUEUED";
+        volatile int done;
+        volatile int failed;
+        volatile String message;
+        volatile long startedAt;
+        volatile long finishedAt;
+
+        Progress(long jobId, String source, int total) {
+            this.jobId = jobId;
+            this.source = source;
+            this.total = total;
+        }
+
+        public boolean isRunning() {
+            return "QUEUED".equals(state) || "RUNNING".equals(state);
+        }
+    }
+
+    private static final int EMBED_BATCH = Env.getInt("RAG_INGEST_EMBED_BATCH", 16);
+    private static final AtomicLong JOB_IDS = new AtomicLong();
+
+    private static final ExecutorService WORKER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "kb-ingest");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static volatile Progress latest;
+
+    /** 가장 최근 작업의 진행 상황 (한 번도 안 돌렸으면 null) */
+    public static Progress latest() {
+        return latest;
+    }
+
+    /**
+     * 문서 적재 작업을 백그라운드로 시작합니다. 이미 돌고 있으면 IllegalStateException.
+     */
+    public static synchronized Progress submit(String source, List<Document> docs) {
+        Progress running = latest;
+        if (running != null && running.isRunning()) {
+            throw new IllegalStateException("이미 적재 작업이 진행 중입니다. (job " + running.jobId + ")");
+        }
+        Progress progress = new Progress(JOB_IDS.incrementAndGet(), source, docs.size());
+        latest = progress;
+        try {
+            WORKER.execute(() -> run(progress, docs));
+        } catch (RejectedExecutionException e) {
+            progress.state = "FAILED";
+            progress.message = "작업 스레드가 종료되었습니다.";
+            throw new IllegalStateException(progress.message, e);
+        }
+        return progress;
+    }
+
+    /** 웹앱 종료 시 작업 스레드를 멈춥니다. */
+    public static void shutdown() {
+        WORKER.shutdownNow();
+    }
+
+    private static void run(Progress progress, List<Document> docs) {
+        progress.state = "RUNNING";
+        progress.startedAt = System.currentTimeMillis();
+        Log.info("kb", "문서 적재 시작", "job", progress.jobId, "source", progress.source, "docs", docs.size());
+        try {
+            KnowledgeBase next = build(progress, docs);
+            KnowledgeBase.swap(next);
+            progress.state = "DONE";
+            progress.message = "문서 " + next.documents().size() + "건으로 교체되었습니다.";
+        } catch (Exception e) {
+            Log.error("kb", "문서 적재 실패", e, "job", progress.jobId);
+            progress.state = "FAILED";
+            progress.message = e.getMessage();
+        } finally {
+            progress.finishedAt = System.currentTimeMillis();
+            Metrics.inc(Metrics.name("kb_ingest_jobs_total", "state", progress.state.toLowerCase()));
+            Log.info("kb", "문서 적재 종료", "job", progress.jobId, "state", progress.state,
+                    "done", progress.done, "failed", progress.failed,
+                    "ms", progress.finishedAt - progress.startedAt);
+        }
+    }
+
+    private static KnowledgeBase build(Progress progress, List<Document> docs) throws Exception {
+        KnowledgeBase live = KnowledgeBase.current();
+
+        // 1. 임베딩 -> 문서 저장소 / Pinecone 반영 (배치 임베딩으로 호출 수를 줄임)
+        String storePath = Env.get("RAG_PASSAGE_STORE", null);
+        Map<String, float[]> vectors = new HashMap<>();
+        Map<String, Document> accepted = new LinkedHashMap<>();
+        try (PassageStore.Writer store = storePath == null ? null : new PassageStore.Writer(Paths.get(storePath))) {
+            for (int from = 0; from < docs.size(); from += EMBED_BATCH) {
+                List<Document> batch = docs.subList(from, Math.min(docs.size(), from + EMBED_BATCH));
+                List<String> texts = new ArrayList<>(batch.size());
+                for (Document d : batch) {
+                    texts.add(d.text);
+                }
+                List<List<Double>> embeddings;
+                try {
+                    embeddings = RagHelper.fetchEmbeddings(texts);
+                } catch (Exception e) {
+                    Log.warn("kb", "임베딩 실패 - 배치 건너뜀", "job", progress.jobId, "size", batch.size(),
+                            "error_msg", e.getMessage());
+                    progress.failed += batch.size();
+                    continue;
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    Document d = batch.get(i);
+                    try {
+                        if (store != null) {
+                            store.append(d.id, d.text);
+                        }
+                        if (RagHelper.hasPinecone()) {
+                            RagHelper.uploadToPinecone(d.id, store != null ? null : d.text, embeddings.get(i));
+                        }
+                        vectors.put(d.id, VectorSnapshot.toFloats(embeddings.get(i)));
+                        accepted.put(d.id, d);
+                        progress.done++;
+                    } catch (Exception e) {
+                        Log.warn("kb", "문서 반영 실패", "job", progress.jobId, "file", d.fileName,
+                                "error_msg", e.getMessage());
+                        progress.failed++;
+                    }
+                }
+            }
+        }
+
+        // 2. 서버 재시작 후에도 남도록 반영된 .md 파일을 RAG_CORPUS_DIR 에 저장합니다.
+        String corpusDir = Env.get("RAG_CORPUS_DIR", null);
+        if (corpusDir != null) {
+            Path dir = Paths.get(corpusDir);
+            Files.createDirectories(dir);
+            for (Document d : accepted.values()) {
+                Files.writeString(dir.resolve(d.fileName), d.text);
+            }
+        }
+
+        // 3. 기존 문서 + 새 문서 (같은 파일명이면 새 것으로 교체)
+        Map<String, Document> merged = new LinkedHashMap<>();
+        for (Document d : live.documents()) {
+            merged.put(d.id, d);
+        }
+        merged.putAll(accepted);
+
+        // 4. 벡터 스냅샷은 새 파일로 다 쓴 뒤 이름을 바꾸고, 새로 매핑합니다. (기존 매핑은 계속 유효)
+        //    지금 스냅샷이 있을 때만 새 문서를 더합니다. 없을 때 만들면 새 문서만 든 스냅샷이 되어
+        //    Pinecone 대신 그걸로 검색하게 되므로(기존 문서가 벡터 검색에서 빠짐), 그때는 Pinecone 검색을 그대로 씁니다.
+        VectorSnapshot snapshot = live.vectorSnapshot();
+        String snapshotPath = Env.get("RAG_VECTOR_SNAPSHOT", null);
+        if (snapshotPath != null && !accepted.isEmpty() && snapshot == null) {
+            Log.warn("kb", "기존 벡터 스냅샷이 없어 새로 만들지 않음 - Pinecone 검색 유지 (DataLoader 로 전체 스냅샷을 만드세요)",
+                    "path", snapshotPath);
+        } else if (snapshotPath != null && !accepted.isEmpty()) {
+            List<String> ids = new ArrayList<>();
+            List<float[]> all = new ArrayList<>();
+            for (int i = 0; i < snapshot.size(); i++) {
+                if (!vectors.containsKey(snapshot.id(i))) {
+                    ids.add(snapshot.id(i));
+                    all.add(snapshot.vector(i));
+                }
+            }
+            for (Map.Entry<String, float[]> e : vectors.entrySet()) {
+                ids.add(e.getKey());
+                all.add(e.getValue());
+            }
+            VectorSnapshot.write(Paths.get(snapshotPath), ids, all);
+            snapshot = VectorSnapshot.open(Paths.get(snapshotPath));
+        }
+
+        PassageStore passages = storePath == null || accepted.isEmpty()
+                ? live.passageStore() : PassageStore.open(Paths.get(storePath));
+
+        // 5. 키워드 색인은 생성자에서 새로 만듭니다. (교체 전까지 아무도 보지 않음)
+        return new KnowledgeBase(new ArrayList<>(merged.values()), snapshot, passages);
+    }
+
+    /**
+     * 서버 쪽 폴더의 .md 파일을 읽어서 적재 작업을 시작합니다.
+     */
+    public static Progress submitDirectory(Path folder) throws IOException {
+        return submit(folder.toString(), KnowledgeBase.readCorpus(folder));
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * 서버 메모리에 올려두는 BM25 키워드 역색인입니다.
+ * "VPC CIDR", "IAM role" 처럼 짧은 키워드 질문은 임베딩 + Pinecone 보다 이쪽이 빠르고 정확한 경우가 많습니다.
+ * 만든 뒤에는 읽기 전용이라 여러 요청 스레드가 동시에 검색해도 안전합니다.
+ */
+public class KeywordIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /** 검색 결과와 함께, 1등 문서가 질문 토큰을 얼마나 덮었는지(0~1)를 돌려줍니다. */
+    public static class Result {
+        public final List<SearchHit> hits;
+        public final int queryTerms;
+        public final double topCoverage;
+
+        Result(List<SearchHit> hits, int queryTerms, double topCoverage) {
+            this.hits = hits;
+            this.queryTerms = queryTerms;
+            this.topCoverage = topCoverage;
+        }
+    }
+
+    // 토큰 -> (문서 번호들, 문서별 등장 횟수)
+    private static class Postings {
+        final int[] docs;
+        final int[] freqs;
+
+        Postings(int[] docs, int[] freqs) {
+            this.docs = docs;
+            this.freqs = freqs;
+        }
+    }
+
+    private final List<Document> documents;
+    private final Map<String, Postings> postings;
+    private final int[] docLengths;
+    private final double avgDocLength;
+
+    public KeywordIndex(List<Document> documents) {
+        this.documents = new ArrayList<>(documents);
+        this.docLengths = new int[documents.size()];
+
+        Map<String, Map<Integer, Integer>> building = new HashMap<>();
+        long totalLength = 0;
+        for (int d = 0; d < documents.size(); d++) {
+            List<String> tokens = Tokenizer.tokenize(documents.get(d).text);
+            docLengths[d] = tokens.size();
+            totalLength += tokens.size();
+            for (String t : tokens) {
+                building.computeIfAbsent(t, k -> new HashMap<>()).merge(d, 1, Integer::sum);
+            }
+        }
+        this.avgDocLength = documents.isEmpty() ? 0 : (double) totalLength / documents.size();
+
+        // 검색 때 박싱 없이 훑을 수 있도록 int 배열로 굳혀 둡니다.
+        this.postings = new HashMap<>(building.size() * 2);
+        for (Map.Entry<String, Map<Integer, Integer>> e : building.entrySet()) {
+            int n = e.getValue().size();
+            int[] docs = new int[n];
+            int[] freqs = new int[n];
+            int i = 0;
+            for (Map.Entry<Integer, Integer> p : e.getValue().entrySet()) {
+                docs[i] = p.getKey();
+                freqs[i] = p.getValue();
+                i++;
+            }
+            postings.put(e.getKey(), new Postings(docs, freqs));
+        }
+    }
+
+    public static KeywordIndex empty() {
+        return new KeywordIndex(Collections.emptyList());
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * BM25 로 상위 k 개 문서를 찾습니다. 점수는 1등 점수로 나눠서 0~1 로 맞춥니다.
+     */
+    public Result search(String query, int k) {
+        Set<String> terms = new LinkedHashSet<>(Tokenizer.tokenize(query));
+        if (terms.isEmpty() || documents.isEmpty()) {
+            return new Result(Collections.emptyList(), terms.size(), 0);
+        }
+
+        int n = documents.size();
+        double[] scores = new double[n];
+        int[] matched = new int[n];
+        for (String term : terms) {
+            Postings p = postings.get(term);
+            if (p == null) {
+                continue;
+            }
+            double idf = Math.log(1 + (n - p.docs.length + 0.5) / (p.docs.length + 0.5));
+            for (int i = 0; i < p.docs.length; i++) {
+                int d = p.docs[i];
+                double tf = p.freqs[i];
+                double norm = K1 * (1 - B + B * docLengths[d] / avgDocLength);
+                scores[d] += idf * tf * (K1 + 1) / (tf + norm);
+                matched[d]++;
+            }
+        }
+
+        PriorityQueue<Integer> top = new PriorityQueue<>(k + 1, (a, b) -> Double.compare(scores[a], scores[b]));
+        for (int d = 0; d < n; d++) {
+            if (scores[d] <= 0) {
+                continue;
+            }
+            top.add(d);
+            if (top.size() > k) {
+                top.poll();
+            }
+        }
+        if (top.isEmpty()) {
+            return new Result(Collections.emptyList(), terms.size(), 0);
+        }
+
+        List<Integer> ranked = new ArrayList<>(top);
+        ranked.sort((a, b) -> Double.compare(scores[b], scores[a]));
+        double best = scores[ranked.get(0)];
+
+        List<SearchHit> hits = new ArrayList<>(ranked.size());
+        for (int d : ranked) {
+            Document doc = documents.get(d);
+            hits.add(new SearchHit(doc.id, doc.text, scores[d] / best));
+        }
+        return new Result(hits, terms.size(), (double) matched[ranked.get(0)] / terms.size());
+    }
+}
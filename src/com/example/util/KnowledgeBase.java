@@ -0,0 +1,192 @@
+package com.example.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 서버 안에 올려두는 지식 베이스(.md 문서 묶음)와 그 검색 색인입니다.
+ * DataLoader 가 Pinecone 에 올리는 것과 같은 폴더(RAG_CORPUS_DIR)를 읽습니다.
+ */
+public class KnowledgeBase {
+
+    private static volatile KnowledgeBase current;
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    private static final List<Consumer<KnowledgeBase>> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private final long version = VERSIONS.incrementAndGet();
+    private final List<Document> documents;
+    private final Map<String, Document> byId;
+    private final KeywordIndex keywordIndex;
+    private final VectorSnapshot vectorSnapshot;
+    private final PassageStore passageStore;
+
+    KnowledgeBase(List<Document> documents, VectorSnapshot vectorSnapshot, PassageStore passageStore) {
+        this.documents = documents;
+        this.byId = new HashMap<>();
+        for (Document d : documents) {
+            byId.put(d.id, d);
+        }
+        this.keywordIndex = new KeywordIndex(documents);
+        this.vectorSnapshot = vectorSnapshot;
+        this.passageStore = passageStore;
+    }
+
+    /**
+     * 현재 지식 베이스를 돌려줍니다. 처음 부를 때 RAG_CORPUS_DIR 에서 읽어 색인을 만듭니다.
+     * (폴더가 없으면 빈 지식 베이스 - 이 경우 검색은 Pinecone 만 씁니다)
+     */
+    public static KnowledgeBase current() {
+        KnowledgeBase kb = current;
+        if (kb == null) {
+            synchronized (KnowledgeBase.class) {
+                kb = current;
+                if (kb == null) {
+                    kb = loadFromEnv();
+                    current = kb;
+                }
+            }
+        }
+        return kb;
+    }
+
+    /**
+     * 새로 만든 지식 베이스로 통째로 바꿉니다. (재색인 중에도 검색은 이전 것을 그대로 씀)
+     * 요청마다 current() 를 한 번 읽어 쓰므로 진행 중인 질문은 끝까지 같은 버전을 봅니다.
+     */
+    public static void swap(KnowledgeBase next) {
+        KnowledgeBase previous;
+        synchronized (KnowledgeBase.class) {
+            previous = current;
+            current = next;
+        }
+        Log.info("kb", "지식 베이스 교체", "version", next.version,
+                "previous", previous == null ? 0 : previous.version, "docs", next.documents.size());
+        for (Consumer<KnowledgeBase> listener : LISTENERS) {
+            try {
+                listener.accept(next);
+            } catch (RuntimeException e) {
+                Log.error("kb", "교체 알림 처리 실패", e);
+            }
+        }
+    }
+
+    /**
+     * 지식 베이스가 바뀔 때 부를 함수를 등록합니다. (지식 베이스에서 만든 캐시를 다시 만드는 용도)
+     */
+    public static void addListener(Consumer<KnowledgeBase> listener) {
+        LISTENERS.add(listener);
+    }
+
+    private static KnowledgeBase loadFromEnv() {
+        return new KnowledgeBase(loadDocuments(), loadVectorSnapshot(), loadPassageStore());
+    }
+
+    private static List<Document> loadDocuments() {
+        String dir = Env.get("RAG_CORPUS_DIR", null);
+        if (dir == null) {
+            Log.warn("kb", "RAG_CORPUS_DIR 미설정 - 키워드 검색 없이 동작합니다.");
+            return new ArrayList<>();
+        }
+        try {
+            List<Document> docs = readCorpus(Paths.get(dir));
+            Log.info("kb", "문서 색인 완료", "docs", docs.size(), "dir", dir);
+            return docs;
+        } catch (IOException e) {
+            Log.error("kb", "폴더를 읽지 못했습니다", e, "dir", dir);
+            return new ArrayList<>();
+        }
+    }
+
+    // RAG_VECTOR_SNAPSHOT 파일이 있으면 로컬 벡터 검색을 씁니다. (없으면 Pinecone)
+    private static VectorSnapshot loadVectorSnapshot() {
+        String file = Env.get("RAG_VECTOR_SNAPSHOT", null);
+        if (file == null || !Files.isRegularFile(Paths.get(file))) {
+            return null;
+        }
+        try {
+            VectorSnapshot snapshot = VectorSnapshot.open(Paths.get(file));
+            Log.info("kb", "벡터 스냅샷 매핑 완료", "vectors", snapshot.size(), "file", file);
+            return snapshot;
+        } catch (IOException e) {
+            Log.error("kb", "벡터 스냅샷을 열지 못했습니다", e, "file", file);
+            return null;
+        }
+    }
+
+    // RAG_PASSAGE_STORE 파일이 있으면 본문은 여기서 꺼내고 Pinecone 에는 ID/점수만 묻습니다.
+    private static PassageStore loadPassageStore() {
+        String file = Env.get("RAG_PASSAGE_STORE", null);
+        if (file == null || !Files.isRegularFile(Paths.get(file))) {
+            return null;
+        }
+        try {
+            PassageStore store = PassageStore.open(Paths.get(file));
+            Log.info("kb", "문서 저장소 매핑 완료", "passages", store.size(), "file", file);
+            return store;
+        } catch (IOException e) {
+            Log.error("kb", "문서 저장소를 열지 못했습니다", e, "file", file);
+            return null;
+        }
+    }
+
+    /**
+     * 폴더 안의 .md 파일들을 문서로 읽습니다. (하위 폴더는 보지 않습니다 - DataLoader 와 동일)
+     */
+    public static List<Document> readCorpus(Path folder) throws IOException {
+        List<Document> docs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(folder)) {
+            for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                String name = file.getFileName().toString();
+                if (Files.isRegularFile(file) && name.endsWith(".md")) {
+                    docs.add(new Document(Document.idForFile(name), name, Files.readString(file)));
+                }
+            }
+        }
+        return docs;
+    }
+
+    /** 만들어질 때마다 1씩 올라가는 버전 번호 */
+    public long version() {
+        return version;
+    }
+
+    public List<Document> documents() {
+        return documents;
+    }
+
+    public KeywordIndex keywordIndex() {
+        return keywordIndex;
+    }
+
+    /** 문서 ID 로 본문을 찾습니다. 문서 저장소 -> 색인한 .md 문서 순서로 봅니다. (없으면 null) */
+    public String text(String id) {
+        if (passageStore != null) {
+            String text = passageStore.get(id);
+            if (text != null) {
+                return text;
+            }
+        }
+        Document d = byId.get(id);
+        return d == null ? null : d.text;
+    }
+
+    /** 로컬 문서 저장소 (없으면 null - 이때는 Pinecone 메타데이터에서 본문을 받음) */
+    public PassageStore passageStore() {
+        return passageStore;
+    }
+
+    /** 로컬 벡터 스냅샷 (없으면 null - 이때는 Pinecone 으로 검색) */
+    public VectorSnapshot vectorSnapshot() {
+        return vectorSnapshot;
+    }
+}
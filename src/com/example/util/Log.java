@@ -0,0 +1,187 @@
+package com.example.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 요청 처리 스레드를 막지 않는 비동기 구조화 로그입니다.
+ * 로그 한 줄을 key=value 형식(logfmt)으로 만들어 고정 크기 버퍼에 넣기만 하고,
+ * 실제 콘솔 출력은 전용 스레드가 모아서 합니다. 버퍼가 가득 차면 기다리지 않고 버립니다(개수는 메트릭으로 남김).
+ *
+ * 설정 (환경 변수)
+ * - LOG_BUFFER_SIZE : 버퍼 크기 (기본 8192줄)
+ * - LOG_FIELD_MAX : 값 하나의 최대 글자 수 (기본 200)
+ * - LOG_SAMPLE_PCT : info 로그 기본 샘플링 비율 (기본 100)
+ * - LOG_SAMPLE_PCT_{분류} : 분류별 샘플링 비율 (예: LOG_SAMPLE_PCT_RAG=10). warn/error 는 샘플링하지 않습니다.
+ * - LOG_STACK_DEPTH : 예외 로그에 남길 스택 프레임 수 (기본 5)
+ */
+public final class Log {
+
+    private static final int FIELD_MAX = Env.getInt("LOG_FIELD_MAX", 200);
+    private static final int DEFAULT_SAMPLE_PCT = Env.getInt("LOG_SAMPLE_PCT", 100);
+    private static final int STACK_DEPTH = Env.getInt("LOG_STACK_DEPTH", 5);
+
+    private static final BlockingQueue<String> BUFFER = new ArrayBlockingQueue<>(Env.getInt("LOG_BUFFER_SIZE", 8192));
+    private static final Map<String, Integer> SAMPLE_PCT = new ConcurrentHashMap<>();
+    private static final LongAdder DROPPED = Metrics.counter("log_dropped_total");
+    private static final Thread WRITER;
+
+    static {
+        Metrics.gauge("log_buffer_pending", BUFFER::size);
+        WRITER = new Thread(Log::drainLoop, "async-log");
+        WRITER.setDaemon(true);
+        WRITER.start();
+    }
+
+    private Log() {
+    }
+
+    /** 샘플링되는 일반 로그입니다. fields 는 key, value, key, value ... 순서입니다. */
+    public static void info(String category, String message, Object... fields) {
+        if (!sampled(category)) {
+            return;
+        }
+        enqueue(format("INFO", category, message, fields, null));
+    }
+
+    public static void warn(String category, String message, Object... fields) {
+        enqueue(format("WARN", category, message, fields, null));
+    }
+
+    public static void error(String category, String message, Throwable error, Object... fields) {
+        Metrics.inc(Metrics.name("log_errors_total", "category", category));
+        enqueue(format("ERROR", category, message, fields, error));
+    }
+
+    /** 요청 추적용 짧은 ID 를 만듭니다. */
+    public static String newRequestId() {
+        return Long.toHexString(ThreadLocalRandom.current().nextLong() & 0xffffffffffL);
+    }
+
+    /** 남은 로그를 최대 timeoutMillis 동안 내보내고 끝냅니다. (웹앱 종료 시) */
+    public static void shutdown(long timeoutMillis) {
+        WRITER.interrupt();
+        try {
+            WRITER.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean sampled(String category) {
+        int pct = SAMPLE_PCT.computeIfAbsent(category,
+                c -> Env.getInt("LOG_SAMPLE_PCT_" + c.toUpperCase(), DEFAULT_SAMPLE_PCT));
+        return pct >= 100 || (pct > 0 && ThreadLocalRandom.current().nextInt(100) < pct);
+    }
+
+    private static void enqueue(String line) {
+        if (!BUFFER.offer(line)) {
+            DROPPED.increment();
+        }
+    }
+
+    private static String format(String level, String category, String message, Object[] fields, Throwable error) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("ts=").append(Instant.now()).append(" level=").append(level).append(" cat=").append(category);
+        appendField(sb, "msg", message);
+        for (int i = 0; i + 1 < fields.length; i += 2) {
+            appendField(sb, String.valueOf(fields[i]), fields[i + 1]);
+        }
+        if (error != null) {
+            appendField(sb, "error", error.getClass().getName());
+            appendField(sb, "error_msg", error.getMessage());
+            StackTraceElement[] stack = error.getStackTrace();
+            StringBuilder frames = new StringBuilder();
+            for (int i = 0; i < Math.min(STACK_DEPTH, stack.length); i++) {
+                frames.append(i == 0 ? "" : " < ").append(stack[i].getClassName()).append('.')
+                        .append(stack[i].getMethodName()).append(':').append(stack[i].getLineNumber());
+            }
+            appendField(sb, "at", frames);
+        }
+        return sb.toString();
+    }
+
+    // 값은 FIELD_MAX 글자로 자르고, 공백/따옴표가 있으면 따옴표로 감쌉니다. (줄바꿈은 \n 으로 바꿔 한 줄 유지)
+    private static void appendField(StringBuilder sb, String key, Object value) {
+        if (value == null) {
+            return;
+        }
+        String v = String.valueOf(value);
+        boolean truncated = v.length() > FIELD_MAX;
+        if (truncated) {
+            v = v.substring(0, FIELD_MAX);
+        }
+        sb.append(' ').append(key).append('=');
+        boolean quote = v.isEmpty() || truncated;
+        for (int i = 0; i < v.length() && !quote; i++) {
+            char c = v.charAt(i);
+            quote = c == ' ' || c == '"' || c == '=' || c < 0x20;
+        }
+        if (!quote) {
+            sb.append(v);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else if (c < 0x20) {
+                sb.append(' ');
+            } else {
+                sb.append(c);
+            }
+        }
+        if (truncated) {
+            sb.append("...");
+        }
+        sb.append('"');
+    }
+
+    private static void drainLoop() {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 14);
+        List<String> batch = new ArrayList<>(256);
+        boolean running = true;
+        while (running || !BUFFER.isEmpty()) {
+            try {
+                String first = running ? BUFFER.poll(1, TimeUnit.SECONDS) : BUFFER.poll();
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                BUFFER.drainTo(batch, 255);
+                for (String line : batch) {
+                    out.write(line);
+                    out.write('\n');
+                }
+                batch.clear();
+                if (BUFFER.isEmpty()) {
+                    out.flush();
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (IOException e) {
+                batch.clear();
+            }
+        }
+        try {
+            out.flush();
+        } catch (IOException ignore) {
+        }
+    }
+}
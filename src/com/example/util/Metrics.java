@@ -0,0 +1,123 @@
+package com.example.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 앱 전체에서 쓰는 간단한 메트릭 저장소입니다.
+ * 카운터/게이지/지연 시간 히스토그램을 이름(라벨 포함)으로 등록해 두고, /metrics 에서 Prometheus 텍스트 형식으로 내보냅니다.
+ */
+public final class Metrics {
+
+    // 이름 순으로 정렬해 두어야 같은 메트릭의 라벨들이 한 덩어리로 출력됩니다.
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, Supplier<? extends Number>> GAUGES = new ConcurrentSkipListMap<>();
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * 라벨이 붙은 메트릭 이름을 만듭니다. 예) name("rag_calls_total", "upstream", "embedding")
+     */
+    public static String name(String family, String... labels) {
+        if (labels.length == 0) {
+            return family;
+        }
+        StringBuilder sb = new StringBuilder(family).append('{');
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"");
+            escape(sb, String.valueOf(labels[i + 1]));
+            sb.append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    // 라벨 값은 설정 파일 등에서 오므로(모델/경로 이름) Prometheus 텍스트 형식대로 \, ", 줄바꿈을 이스케이프합니다.
+    private static void escape(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\') {
+                sb.append("\\\\");
+            } else if (c == '"') {
+                sb.append("\\\"");
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    public static void inc(String name) {
+        counter(name).increment();
+    }
+
+    public static void add(String name, long delta) {
+        counter(name).add(delta);
+    }
+
+    /**
+     * 값을 읽을 때마다 supplier 를 호출하는 게이지를 등록합니다. (같은 이름이면 덮어씁니다)
+     */
+    public static void gauge(String name, Supplier<? extends Number> supplier) {
+        GAUGES.put(name, supplier);
+    }
+
+    /**
+     * 지연 시간 히스토그램을 찾거나 새로 만듭니다. 예) histogram(name("db_execute_seconds", "op", "query"))
+     * 이름 문자열을 만드는 비용이 있으므로 요청마다 부르지 말고 결과를 필드에 들고 쓰세요.
+     */
+    public static Histogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, k -> new Histogram());
+    }
+
+    public static void writeTo(Writer out) throws IOException {
+        writeFamily(out, COUNTERS, "counter");
+        writeFamily(out, GAUGES, "gauge");
+        writeHistograms(out);
+    }
+
+    private static void writeHistograms(Writer out) throws IOException {
+        String lastFamily = null;
+        for (Map.Entry<String, Histogram> e : HISTOGRAMS.entrySet()) {
+            String name = e.getKey();
+            int brace = name.indexOf('{');
+            String family = brace < 0 ? name : name.substring(0, brace);
+            String labels = brace < 0 ? "" : name.substring(brace + 1, name.length() - 1);
+            if (!family.equals(lastFamily)) {
+                out.write("# TYPE " + family + " histogram\n");
+                lastFamily = family;
+            }
+            e.getValue().writeTo(out, family, labels);
+        }
+    }
+
+    private static void writeFamily(Writer out, Map<String, ?> metrics, String type) throws IOException {
+        String lastFamily = null;
+        for (Map.Entry<String, ?> e : metrics.entrySet()) {
+            String name = e.getKey();
+            int brace = name.indexOf('{');
+            String family = brace < 0 ? name : name.substring(0, brace);
+            if (!family.equals(lastFamily)) {
+                out.write("# TYPE " + family + " " + type + "\n");
+                lastFamily = family;
+            }
+            Object v = e.getValue();
+            Number value = (v instanceof LongAdder) ? ((LongAdder) v).sum() : ((Supplier<?>) v).get() instanceof Number
+                    ? (Number) ((Supplier<?>) v).get() : 0;
+            out.write(name + " " + value + "\n");
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 질문마다 답변을 만들 Gemini 모델(경로)을 고릅니다.
+ * 짧고 문맥이 적은 질문("안녕", "TCP 가 뭐야?")은 빠른 light 경로로, 길거나 검색 문맥이 많거나
+ * 설계/비교/코드 같은 질문은 heavy 경로로 보냅니다. 경로마다 시도할 모델 목록이 있어서 앞 모델이 실패하면 다음 모델로 넘어갑니다.
+ *
+ * 라우팅 표는 GEMINI_ROUTES_FILE(JSON, 예: ConfigMap 으로 마운트한 파일)에서 읽고, 파일이 바뀌면
+ * GEMINI_ROUTES_RELOAD_MS 마다 다시 읽어서 재배포 없이 바꿀 수 있습니다. (파일이 없거나 잘못되면 기본 표 / 직전 표 유지)
+ * <pre>
+ * {
+ *   "lightMaxQuestionChars": 200,
+ *   "lightMaxContextChars": 2000,
+ *   "heavyKeywords": ["설계", "비교", "why"],
+ *   "routes": {
+ *     "light": { "models": ["gemini-2.5-flash-lite", "gemini-2.5-flash"], "timeoutMs": 10000 },
+ *     "heavy": { "models": ["gemini-2.5-flash", "gemini-2.5-flash-lite"], "timeoutMs": 30000 }
+ *   }
+ * }
+ * </pre>
+ * 경로/모델별 지연 시간은 rag_generation_seconds{route,model}, 결과는 rag_generation_total{route,model,result},
+ * 다음 모델로 넘어간 횟수는 rag_generation_fallback_total{route,model}, 분류 이유는 rag_generation_routed_total{route,reason} 에 남깁니다.
+ */
+public class ModelRouter {
+
+    public static final String LIGHT = "light";
+    public static final String HEAVY = "heavy";
+
+    private static final String ROUTES_FILE = Env.get("GEMINI_ROUTES_FILE", "");
+    private static final long RELOAD_MS = Env.getLong("GEMINI_ROUTES_RELOAD_MS", 10000);
+
+    // 기본 표: heavy 는 지금까지 쓰던 gemini-2.5-flash, light 는 더 가벼운 flash-lite
+    private static final String DEFAULT_LIGHT_MODEL = Env.get("GEMINI_LIGHT_MODEL", "gemini-2.5-flash-lite");
+    private static final String DEFAULT_HEAVY_MODEL = Env.get("GEMINI_HEAVY_MODEL", "gemini-2.5-flash");
+    private static final List<String> DEFAULT_HEAVY_KEYWORDS = Arrays.asList(
+            "설계", "아키텍처", "구조", "비교", "차이", "장단점", "원리", "구현", "최적화", "분석", "리팩터", "디버깅", "왜",
+            "architecture", "design", "compare", "difference", "trade-off", "implement", "optimize", "debug", "why");
+
+    private static final Gson gson = new Gson();
+    private static final Map<String, ModelStats> STATS = new ConcurrentHashMap<>();
+    private static final Map<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    private static volatile ModelRouter current = defaults();
+    private static volatile long fileModified = -1;
+    private static final AtomicLong nextCheckAt = new AtomicLong();
+
+    /** 경로 하나: 차례로 시도할 모델과 시도당 타임아웃 */
+    public static class Route {
+        public final String name;
+        public final List<String> models;
+        public final Duration timeout;
+
+        Route(String name, List<String> models, Duration timeout) {
+            this.name = name;
+            this.models = Collections.unmodifiableList(new ArrayList<>(models));
+            this.timeout = timeout;
+        }
+
+        /** 모델 호출 한 번의 지연 시간과 결과를 남깁니다. */
+        public void observe(String model, long startNanos, boolean ok) {
+            ModelStats s = STATS.computeIfAbsent(name + '|' + model, k -> new ModelStats(name, model));
+            s.latency.observeSince(startNanos);
+            (ok ? s.ok : s.errors).increment();
+        }
+
+        /** model 이 실패해서 다음 모델로 넘어갑니다. */
+        public void fallback(String model) {
+            STATS.computeIfAbsent(name + '|' + model, k -> new ModelStats(name, model)).fallbacks.increment();
+        }
+    }
+
+    // 경로/모델별 메트릭 (표를 다시 읽어도 같은 이름이면 이어서 셉니다)
+    private static class ModelStats {
+        final Histogram latency;
+        final LongAdder ok;
+        final LongAdder errors;
+        final LongAdder fallbacks;
+
+        ModelStats(String route, String model) {
+            latency = Metrics.histogram(Metrics.name("rag_generation_seconds", "route", route, "model", model));
+            ok = Metrics.counter(Metrics.name("rag_generation_total", "route", route, "model", model, "result", "ok"));
+            errors = Metrics.counter(Metrics.name("rag_generation_total", "route", route, "model", model, "result", "error"));
+            fallbacks = Metrics.counter(Metrics.name("rag_generation_fallback_total", "route", route, "model", model));
+        }
+    }
+
+    // 설정 파일 JSON 모양 (빠진 값은 기본값)
+    private static class Config {
+        Integer lightMaxQuestionChars;
+        Integer lightMaxContextChars;
+        List<String> heavyKeywords;
+        Map<String, RouteConfig> routes;
+    }
+    private static class RouteConfig {
+        List<String> models;
+        Long timeoutMs;
+    }
+
+    private final int lightMaxQuestionChars;
+    private final int lightMaxContextChars;
+    private final List<String> heavyKeywords;
+    private final Map<String, Route> routes;
+    private final String source;
+
+    private ModelRouter(int lightMaxQuestionChars, int lightMaxContextChars, List<String> heavyKeywords,
+            Map<String, Route> routes, String source) {
+        this.lightMaxQuestionChars = lightMaxQuestionChars;
+        this.lightMaxContextChars = lightMaxContextChars;
+        this.heavyKeywords = heavyKeywords;
+        this.routes = routes;
+        this.source = source;
+    }
+
+    /**
+     * 지금 라우팅 표를 돌려줍니다. 마지막 확인 뒤 GEMINI_ROUTES_RELOAD_MS 가 지났으면 파일 수정 시각을 보고 다시 읽습니다.
+     * (확인은 한 스레드만 하고 나머지는 기다리지 않고 지금 표를 씁니다)
+     */
+    public static ModelRouter current() {
+        long now = System.currentTimeMillis();
+        long next = nextCheckAt.get();
+        if (!ROUTES_FILE.isEmpty() && now >= next && nextCheckAt.compareAndSet(next, now + RELOAD_MS)) {
+            reloadIfModified();
+        }
+        return current;
+    }
+
+    /** 파일을 바로 다시 읽습니다. (관리자 API) 읽지 못하면 false 이고 지금 표를 그대로 씁니다. */
+    public static synchronized boolean reload() {
+        if (ROUTES_FILE.isEmpty()) {
+            return false;
+        }
+        Path path = Paths.get(ROUTES_FILE);
+        try {
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            current = load(path);
+            fileModified = modified;
+            Log.info("router", "라우팅 표 적용", "file", ROUTES_FILE, "routes", current.routes.keySet());
+            return true;
+        } catch (IOException | JsonParseException | IllegalArgumentException e) {
+            // 편집 중인 파일을 읽었거나 형식이 틀리면 직전 표를 계속 씁니다. (다음 수정 때 다시 시도)
+            Metrics.inc("rag_generation_routes_reload_errors_total");
+            Log.warn("router", "라우팅 표 읽기 실패 (직전 표 유지)", "file", ROUTES_FILE, "error_msg", e.getMessage());
+            return false;
+        }
+    }
+
+    private static synchronized void reloadIfModified() {
+        try {
+            long modified = Files.getLastModifiedTime(Paths.get(ROUTES_FILE)).toMillis();
+            if (modified != fileModified) {
+                fileModified = modified;
+                reload();
+            }
+        } catch (IOException e) {
+            if (fileModified != 0) {
+                fileModified = 0;
+                Log.warn("router", "라우팅 표 파일이 없습니다 (직전 표 유지)", "file", ROUTES_FILE);
+            }
+        }
+    }
+
+    private static ModelRouter load(Path path) throws IOException {
+        Config config;
+        try (Reader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            config = gson.fromJson(in, Config.class);
+        }
+        if (config == null) {
+            throw new IllegalArgumentException("빈 파일");
+        }
+        ModelRouter base = defaults();
+        Map<String, Route> routes = new LinkedHashMap<>(base.routes);
+        if (config.routes != null) {
+            for (Map.Entry<String, RouteConfig> e : config.routes.entrySet()) {
+                RouteConfig rc = e.getValue();
+                if (rc == null || rc.models == null || rc.models.isEmpty()) {
+                    throw new IllegalArgumentException(e.getKey() + " 경로에 models 가 없습니다.");
+                }
+                Duration timeout = rc.timeoutMs != null ? Duration.ofMillis(rc.timeoutMs) : Upstream.GENERATION.timeout();
+                routes.put(e.getKey(), new Route(e.getKey(), rc.models, timeout));
+            }
+        }
+        return new ModelRouter(
+                config.lightMaxQuestionChars != null ? config.lightMaxQuestionChars : base.lightMaxQuestionChars,
+                config.lightMaxContextChars != null ? config.lightMaxContextChars : base.lightMaxContextChars,
+                config.heavyKeywords != null ? lowerCase(config.heavyKeywords) : base.heavyKeywords,
+                Collections.unmodifiableMap(routes), path.toString());
+    }
+
+    private static ModelRouter defaults() {
+        Map<String, Route> routes = new LinkedHashMap<>();
+        routes.put(LIGHT, new Route(LIGHT, Arrays.asList(DEFAULT_LIGHT_MODEL, DEFAULT_HEAVY_MODEL),
+                Duration.ofMillis(Env.getLong("GEMINI_LIGHT_TIMEOUT_MS", 10000))));
+        routes.put(HEAVY, new Route(HEAVY, Arrays.asList(DEFAULT_HEAVY_MODEL, DEFAULT_LIGHT_MODEL),
+                Upstream.GENERATION.timeout()));
+        return new ModelRouter(
+                Env.getInt("GEMINI_LIGHT_MAX_QUESTION_CHARS", 200),
+                Env.getInt("GEMINI_LIGHT_MAX_CONTEXT_CHARS", 2000),
+                lowerCase(DEFAULT_HEAVY_KEYWORDS), Collections.unmodifiableMap(routes), "defaults");
+    }
+
+    private static List<String> lowerCase(List<String> words) {
+        List<String> lower = new ArrayList<>();
+        for (String w : words) {
+            if (w != null && !w.trim().isEmpty()) {
+                lower.add(w.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        return Collections.unmodifiableList(lower);
+    }
+
+    /**
+     * 질문과 프롬프트에 붙은 문맥 크기로 경로를 고릅니다.
+     *
+     * @param question     사용자의 원래 질문
+     * @param contextChars 프롬프트에서 질문을 뺀 나머지(검색 문맥 + 이전 대화) 글자 수
+     */
+    public Route route(String question, int contextChars) {
+        String reason = classify(question, contextChars);
+        String name = reason.equals("simple") ? LIGHT : HEAVY;
+        Metrics.inc(Metrics.name("rag_generation_routed_total", "route", name, "reason", reason));
+        Route route = routes.get(name);
+        return route != null ? route : routes.values().iterator().next();
+    }
+
+    // heavy 로 보내는 이유 (아니면 "simple") - 순서대로 가장 싼 검사부터
+    private String classify(String question, int contextChars) {
+        if (question.length() > lightMaxQuestionChars) {
+            return "question_length";
+        }
+        if (contextChars > lightMaxContextChars) {
+            return "context_size";
+        }
+        if (question.contains("```") || lineCount(question) >= 3) {
+            return "code";
+        }
+        String lower = question.toLowerCase(Locale.ROOT);
+        for (String keyword : heavyKeywords) {
+            if (lower.contains(keyword)) {
+                return "keyword";
+            }
+        }
+        return "simple";
+    }
+
+    private static int lineCount(String s) {
+        int lines = 1;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * 모델별 서킷 브레이커입니다. 계속 실패하는 모델(할당량 초과, 내려간 모델 등)은 열어 두고 다음 모델로 바로 넘어갑니다.
+     * (Gemini 생성 전체 브레이커인 Upstream.GENERATION 과 같은 RAG_GENERATION_BREAKER_* 설정을 씁니다)
+     */
+    public static CircuitBreaker breaker(String model) {
+        return BREAKERS.computeIfAbsent(model, m -> new CircuitBreaker("generation:" + m,
+                Env.getInt("RAG_GENERATION_BREAKER_FAILURES", Env.getInt("RAG_BREAKER_FAILURES", 5)),
+                Env.getLong("RAG_GENERATION_BREAKER_OPEN_MS", Env.getLong("RAG_BREAKER_OPEN_MS", 30000))));
+    }
+
+    public Map<String, Route> routes() {
+        return routes;
+    }
+
+    public int lightMaxQuestionChars() {
+        return lightMaxQuestionChars;
+    }
+
+    public int lightMaxContextChars() {
+        return lightMaxContextChars;
+    }
+
+    public List<String> heavyKeywords() {
+        return heavyKeywords;
+    }
+
+    /** 표를 읽은 곳 (파일 경로, 또는 "defaults") */
+    public String source() {
+        return source;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.util;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 외부 AI API(Gemini, Pinecone) 호출에 쓰는 공용 HttpClient 입니다.
+ * HTTP/2 로 한 연결에 여러 요청을 다중화하고, 연결은 풀에 남겨 재사용합니다.
+ * 응답 처리는 Tomcat 요청 스레드나 공용 ForkJoinPool 이 아닌 전용 스레드 풀에서 돌립니다.
+ *
+ * 설정 (환경 변수)
+ * - RAG_HTTP_VERSION : HTTP_2(기본) 또는 HTTP_1_1
+ * - RAG_CONNECT_TIMEOUT_MS : 연결 타임아웃 (기본 2000)
+ * - RAG_HTTP_THREADS : 전용 스레드 수 (기본 4)
+ * - RAG_HTTP_KEEPALIVE_S : 쉬는 연결을 풀에 남겨둘 시간 (기본 300)
+ */
+public final class OutboundHttp {
+
+    private static final ExecutorService EXECUTOR;
+    private static final HttpClient CLIENT;
+
+    static {
+        // JDK HttpClient 는 연결 풀 설정을 시스템 프로퍼티로만 받으므로 클라이언트를 만들기 전에 넣어둡니다.
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout",
+                    String.valueOf(Env.getLong("RAG_HTTP_KEEPALIVE_S", 300)));
+        }
+
+        AtomicInteger seq = new AtomicInteger();
+        EXECUTOR = Executors.newFixedThreadPool(Env.getInt("RAG_HTTP_THREADS", 4), r -> {
+            Thread t = new Thread(r, "rag-http-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        HttpClient.Version version = "HTTP_1_1".equalsIgnoreCase(Env.get("RAG_HTTP_VERSION", "HTTP_2"))
+                ? HttpClient.Version.HTTP_1_1
+                : HttpClient.Version.HTTP_2;
+
+        CLIENT = HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(Duration.ofMillis(Env.getLong("RAG_CONNECT_TIMEOUT_MS", 2000)))
+                .executor(EXECUTOR)
+                .build();
+    }
+
+    private OutboundHttp() {
+    }
+
+    public static HttpClient client() {
+        return CLIENT;
+    }
+}
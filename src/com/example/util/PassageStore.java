@@ -0,0 +1,149 @@
+package com.example.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 벡터 ID -> 본문을 담는 로컬 문서 저장소입니다.
+ * Pinecone 메타데이터에 본문을 통째로 넣으면 검색할 때마다 파일 전체가 네트워크로 돌아오므로,
+ * 본문은 여기 두고 Pinecone 에서는 ID 와 점수만 받아옵니다.
+ *
+ * 파일은 append-only 이고, 레코드 하나는 다음과 같습니다. (같은 ID 가 또 나오면 뒤의 것이 이깁니다)
+ * <pre>
+ * int idLength | byte[] id(UTF-8) | int rawLength | int compressedLength | byte[] deflate(본문 UTF-8)
+ * </pre>
+ * 서버는 파일을 mmap 으로 열고, 처음에 레코드 머리만 훑어서 ID -> 오프셋 색인을 만듭니다.
+ */
+public class PassageStore {
+
+    private final MappedByteBuffer buffer;
+    private final Map<String, Integer> offsets;
+
+    private PassageStore(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        this.offsets = new HashMap<>();
+        int pos = 0;
+        int limit = buffer.limit();
+        while (pos + 4 <= limit) {
+            int idLength = buffer.getInt(pos);
+            int recordEnd = pos + 4 + idLength + 8;
+            if (idLength < 0 || recordEnd > limit) {
+                // 쓰다가 끊긴 마지막 레코드는 무시합니다.
+                break;
+            }
+            byte[] id = new byte[idLength];
+            ByteBuffer view = buffer.duplicate();
+            view.position(pos + 4);
+            view.get(id);
+            int compressedLength = buffer.getInt(pos + 4 + idLength + 4);
+            if (compressedLength < 0 || recordEnd + compressedLength > limit) {
+                break;
+            }
+            offsets.put(new String(id, StandardCharsets.UTF_8), pos);
+            pos = recordEnd + compressedLength;
+        }
+    }
+
+    public static PassageStore open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new PassageStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int size() {
+        return offsets.size();
+    }
+
+    public boolean contains(String id) {
+        return offsets.containsKey(id);
+    }
+
+    /**
+     * ID 로 본문을 찾아 압축을 풀어 돌려줍니다. (없으면 null)
+     */
+    public String get(String id) {
+        Integer pos = offsets.get(id);
+        if (pos == null) {
+            return null;
+        }
+        int idLength = buffer.getInt(pos);
+        int header = pos + 4 + idLength;
+        int rawLength = buffer.getInt(header);
+        int compressedLength = buffer.getInt(header + 4);
+
+        ByteBuffer compressed = buffer.duplicate();
+        compressed.position(header + 8).limit(header + 8 + compressedLength);
+        byte[] raw = new byte[rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int n = 0;
+            while (n < rawLength && !inflater.finished()) {
+                int read = inflater.inflate(raw, n, rawLength - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += read;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("문서 저장소 레코드가 깨졌습니다: " + id, e);
+        } finally {
+            inflater.end();
+        }
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 저장소 파일 끝에 레코드를 덧붙이는 쓰기 도구입니다. (DataLoader 용)
+     */
+    public static class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+
+        public Writer(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+
+        public void append(String id, String text) throws IOException {
+            byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+            byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                compressed.write(chunk, 0, n);
+            }
+
+            ByteBuffer record = ByteBuffer.allocate(4 + idBytes.length + 8 + compressed.size());
+            record.putInt(idBytes.length).put(idBytes).putInt(raw.length).putInt(compressed.size())
+                    .put(compressed.toByteArray());
+            record.flip();
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            channel.force(true);
+            channel.close();
+        }
+    }
+}
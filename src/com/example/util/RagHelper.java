@@ -3,15 +3,33 @@ package com.example.util;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RagHelper {
 
@@ -20,15 +38,96 @@ public class RagHelper {
     private static final String PINECONE_API_KEY = System.getenv("PINECONE_API_KEY");
     private static final String PINECONE_HOST = System.getenv("PINECONE_HOST");
 
+    // 임베딩이 이 시간(ms) 안에 안 오면 같은 요청을 한 번 더 보내서 먼저 온 응답을 씁니다. (0이면 끔)
+    private static final long EMBEDDING_HEDGE_MS = Env.getLong("RAG_EMBEDDING_HEDGE_MS", 0);
+    // 200 이 아닌 응답에서 오류 메시지에 담을 본문 앞부분 크기
+    private static final int ERROR_SNIPPET_BYTES = 1024;
+
+    // 호출할 주소는 한 번만 만들어 둡니다. API 키는 URL 대신 x-goog-api-key 헤더로 보냅니다.
+    // GEMINI_BASE_URL / PINECONE_HOST 를 로컬 가짜 서버(bench.FakeUpstreams)로 바꾸면 할당량 없이 부하 테스트를 할 수 있습니다.
+    private static final String GEMINI_BASE_URL = Env.get("GEMINI_BASE_URL", "https://generativelanguage.googleapis.com");
+    private static final URI EMBEDDING_URI = URI.create(
+            GEMINI_BASE_URL + "/v1beta/models/text-embedding-004:embedContent");
+    private static final URI BATCH_EMBEDDING_URI = URI.create(
+            GEMINI_BASE_URL + "/v1beta/models/text-embedding-004:batchEmbedContents");
+    // 생성 모델은 ModelRouter 가 질문마다 고르므로 모델별 주소를 처음 쓸 때 만들어 둡니다.
+    private static final Map<String, URI> GENERATION_URIS = new ConcurrentHashMap<>();
+    private static final URI PINECONE_UPSERT_URI = PINECONE_HOST == null ? null : URI.create(PINECONE_HOST + "/vectors/upsert");
+    private static final URI PINECONE_QUERY_URI = PINECONE_HOST == null ? null : URI.create(PINECONE_HOST + "/query");
+
+    // 검색 결과 개수와 하이브리드 검색 설정
+    private static final int TOP_K = Env.getInt("RAG_TOP_K", 3);
+    // 로컬 벡터 스냅샷을 쓸 때도 사용자 메모는 Pinecone 에서 찾습니다. (searchVectors 참고)
+    private static final boolean SNAPSHOT_MEMO_SEARCH = Env.getBoolean("RAG_SNAPSHOT_MEMO_SEARCH", true);
+    public static final String MEMO_KIND = "memo";
+
+    // 벡터 결과는 섞기 전에 코사인 유사도가 이보다 낮으면 버립니다.
+    private static final double VECTOR_MIN_SCORE = Env.getInt("RAG_CONTEXT_MIN_SCORE_PCT", 35) / 100.0;
+    private static final double HYBRID_VECTOR_WEIGHT = Env.getInt("RAG_HYBRID_VECTOR_WEIGHT_PCT", 70) / 100.0;
+    private static final int KEYWORD_ONLY_MAX_TERMS = Env.getInt("RAG_KEYWORD_ONLY_MAX_TERMS", 6);
+    private static final double KEYWORD_ONLY_MIN_COVERAGE = Env.getInt("RAG_KEYWORD_ONLY_MIN_COVERAGE_PCT", 100) / 100.0;
+
     private static final Gson gson = new Gson();
-    private static final HttpClient client = HttpClient.newHttpClient();
+    private static final HttpClient client = OutboundHttp.client();
+
+    /**
+     * 임베딩과 벡터 검색 서킷이 모두 닫혀 있어서 RAG 검색을 시도할 만한지 알려줍니다.
+     * 하나라도 열려 있으면 서블릿은 검색을 건너뛰고 바로 답변을 생성합니다.
+     */
+    public static boolean isRetrievalAvailable() {
+        boolean localVectors = KnowledgeBase.current().vectorSnapshot() != null;
+        return Upstream.EMBEDDING.breaker().isCallPermitted()
+                && (localVectors || Upstream.SEARCH.breaker().isCallPermitted());
+    }
+
+    // 같은 입력으로 동시에 들어온 호출은 하나로 합칩니다. (RAG_SINGLE_FLIGHT=false 로 끌 수 있음)
+    private static final boolean SINGLE_FLIGHT = Env.getBoolean("RAG_SINGLE_FLIGHT", true);
+    public static final SingleFlight<String, List<Double>> EMBEDDING_FLIGHT = new SingleFlight<>("embedding");
+    public static final SingleFlight<List<Double>, List<SearchHit>> SEARCH_FLIGHT = new SingleFlight<>("search");
+    public static final SingleFlight<String, String> GENERATION_FLIGHT = new SingleFlight<>("generation");
+
+    // 짧은 시간(ms) 안에 몰린 질문 임베딩을 batchEmbedContents 1번으로 묶습니다. (0이면 끔)
+    private static final long EMBEDDING_BATCH_WINDOW_MS = Env.getLong("RAG_EMBEDDING_BATCH_WINDOW_MS", 3);
+    private static final EmbeddingBatcher EMBEDDING_BATCHER = new EmbeddingBatcher(EMBEDDING_BATCH_WINDOW_MS,
+            Env.getInt("RAG_EMBEDDING_BATCH_MAX", 32));
 
     // 1. Gemini 임베딩 (text-embedding-004 모델 사용)
+    // 요청 단계 기록(Trace)은 호출한 스레드 기준입니다. (합쳐진 호출/배치는 기다린 시간까지 포함)
     public static List<Double> getEmbedding(String text) throws Exception {
-        // Gemini는 URL에 API 키를 쿼리 파라미터로 붙입니다.
-        String url = "https://generativelanguage.googleapis.com/v1beta/models/text-embedding-004:embedContent?key="
-                + GEMINI_API_KEY;
+        long start = System.nanoTime();
+        try {
+            if (!SINGLE_FLIGHT) {
+                return embedOne(text);
+            }
+            return EMBEDDING_FLIGHT.execute(SingleFlight.normalize(text), () -> embedOne(text));
+        } finally {
+            Trace.stage("embed", null, start);
+        }
+    }
 
+    private static List<Double> embedOne(String text) throws Exception {
+        return EMBEDDING_BATCH_WINDOW_MS > 0 ? EMBEDDING_BATCHER.embed(text) : fetchEmbedding(text);
+    }
+
+    static List<Double> fetchEmbedding(String text) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(EMBEDDING_URI)
+                .timeout(Upstream.EMBEDDING.timeout())
+                .header("x-goog-api-key", GEMINI_API_KEY)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(embeddingBody(text), StandardCharsets.UTF_8))
+                .build();
+
+        return exchange(Upstream.EMBEDDING, "embed", request, "Gemini 임베딩 실패", EMBEDDING_HEDGE_MS,
+                RagHelper::parseEmbedding);
+    }
+
+    /*
+     * 아래 xxxBody / parseXxx 는 요청/응답 JSON 만 다루는 부분입니다. (네트워크 없이 벤치마크에서 직접 부름)
+     * 응답은 문자열이나 JSON 트리로 만들지 않고 스트림에서 바로 읽으면서(JsonReader) 필요한 필드만 꺼냅니다.
+     */
+
+    public static String embeddingBody(String text) {
         /*
          * 요청 JSON 구조:
          * {
@@ -47,41 +146,150 @@ public class RagHelper {
 
         JsonObject json = new JsonObject();
         json.add("content", content);
+        return gson.toJson(json);
+    }
+
+    // { "embedding": { "values": [0.1, ...] } }
+    public static List<Double> parseEmbedding(Reader body) throws IOException {
+        JsonReader in = new JsonReader(body);
+        List<Double> embedding = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            if (!"embedding".equals(in.nextName())) {
+                in.skipValue();
+                continue;
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                if ("values".equals(in.nextName())) {
+                    embedding = readValues(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+        }
+        in.endObject();
+        if (embedding == null) {
+            throw new IOException("Gemini 임베딩 응답에 values 가 없습니다.");
+        }
+        return embedding;
+    }
+
+    // [0.1, 0.2, ...] 를 읽어서 수정할 수 없는 리스트로 돌려줍니다.
+    // (single-flight 로 여러 요청이 같은 리스트를 나눠 받으므로)
+    private static List<Double> readValues(JsonReader in) throws IOException {
+        List<Double> values = new ArrayList<>(768);
+        in.beginArray();
+        while (in.hasNext()) {
+            values.add(in.nextDouble());
+        }
+        in.endArray();
+        return Collections.unmodifiableList(values);
+    }
 
+    // 1-1. 여러 문장을 batchEmbedContents 한 번으로 임베딩합니다. (결과 순서 = 입력 순서)
+    static List<List<Double>> fetchEmbeddings(List<String> texts) throws Exception {
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
+                .uri(BATCH_EMBEDDING_URI)
+                .timeout(Upstream.EMBEDDING.timeout())
+                .header("x-goog-api-key", GEMINI_API_KEY)
                 .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(json), StandardCharsets.UTF_8))
+                .POST(HttpRequest.BodyPublishers.ofString(batchEmbeddingBody(texts), StandardCharsets.UTF_8))
                 .build();
 
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        return exchange(Upstream.EMBEDDING, "embed_batch", request, "Gemini 배치 임베딩 실패", 0,
+                RagHelper::parseEmbeddings);
+    }
 
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("Gemini 임베딩 실패: " + response.body());
-        }
+    public static String batchEmbeddingBody(List<String> texts) {
+        /*
+         * 요청 JSON 구조:
+         * { "requests": [ { "model": "models/text-embedding-004", "content": { "parts": [{ "text": "..." }] } }, ... ] }
+         */
+        JsonArray requests = new JsonArray();
+        for (String text : texts) {
+            JsonObject part = new JsonObject();
+            part.addProperty("text", text);
 
-        // 응답 파싱
-        JsonObject resJson = JsonParser.parseString(response.body()).getAsJsonObject();
-        JsonArray values = resJson.getAsJsonObject("embedding").getAsJsonArray("values");
+            JsonArray parts = new JsonArray();
+            parts.add(part);
 
-        List<Double> embedding = new ArrayList<>();
-        for (int i = 0; i < values.size(); i++) {
-            embedding.add(values.get(i).getAsDouble());
+            JsonObject content = new JsonObject();
+            content.add("parts", parts);
+
+            JsonObject item = new JsonObject();
+            item.addProperty("model", "models/text-embedding-004");
+            item.add("content", content);
+            requests.add(item);
         }
-        return embedding;
+        JsonObject json = new JsonObject();
+        json.add("requests", requests);
+        return gson.toJson(json);
+    }
+
+    // { "embeddings": [ { "values": [...] }, ... ] }
+    public static List<List<Double>> parseEmbeddings(Reader body) throws IOException {
+        JsonReader in = new JsonReader(body);
+        List<List<Double>> result = new ArrayList<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (!"embeddings".equals(in.nextName())) {
+                in.skipValue();
+                continue;
+            }
+            in.beginArray();
+            while (in.hasNext()) {
+                List<Double> embedding = null;
+                in.beginObject();
+                while (in.hasNext()) {
+                    if ("values".equals(in.nextName())) {
+                        embedding = readValues(in);
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+                if (embedding == null) {
+                    throw new IOException("Gemini 배치 임베딩 응답에 values 가 없습니다.");
+                }
+                result.add(embedding);
+            }
+            in.endArray();
+        }
+        in.endObject();
+        return result;
+    }
+
+    // Pinecone 호스트가 설정되어 있는지 (재색인 때 업로드 여부 판단용)
+    static boolean hasPinecone() {
+        return PINECONE_UPSERT_URI != null;
     }
 
     // 2. Pinecone 저장 (로직 동일, 차원만 768로 바뀜)
     public static void uploadToPinecone(String id, String text, List<Double> vector) throws Exception {
-        String url = PINECONE_HOST + "/vectors/upsert";
+        uploadToPinecone(id, null, text, vector);
+    }
 
+    /**
+     * kind 를 메타데이터로 같이 올립니다. (예: 사용자 메모는 "memo" - 로컬 벡터 스냅샷을 쓸 때 메모만 골라서 검색)
+     */
+    public static void uploadToPinecone(String id, String kind, String text, List<Double> vector) throws Exception {
         JsonObject vectorObj = new JsonObject();
         vectorObj.addProperty("id", id);
         vectorObj.add("values", gson.toJsonTree(vector));
 
-        JsonObject metadata = new JsonObject();
-        metadata.addProperty("text", text);
-        vectorObj.add("metadata", metadata);
+        // 본문을 로컬 문서 저장소(PassageStore)에 따로 두는 경우 text 는 null 로 넘겨서 ID/벡터만 올립니다.
+        if (text != null || kind != null) {
+            JsonObject metadata = new JsonObject();
+            if (text != null) {
+                metadata.addProperty("text", text);
+            }
+            if (kind != null) {
+                metadata.addProperty("kind", kind);
+            }
+            vectorObj.add("metadata", metadata);
+        }
 
         JsonArray vectors = new JsonArray();
         vectors.add(vectorObj);
@@ -90,59 +298,434 @@ public class RagHelper {
         payload.add("vectors", vectors);
 
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
+                .uri(PINECONE_UPSERT_URI)
+                .timeout(Upstream.SEARCH.timeout())
                 .header("Api-Key", PINECONE_API_KEY)
                 .header("Content-Type", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(payload), StandardCharsets.UTF_8))
                 .build();
 
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("Pinecone 저장 실패: " + response.body());
-        }
+        // 저장도 같은 Pinecone 호스트를 쓰므로 검색과 같은 브레이커/벌크헤드를 공유합니다.
+        exchange(Upstream.SEARCH, "upsert", request, "Pinecone 저장 실패", 0, body -> null);
     }
 
-    // 3. Pinecone 검색 (로직 동일)
+    // 3. Pinecone 검색 (로직 동일) - 검색된 본문을 "---" 로 이어 붙여서 돌려줍니다.
     public static String searchPinecone(List<Double> vector) throws Exception {
-        String url = PINECONE_HOST + "/query";
+        return toContext(searchPineconeHits(vector));
+    }
 
-        JsonObject payload = new JsonObject();
-        payload.add("vector", gson.toJsonTree(vector));
-        payload.addProperty("topK", 3);
-        payload.addProperty("includeMetadata", true);
+    // 3-1. Pinecone 검색 결과를 (ID, 본문, 유사도 점수) 목록으로 돌려줍니다.
+    public static List<SearchHit> searchPineconeHits(List<Double> vector) throws Exception {
+        if (!SINGLE_FLIGHT) {
+            return querySearchHits(vector);
+        }
+        return SEARCH_FLIGHT.execute(vector, () -> querySearchHits(vector));
+    }
+
+    private static List<SearchHit> querySearchHits(List<Double> vector) throws Exception {
+        // 로컬 문서 저장소가 있으면 본문은 거기서 꺼내고, Pinecone 에서는 ID 와 점수만 받습니다.
+        return querySearchHits(vector, null, KnowledgeBase.current().passageStore());
+    }
+
+    /** Pinecone 에서 kind 메타데이터가 "memo" 인 벡터(사용자 메모)만 찾습니다. (본문은 메타데이터에 있음) */
+    static List<SearchHit> searchPineconeMemos(List<Double> vector) throws Exception {
+        return querySearchHits(vector, MEMO_KIND, null);
+    }
+
+    private static List<SearchHit> querySearchHits(List<Double> vector, String kind, PassageStore store) throws Exception {
 
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
+                .uri(PINECONE_QUERY_URI)
+                .timeout(Upstream.SEARCH.timeout())
                 .header("Api-Key", PINECONE_API_KEY)
                 .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(payload), StandardCharsets.UTF_8))
+                .POST(HttpRequest.BodyPublishers.ofString(queryBody(vector, TOP_K, store == null, kind), StandardCharsets.UTF_8))
                 .build();
 
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        List<String> missing = new ArrayList<>();
+        List<SearchHit> hits = exchange(Upstream.SEARCH, "query", request, "Pinecone 검색 실패", 0,
+                body -> parseQueryHits(body, store, missing));
+
+        if (!missing.isEmpty()) {
+            Map<String, String> fetched = fetchPineconeTexts(missing);
+            for (int i = 0; i < hits.size(); i++) {
+                SearchHit h = hits.get(i);
+                if (h.text == null) {
+                    String text = fetched.get(h.id);
+                    hits.set(i, text == null ? null : new SearchHit(h.id, text, h.score));
+                }
+            }
+            hits.removeIf(h -> h == null);
+        }
+        return Collections.unmodifiableList(hits);
+    }
 
-        StringBuilder context = new StringBuilder();
-        JsonObject resJson = JsonParser.parseString(response.body()).getAsJsonObject();
+    public static String queryBody(List<Double> vector, int topK, boolean includeMetadata) {
+        return queryBody(vector, topK, includeMetadata, null);
+    }
+
+    // kind 가 있으면 { "filter": { "kind": { "$eq": kind } } } 로 그 종류만 찾습니다.
+    public static String queryBody(List<Double> vector, int topK, boolean includeMetadata, String kind) {
+        JsonObject payload = new JsonObject();
+        payload.add("vector", gson.toJsonTree(vector));
+        payload.addProperty("topK", topK);
+        payload.addProperty("includeMetadata", includeMetadata);
+        if (kind != null) {
+            JsonObject eq = new JsonObject();
+            eq.addProperty("$eq", kind);
+            JsonObject filter = new JsonObject();
+            filter.add("kind", eq);
+            payload.add("filter", filter);
+        }
+        return gson.toJson(payload);
+    }
+
+    /**
+     * Pinecone 검색 응답을 SearchHit 목록으로 바꿉니다. 본문은 메타데이터 -> store 순서로 찾고,
+     * 둘 다 없으면 text 를 null 로 두고 ID 를 missing 에 넣습니다.
+     */
+    public static List<SearchHit> parseQueryHits(Reader body, PassageStore store, List<String> missing) throws IOException {
+        JsonReader in = new JsonReader(body);
+        List<SearchHit> hits = new ArrayList<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (!"matches".equals(in.nextName())) {
+                in.skipValue();
+                continue;
+            }
+            in.beginArray();
+            while (in.hasNext()) {
+                String id = null;
+                double score = 0;
+                String text = null;
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "id":
+                            id = in.nextString();
+                            break;
+                        case "score":
+                            score = in.nextDouble();
+                            break;
+                        case "metadata":
+                            text = readMetadataText(in);
+                            break;
+                        default:
+                            // values 처럼 쓰지 않는 필드는 객체를 만들지 않고 건너뜁니다.
+                            in.skipValue();
+                    }
+                }
+                in.endObject();
+                if (id == null) {
+                    throw new IOException("Pinecone 검색 응답에 id 가 없는 항목이 있습니다.");
+                }
+                if (text == null && store != null) {
+                    text = store.get(id);
+                }
+                if (text == null) {
+                    // 저장소에 없는 벡터(예: 사용자 메모 memo_xxx)는 아래에서 따로 본문을 받아옵니다.
+                    missing.add(id);
+                }
+                hits.add(new SearchHit(id, text, score));
+            }
+            in.endArray();
+        }
+        in.endObject();
+        return hits;
+    }
+
+    // "metadata": { "text": "..", ... } 에서 text 만 꺼냅니다. (없으면 null)
+    private static String readMetadataText(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            return null;
+        }
+        String text = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("text".equals(in.nextName()) && in.peek() == JsonToken.STRING) {
+                text = in.nextString();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return text;
+    }
+
+    // 3-2. 로컬 저장소에 없는 벡터의 본문을 Pinecone fetch API 로 받아옵니다.
+    private static Map<String, String> fetchPineconeTexts(List<String> ids) throws Exception {
+        StringBuilder query = new StringBuilder(PINECONE_HOST).append("/vectors/fetch?");
+        for (int i = 0; i < ids.size(); i++) {
+            query.append(i == 0 ? "" : "&").append("ids=").append(URLEncoder.encode(ids.get(i), StandardCharsets.UTF_8));
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(query.toString()))
+                .timeout(Upstream.SEARCH.timeout())
+                .header("Api-Key", PINECONE_API_KEY)
+                .GET()
+                .build();
+
+        return exchange(Upstream.SEARCH, "fetch", request, "Pinecone 본문 조회 실패", 0, RagHelper::parseFetchedTexts);
+    }
 
-        if (resJson.has("matches")) {
-            JsonArray matches = resJson.getAsJsonArray("matches");
-            for (int i = 0; i < matches.size(); i++) {
-                JsonObject match = matches.get(i).getAsJsonObject();
-                if (match.has("metadata")) {
-                    String text = match.getAsJsonObject("metadata").get("text").getAsString();
-                    context.append(text).append("\n---\n");
+    // { "vectors": { "id1": { "metadata": { "text": ".." }, "values": [...] }, ... } }
+    static Map<String, String> parseFetchedTexts(Reader body) throws IOException {
+        JsonReader in = new JsonReader(body);
+        Map<String, String> texts = new HashMap<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (!"vectors".equals(in.nextName()) || in.peek() != JsonToken.BEGIN_OBJECT) {
+                in.skipValue();
+                continue;
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                String id = in.nextName();
+                String text = null;
+                in.beginObject();
+                while (in.hasNext()) {
+                    if ("metadata".equals(in.nextName())) {
+                        text = readMetadataText(in);
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+                if (text != null) {
+                    texts.put(id, text);
                 }
             }
+            in.endObject();
+        }
+        in.endObject();
+        return texts;
+    }
+
+    /**
+     * 벡터 검색: 로컬 벡터 스냅샷이 있으면 서버 안에서(off-heap) 찾고, 없으면 Pinecone 에 묻습니다.
+     * 스냅샷에는 지식 베이스 문서만 있으므로, 스냅샷을 쓸 때도 사용자 메모(kind=memo)는 Pinecone 에서 따로 찾아서
+     * 점수 순으로 합칩니다. (RAG_SNAPSHOT_MEMO_SEARCH=false 면 메모 검색 생략 - Pinecone 왕복이 없어지는 대신 메모는 안 찾음)
+     * kind 메타데이터는 메모를 저장할 때 붙으므로, 이 기능 전에 저장된 메모는 다시 저장해야 찾힙니다.
+     */
+    public static List<SearchHit> searchVectors(List<Double> vector) throws Exception {
+        KnowledgeBase kb = KnowledgeBase.current();
+        VectorSnapshot snapshot = kb.vectorSnapshot();
+        long start = System.nanoTime();
+        if (snapshot == null) {
+            try {
+                return searchPineconeHits(vector);
+            } finally {
+                Trace.stage("search", "pinecone", start);
+            }
+        }
+        List<SearchHit> hits = new ArrayList<>();
+        for (SearchHit h : snapshot.search(VectorSnapshot.toFloats(vector), TOP_K)) {
+            String text = kb.text(h.id);
+            if (text != null) {
+                hits.add(new SearchHit(h.id, text, h.score));
+            }
+        }
+        Trace.stage("search", "local", start);
+        if (!SNAPSHOT_MEMO_SEARCH || PINECONE_QUERY_URI == null || !Upstream.SEARCH.breaker().isCallPermitted()) {
+            return hits;
+        }
+        start = System.nanoTime();
+        try {
+            hits.addAll(searchPineconeMemos(vector));
+            hits.sort((a, b) -> Double.compare(b.score, a.score));
+            if (hits.size() > TOP_K) {
+                hits = new ArrayList<>(hits.subList(0, TOP_K));
+            }
+        } catch (Exception e) {
+            // 메모 검색이 안 돼도 문서 검색 결과는 씁니다.
+            Log.warn("rag", "메모 벡터 검색 실패 - 로컬 결과만 사용", "error_msg", e.getMessage());
+        } finally {
+            Trace.stage("search", "memo", start);
+        }
+        return hits;
+    }
+
+    /**
+     * 하이브리드 검색: 서버 안의 BM25 키워드 색인과 Pinecone 벡터 검색 결과를 섞습니다.
+     * - 키워드 결과가 충분히 확실하면(짧은 질문의 모든 토큰이 1등 문서에 있음) 임베딩 호출을 아예 생략합니다.
+     * - 임베딩/검색 서킷이 열려 있거나 실패하면 키워드 결과만 씁니다.
+     * - 둘 다 있으면 점수를 0~1 로 맞춘 뒤 가중합으로 합칩니다. (RAG_HYBRID_VECTOR_WEIGHT_PCT)
+     */
+    public static List<SearchHit> retrieve(String query) throws Exception {
+        return retrieve(query, null);
+    }
+
+    /**
+     * 질문 임베딩을 이미 구했으면(예: FAQ 찾기) 넘겨서 다시 부르지 않게 합니다. (null 이면 필요할 때 구함)
+     */
+    public static List<SearchHit> retrieve(String query, List<Double> embedding) throws Exception {
+        long start = System.nanoTime();
+        KeywordIndex.Result keyword = KnowledgeBase.current().keywordIndex().search(query, TOP_K);
+        Trace.stage("keyword", null, start);
+
+        if (!keyword.hits.isEmpty()
+                && keyword.queryTerms <= KEYWORD_ONLY_MAX_TERMS
+                && keyword.topCoverage >= KEYWORD_ONLY_MIN_COVERAGE) {
+            Metrics.inc(Metrics.name("rag_retrieval_total", "path", "keyword_only"));
+            return keyword.hits;
+        }
+        if (!isRetrievalAvailable()) {
+            Log.info("rag", "서킷 차단 중 - 키워드 결과만 사용");
+            Metrics.inc(Metrics.name("rag_retrieval_total", "path", "keyword_fallback"));
+            return keyword.hits;
+        }
+
+        List<SearchHit> vectorHits;
+        try {
+            vectorHits = searchVectors(embedding != null ? embedding : getEmbedding(query));
+        } catch (Exception e) {
+            if (keyword.hits.isEmpty()) {
+                throw e;
+            }
+            Log.warn("rag", "벡터 검색 실패 - 키워드 결과만 사용", "error_msg", e.getMessage());
+            Metrics.inc(Metrics.name("rag_retrieval_total", "path", "keyword_fallback"));
+            return keyword.hits;
+        }
+        Metrics.inc(Metrics.name("rag_retrieval_total", "path", "hybrid"));
+        return fuse(keyword.hits, relevantVectorHits(vectorHits), TOP_K);
+    }
+
+    /**
+     * 코사인 유사도가 RAG_CONTEXT_MIN_SCORE_PCT 미만인 벡터 결과를 버립니다.
+     * 섞은 뒤에 거르면 벡터 점수가 가중치(0.7)만큼 깎여서 쓸 만한 결과도 떨어지므로 원래 점수로 거릅니다.
+     */
+    static List<SearchHit> relevantVectorHits(List<SearchHit> hits) {
+        List<SearchHit> kept = new ArrayList<>(hits.size());
+        for (SearchHit h : hits) {
+            if (h.score >= VECTOR_MIN_SCORE) {
+                kept.add(h);
+            }
+        }
+        if (kept.size() < hits.size()) {
+            Metrics.add("rag_vector_hits_below_min_score_total", hits.size() - kept.size());
+        }
+        return kept;
+    }
+
+    /**
+     * 키워드 점수(1등 대비 비율)와 벡터 점수(코사인 유사도)를 ID 기준으로 가중합해서 상위 k 개를 고릅니다.
+     */
+    static List<SearchHit> fuse(List<SearchHit> keywordHits, List<SearchHit> vectorHits, int k) {
+        Map<String, SearchHit> byId = new LinkedHashMap<>();
+        Map<String, Double> fused = new HashMap<>();
+        for (SearchHit h : vectorHits) {
+            byId.put(h.id, h);
+            fused.merge(h.id, HYBRID_VECTOR_WEIGHT * h.score, Double::sum);
+        }
+        for (SearchHit h : keywordHits) {
+            byId.putIfAbsent(h.id, h);
+            fused.merge(h.id, (1 - HYBRID_VECTOR_WEIGHT) * h.score, Double::sum);
+        }
+        List<SearchHit> merged = new ArrayList<>(byId.size());
+        for (SearchHit h : byId.values()) {
+            merged.add(h.withScore(fused.get(h.id)));
+        }
+        merged.sort((a, b) -> Double.compare(b.score, a.score));
+        return merged.size() > k ? new ArrayList<>(merged.subList(0, k)) : merged;
+    }
+
+    /**
+     * 검색 결과 본문을 프롬프트에 넣을 문맥 문자열로 이어 붙입니다.
+     */
+    public static String toContext(List<SearchHit> hits) {
+        StringBuilder context = new StringBuilder();
+        for (SearchHit h : hits) {
+            context.append(h.text).append("\n---\n");
         }
         return context.toString();
     }
 
     // 4. [NEW] Gemini에게 질문하기 (generateContent)
-    // 기존 Servlet에 있던 callOpenAiApi 대신 이걸 씁니다.
+    // 기존 Servlet에 있던 callOpenAiApi 대신 이걸 씁니다. 모델은 프롬프트만 보고 ModelRouter 가 고릅니다.
     public static String callGeminiApi(String prompt) throws Exception {
-        // gemini-1.5-flash 모델 사용 (빠르고 무료)
-        String url = "https://generativelanguage.googleapis.com/v1/models/gemini-2.5-flash:generateContent?key="
-                + GEMINI_API_KEY;
+        return callGeminiApi(prompt, ModelRouter.current().route(prompt, 0));
+    }
 
+    /**
+     * route 의 모델로 답변을 만듭니다. (질문과 문맥 크기를 따로 아는 서블릿은 직접 경로를 골라서 부름)
+     * 같은 프롬프트는 같은 경로로 가므로 합치기 키는 프롬프트 그대로입니다.
+     */
+    public static String callGeminiApi(String prompt, ModelRouter.Route route) throws Exception {
+        long start = System.nanoTime();
+        try {
+            if (!SINGLE_FLIGHT) {
+                return generate(prompt, route);
+            }
+            return GENERATION_FLIGHT.execute(SingleFlight.normalize(prompt), () -> generate(prompt, route));
+        } finally {
+            Trace.stage("generate", route.name, start);
+        }
+    }
+
+    /**
+     * 경로의 모델을 차례로 시도합니다. 모델 호출이 실패하면(오류 응답, 타임아웃 등) 다음 모델로 넘어가고,
+     * 서킷이 열린 모델은 부르지 않고 건너뜁니다. 벌크헤드가 찼거나 Gemini 전체 서킷이 열렸으면
+     * 다른 모델도 같은 처지라서 넘어가지 않고 그대로 던집니다.
+     */
+    private static String generate(String prompt, ModelRouter.Route route) throws Exception {
+        String body = generationBody(prompt);
+        Exception failure = null;
+        for (int i = 0; i < route.models.size(); i++) {
+            String model = route.models.get(i);
+            boolean lastModel = i == route.models.size() - 1;
+            CircuitBreaker breaker = ModelRouter.breaker(model);
+            if (!breaker.tryAcquire()) {
+                if (lastModel) {
+                    throw failure != null ? failure : new CircuitBreaker.OpenException(breaker.getName());
+                }
+                route.fallback(model);
+                continue;
+            }
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(GENERATION_URIS.computeIfAbsent(model,
+                            m -> URI.create(GEMINI_BASE_URL + "/v1/models/" + m + ":generateContent")))
+                    .timeout(route.timeout)
+                    .header("x-goog-api-key", GEMINI_API_KEY)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                    .build();
+
+            long start = System.nanoTime();
+            try {
+                String answer = exchange(Upstream.GENERATION, "generate", request, "Gemini 호출 실패", 0,
+                        RagHelper::parseGeneration);
+                breaker.onSuccess();
+                route.observe(model, start, true);
+                return answer;
+            } catch (Bulkhead.FullException | CircuitBreaker.OpenException e) {
+                // 모델을 부르지도 못했으므로 모델 브레이커에는 남기지 않습니다.
+                breaker.release();
+                throw e;
+            } catch (Error e) {
+                breaker.release();
+                throw e;
+            } catch (Exception e) {
+                if (CircuitBreaker.isFailure(e)) {
+                    breaker.onFailure();
+                } else {
+                    breaker.release();
+                }
+                route.observe(model, start, false);
+                Trace.stage("generate_failed", model, start);
+                if (lastModel) {
+                    throw e;
+                }
+                route.fallback(model);
+                Log.warn("router", "모델 호출 실패, 다음 모델로", "route", route.name, "model", model,
+                        "next", route.models.get(i + 1), "error_msg", e.getMessage());
+                failure = e;
+            }
+        }
+        throw failure;
+    }
+
+    public static String generationBody(String prompt) {
         /*
          * 요청 JSON 구조:
          * { "contents": [{ "parts": [{ "text": "프롬프트 내용..." }] }] }
@@ -161,30 +744,163 @@ public class RagHelper {
 
         JsonObject json = new JsonObject();
         json.add("contents", contents);
+        return gson.toJson(json);
+    }
 
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(json), StandardCharsets.UTF_8))
-                .build();
+    // { "candidates": [ { "content": { "parts": [ { "text": ".." } ] } } ], "usageMetadata": ... } 에서 첫 답변
+    public static String parseGeneration(Reader body) throws IOException {
+        JsonReader in = new JsonReader(body);
+        String text = null;
+        try {
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!"candidates".equals(in.nextName()) || text != null) {
+                    in.skipValue();
+                    continue;
+                }
+                in.beginArray();
+                if (in.hasNext()) {
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        if ("content".equals(in.nextName())) {
+                            text = readFirstPartText(in);
+                        } else {
+                            in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                }
+                while (in.hasNext()) {
+                    in.skipValue();
+                }
+                in.endArray();
+            }
+            in.endObject();
+        } catch (IllegalStateException | MalformedJsonException e) {
+            return "Gemini 응답 파싱 오류: " + e.getMessage();
+        }
+        return text != null ? text : "Gemini 응답 파싱 오류: 답변(text)이 없습니다.";
+    }
 
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    // "content": { "parts": [ { "text": ".." }, ... ] } 에서 첫 part 의 text
+    private static String readFirstPartText(JsonReader in) throws IOException {
+        String text = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            if (!"parts".equals(in.nextName())) {
+                in.skipValue();
+                continue;
+            }
+            in.beginArray();
+            if (in.hasNext()) {
+                in.beginObject();
+                while (in.hasNext()) {
+                    if ("text".equals(in.nextName()) && in.peek() == JsonToken.STRING) {
+                        text = in.nextString();
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+            }
+            while (in.hasNext()) {
+                in.skipValue();
+            }
+            in.endArray();
+        }
+        in.endObject();
+        return text;
+    }
+
+    /** 응답 본문(스트림)을 읽어서 결과를 만드는 부분 */
+    @FunctionalInterface
+    interface BodyParser<T> {
+        T parse(Reader body) throws IOException;
+    }
+
+    /**
+     * 요청을 보내고 응답 본문을 스트림으로 받아 바로 파싱합니다.
+     * 본문은 upstream.maxResponseBytes() 까지만 읽고(넘으면 TooLargeException), 200 이 아니면 앞부분만 오류 메시지에 담습니다.
+     * 파싱까지 Upstream.call 안에서 하므로 호출별 지연/할당 측정에 파싱 비용도 들어갑니다. (읽은 본문 크기도 따로 남김)
+     */
+    private static <T> T exchange(Upstream upstream, String op, HttpRequest request, String failure, long hedgeMs,
+            BodyParser<T> parser) throws Exception {
+        return upstream.call(op, () -> {
+            HttpResponse<InputStream> res = hedgeMs > 0
+                    ? sendHedged(request, hedgeMs)
+                    : client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            BoundedInputStream body = new BoundedInputStream(res.body(), upstream.maxResponseBytes(), upstream.label());
+            try (body) {
+                if (res.statusCode() != 200) {
+                    throw new Upstream.StatusException(res.statusCode(), failure + ": " + errorSnippet(body));
+                }
+                T result = parser.parse(new InputStreamReader(body, StandardCharsets.UTF_8));
+                // 남은 바이트(공백 등)를 끝까지 읽어야 연결을 다시 쓸 수 있습니다.
+                body.transferTo(OutputStream.nullOutputStream());
+                return result;
+            } finally {
+                upstream.recordResponseBytes(op, body.bytesRead());
+            }
+        });
+    }
+
+    // 오류 응답은 앞 1KB 만 메시지에 담습니다.
+    private static String errorSnippet(InputStream body) throws IOException {
+        byte[] head = body.readNBytes(ERROR_SNIPPET_BYTES);
+        return new String(head, StandardCharsets.UTF_8);
+    }
 
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("Gemini 호출 실패: " + response.body());
+    /**
+     * 헤지 요청: 첫 요청이 hedgeMs 안에 끝나지 않으면 같은 요청을 한 번 더 보내고,
+     * 둘 중 먼저 성공한 응답을 씁니다. (둘 다 실패하면 마지막 오류를 던집니다)
+     */
+    private static HttpResponse<InputStream> sendHedged(HttpRequest request, long hedgeMs) throws Exception {
+        CompletableFuture<HttpResponse<InputStream>> primary = client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        try {
+            return primary.get(hedgeMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException slow) {
+            Metrics.inc(Metrics.name("rag_hedged_requests_total", "upstream", Upstream.EMBEDDING.label()));
+            CompletableFuture<HttpResponse<InputStream>> hedge = client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+
+            CompletableFuture<HttpResponse<InputStream>> winner = new CompletableFuture<>();
+            AtomicInteger failures = new AtomicInteger();
+            primary.whenComplete((res, err) -> settle(winner, failures, res, err));
+            hedge.whenComplete((res, err) -> settle(winner, failures, res, err));
+            try {
+                return winner.get();
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            } finally {
+                primary.cancel(true);
+                hedge.cancel(true);
+            }
+        } catch (ExecutionException e) {
+            throw unwrap(e);
         }
+    }
 
-        // 응답 파싱
-        JsonObject resJson = JsonParser.parseString(response.body()).getAsJsonObject();
+    private static void settle(CompletableFuture<HttpResponse<InputStream>> winner, AtomicInteger failures,
+            HttpResponse<InputStream> res, Throwable err) {
+        if (err == null) {
+            if (!winner.complete(res)) {
+                // 늦게 도착한 쪽 응답은 본문을 닫아서 연결을 놓아줍니다.
+                closeQuietly(res.body());
+            }
+        } else if (failures.incrementAndGet() == 2) {
+            winner.completeExceptionally(err);
+        }
+    }
+
+    private static void closeQuietly(InputStream body) {
         try {
-            return resJson.getAsJsonArray("candidates")
-                    .get(0).getAsJsonObject()
-                    .getAsJsonObject("content")
-                    .getAsJsonArray("parts")
-                    .get(0).getAsJsonObject()
-                    .get("text").getAsString();
-        } catch (Exception e) {
-            return "Gemini 응답 파싱 오류: " + response.body();
+            body.close();
+        } catch (IOException ignored) {
+            // 버리는 응답이라 무시합니다.
         }
     }
-}
\ No newline at end of file
+
+    private static Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        return (cause instanceof Exception) ? (Exception) cause : e;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.util;
+
+/**
+ * 검색 결과 1건입니다. (문서 ID, 본문, 점수)
+ * 점수는 0~1 범위로 맞춰서 키워드/벡터 결과를 섞거나 임계값으로 거를 수 있게 합니다.
+ */
+public class SearchHit {
+    public final String id;
+    public final String text;
+    public final double score;
+
+    public SearchHit(String id, String text, double score) {
+        this.id = id;
+        this.text = text;
+        this.score = score;
+    }
+
+    public SearchHit withScore(double newScore) {
+        return new SearchHit(id, text, newScore);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 같은 입력으로 동시에 들어온 외부 호출을 1번으로 합칩니다. (single-flight)
+ * 수업 중에 수십 명이 같은 질문을 보내면, 처음 온 요청(leader)만 실제로 호출하고
+ * 나머지(follower)는 그 결과를 같이 받습니다. 호출이 끝나면 키를 지우므로 결과를 캐시하지는 않습니다.
+ */
+public class SingleFlight<K, V> {
+
+    private static class Call<V> {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final AtomicInteger waiters = new AtomicInteger();
+        final long startedAt = System.currentTimeMillis();
+    }
+
+    /** 진행 중인 키 하나의 상태 (키 원문 대신 해시만 노출합니다) */
+    public static class InFlight {
+        public final String keyHash;
+        public final int waiters;
+        public final long elapsedMillis;
+
+        InFlight(String keyHash, int waiters, long elapsedMillis) {
+            this.keyHash = keyHash;
+            this.waiters = waiters;
+            this.elapsedMillis = elapsedMillis;
+        }
+    }
+
+    private final String name;
+    private final Map<K, Call<V>> calls = new ConcurrentHashMap<>();
+    private final LongAdder leaders;
+    private final LongAdder followers;
+
+    public SingleFlight(String name) {
+        this.name = name;
+        this.leaders = Metrics.counter(Metrics.name("rag_singleflight_calls_total", "op", name, "role", "leader"));
+        this.followers = Metrics.counter(Metrics.name("rag_singleflight_calls_total", "op", name, "role", "follower"));
+        Metrics.gauge(Metrics.name("rag_singleflight_in_flight", "op", name), calls::size);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public V execute(K key, Callable<V> loader) throws Exception {
+        Call<V> mine = new Call<>();
+        Call<V> existing = calls.putIfAbsent(key, mine);
+        if (existing != null) {
+            existing.waiters.incrementAndGet();
+            followers.increment();
+            try {
+                return existing.future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw (cause instanceof Exception) ? (Exception) cause : e;
+            }
+        }
+
+        leaders.increment();
+        try {
+            V value = loader.call();
+            mine.future.complete(value);
+            return value;
+        } catch (Exception e) {
+            mine.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, mine);
+        }
+    }
+
+    public long leaderCount() {
+        return leaders.sum();
+    }
+
+    public long followerCount() {
+        return followers.sum();
+    }
+
+    /**
+     * 지금 진행 중인 키별 대기자 수를 돌려줍니다.
+     */
+    public List<InFlight> snapshot() {
+        long now = System.currentTimeMillis();
+        List<InFlight> result = new ArrayList<>();
+        for (Map.Entry<K, Call<V>> e : calls.entrySet()) {
+            Call<V> call = e.getValue();
+            result.add(new InFlight(Integer.toHexString(e.getKey().hashCode()), call.waiters.get(), now - call.startedAt));
+        }
+        return result;
+    }
+
+    /**
+     * 문자열 키 정규화: 유니코드 NFC, 앞뒤 공백 제거, 연속 공백을 한 칸으로.
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFC).trim().replaceAll("\\s+", " ");
+    }
+}
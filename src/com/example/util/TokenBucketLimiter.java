@@ -0,0 +1,92 @@
+package com.example.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 사용자별 토큰 버킷 요청 제한기입니다.
+ * 사용자마다 burst 개까지 토큰을 쌓아두고 초당 ratePerSecond 개씩 채웁니다.
+ * 오래 안 쓴 버킷은 지우고 전체 버킷 수도 maxKeys 로 묶어서, 사용자가 많아도 메모리가 일정하게 유지됩니다.
+ */
+public class TokenBucketLimiter {
+
+    private static class Bucket {
+        double tokens;
+        long refilledAtNanos;
+        volatile long lastSeenMillis;
+
+        Bucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.refilledAtNanos = now;
+        }
+    }
+
+    private final String name;
+    private final double ratePerNano;
+    private final double burst;
+    private final int maxKeys;
+    private final long idleMillis;
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweepMillis = new AtomicLong(System.currentTimeMillis());
+
+    public TokenBucketLimiter(String name, double ratePerSecond, int burst, int maxKeys, long idleMillis) {
+        this.name = name;
+        this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.maxKeys = maxKeys;
+        this.idleMillis = idleMillis;
+
+        Metrics.gauge(Metrics.name("rate_limit_buckets", "limiter", name), buckets::size);
+    }
+
+    /**
+     * 토큰 1개를 꺼냅니다.
+     * @return 0 이면 통과, 0보다 크면 다음 토큰이 생길 때까지 기다려야 하는 시간(ms)
+     */
+    public long tryAcquire(String key) {
+        long nowMillis = System.currentTimeMillis();
+        maybeSweep(nowMillis);
+
+        long now = System.nanoTime();
+        Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket(burst, now));
+        bucket.lastSeenMillis = nowMillis;
+        synchronized (bucket) {
+            bucket.tokens = Math.min(burst, bucket.tokens + (now - bucket.refilledAtNanos) * ratePerNano);
+            bucket.refilledAtNanos = now;
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            Metrics.inc(Metrics.name("rate_limit_rejected_total", "limiter", name));
+            double missingNanos = (1 - bucket.tokens) / ratePerNano;
+            return Math.max(1, (long) Math.ceil(missingNanos / TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+    }
+
+    // 1분에 한 번, 또는 버킷이 maxKeys 를 넘었을 때 오래 안 쓴 버킷을 정리합니다.
+    private void maybeSweep(long nowMillis) {
+        long last = lastSweepMillis.get();
+        boolean overCapacity = buckets.size() >= maxKeys;
+        if (!overCapacity && nowMillis - last < 60_000) {
+            return;
+        }
+        if (!lastSweepMillis.compareAndSet(last, nowMillis)) {
+            return;
+        }
+        buckets.values().removeIf(b -> nowMillis - b.lastSeenMillis > idleMillis);
+
+        if (buckets.size() >= maxKeys) {
+            // 그래도 넘치면 가장 오래 안 쓴 것부터 지웁니다. (지워진 사용자는 버킷이 가득 찬 상태로 다시 시작)
+            List<Map.Entry<String, Bucket>> entries = new ArrayList<>(buckets.entrySet());
+            entries.sort((a, b) -> Long.compare(a.getValue().lastSeenMillis, b.getValue().lastSeenMillis));
+            for (int i = 0; i < entries.size() - maxKeys * 9 / 10; i++) {
+                buckets.remove(entries.get(i).getKey());
+            }
+        }
+    }
+}
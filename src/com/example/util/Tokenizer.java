@@ -0,0 +1,58 @@
+package com.example.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 키워드 검색용 토크나이저입니다.
+ * 영문/숫자는 단어 단위로 자르고(소문자), 한글은 형태소 분석기 없이 음절 2-gram 으로 자릅니다.
+ * 예) "IAM 역할은" -> [iam, 역할, 할은]
+ * 한글 2-gram 은 조사가 붙어도("역할은", "역할을") 공통 토큰("역할")이 남아서 매칭이 됩니다.
+ */
+public final class Tokenizer {
+
+    private Tokenizer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder run = new StringBuilder();
+        boolean runIsHangul = false;
+
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+
+            if (!Character.isLetterOrDigit(cp)) {
+                flush(run, runIsHangul, tokens);
+                continue;
+            }
+            boolean hangul = Character.UnicodeScript.of(cp) == Character.UnicodeScript.HANGUL;
+            if (run.length() > 0 && hangul != runIsHangul) {
+                // "VPC의" 처럼 영문과 한글이 붙어 있으면 따로 자릅니다.
+                flush(run, runIsHangul, tokens);
+            }
+            runIsHangul = hangul;
+            run.appendCodePoint(Character.toLowerCase(cp));
+        }
+        flush(run, runIsHangul, tokens);
+        return tokens;
+    }
+
+    private static void flush(StringBuilder run, boolean hangul, List<String> tokens) {
+        if (run.length() == 0) {
+            return;
+        }
+        if (!hangul || run.length() == 1) {
+            tokens.add(run.toString());
+        } else {
+            for (int i = 0; i + 1 < run.length(); i++) {
+                tokens.add(run.substring(i, i + 2));
+            }
+        }
+        run.setLength(0);
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 요청 1건의 단계별 소요 시간 기록입니다. (임베딩, 검색, 생성, DB 저장 ..)
+ * 서블릿이 start() 로 만들면 같은 스레드에서 부르는 RagHelper 가 Trace.current() 로 찾아서 단계를 덧붙입니다.
+ * 시간은 System.nanoTime(단조 시계)으로 재고, 응답의 Server-Timing 헤더로 내보내서 브라우저 개발자 도구에서 볼 수 있습니다.
+ * 끝난 요청이 TRACE_SLOW_MS 보다 오래 걸렸으면 최근 TRACE_SLOW_BUFFER 건만 담는 링 버퍼에 남깁니다. (관리자 API 로 조회)
+ */
+public class Trace {
+
+    private static final long SLOW_NANOS = Env.getLong("TRACE_SLOW_MS", 3000) * 1_000_000L;
+    private static final int BUFFER_SIZE = Math.max(1, Env.getInt("TRACE_SLOW_BUFFER", 100));
+
+    private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+    // 링 버퍼: 자리를 번호로 나눠 쓰고 오래된 것부터 덮어씁니다. (락 없음)
+    private static final AtomicReferenceArray<Trace> SLOW = new AtomicReferenceArray<>(BUFFER_SIZE);
+    private static final AtomicLong SLOW_COUNT = new AtomicLong();
+
+    /** 단계 하나 (시작 시각은 요청 시작부터의 ms) */
+    public static class Span {
+        public final String name;
+        public final String detail;
+        public final double startMs;
+        public final double durationMs;
+
+        Span(String name, String detail, double startMs, double durationMs) {
+            this.name = name;
+            this.detail = detail;
+            this.startMs = startMs;
+            this.durationMs = durationMs;
+        }
+    }
+
+    public final String requestId;
+    public final String name;
+    public final String user;
+    public final long startedAt = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final List<Span> spans = new ArrayList<>();
+    private final Map<String, Object> tags = new LinkedHashMap<>();
+    private volatile double totalMs = -1;
+    private volatile int status;
+
+    private Trace(String requestId, String name, String user) {
+        this.requestId = requestId;
+        this.name = name;
+        this.user = user;
+    }
+
+    /** 이 스레드의 요청 기록을 시작합니다. 끝나면 반드시 finish() 를 불러야 합니다. */
+    public static Trace start(String requestId, String name, String user) {
+        Trace trace = new Trace(requestId, name, user);
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    /** 이 스레드에서 기록 중인 요청 (없으면 null - 배치 작업 등) */
+    public static Trace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 지금 요청에 단계를 남깁니다. (기록 중인 요청이 없으면 아무것도 안 함)
+     *
+     * @param startNanos 단계 시작 때 잰 System.nanoTime()
+     */
+    public static void stage(String name, String detail, long startNanos) {
+        Trace trace = CURRENT.get();
+        if (trace != null) {
+            trace.record(name, detail, startNanos);
+        }
+    }
+
+    /** 단계를 남기고 걸린 시간(ms)을 돌려줍니다. (요청 로그 한 줄에 같이 쓰도록) */
+    public long record(String name, String detail, long startNanos) {
+        long now = System.nanoTime();
+        synchronized (spans) {
+            spans.add(new Span(name, detail, (startNanos - this.startNanos) / 1e6, (now - startNanos) / 1e6));
+        }
+        return (now - startNanos) / 1_000_000;
+    }
+
+    /** 요청에 붙일 값 (예: faq=exact, route=light) - 느린 요청 목록에 같이 보입니다. */
+    public void tag(String key, Object value) {
+        synchronized (spans) {
+            tags.put(key, value);
+        }
+    }
+
+    /**
+     * Server-Timing 헤더 값입니다. 예) faq;dur=1.2, embed;dur=85.0, generate;desc="light";dur=2310.4, total;dur=2412.9
+     * (응답을 쓰기 전에 부르므로 total 은 그때까지의 시간)
+     */
+    public String serverTiming() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (spans) {
+            for (Span s : spans) {
+                appendMetric(sb, s.name, s.detail, s.durationMs);
+            }
+        }
+        appendMetric(sb, "total", null, (System.nanoTime() - startNanos) / 1e6);
+        return sb.toString();
+    }
+
+    private static void appendMetric(StringBuilder sb, String name, String detail, double ms) {
+        if (sb.length() > 0) {
+            sb.append(", ");
+        }
+        sb.append(name);
+        if (detail != null) {
+            // desc 는 따옴표 문자열이라 따옴표/역슬래시는 뺍니다.
+            sb.append(";desc=\"").append(detail.replace("\"", "").replace("\\", "")).append('"');
+        }
+        sb.append(";dur=").append(Math.round(ms * 10) / 10.0);
+    }
+
+    /** 요청을 끝냅니다. 오래 걸렸으면 느린 요청 링 버퍼에 넣습니다. */
+    public void finish(int status) {
+        CURRENT.remove();
+        long elapsed = System.nanoTime() - startNanos;
+        this.status = status;
+        this.totalMs = elapsed / 1e6;
+        if (elapsed >= SLOW_NANOS) {
+            long index = SLOW_COUNT.getAndIncrement();
+            SLOW.set((int) (index % BUFFER_SIZE), this);
+            Metrics.inc(Metrics.name("trace_slow_total", "name", name));
+        }
+    }
+
+    /** 링 버퍼에 남은 느린 요청 (최근 것부터) */
+    public static List<Trace> slow() {
+        List<Trace> list = new ArrayList<>();
+        for (int i = 0; i < BUFFER_SIZE; i++) {
+            Trace t = SLOW.get(i);
+            if (t != null) {
+                list.add(t);
+            }
+        }
+        list.sort((a, b) -> Long.compare(b.startedAt, a.startedAt));
+        return list;
+    }
+
+    /** 지금까지 느린 요청으로 잡힌 수 (버퍼에서 밀려난 것 포함) */
+    public static long slowCount() {
+        return SLOW_COUNT.get();
+    }
+
+    public static long slowThresholdMs() {
+        return SLOW_NANOS / 1_000_000L;
+    }
+
+    public double totalMs() {
+        return totalMs;
+    }
+
+    public int status() {
+        return status;
+    }
+
+    public List<Span> spans() {
+        synchronized (spans) {
+            return Collections.unmodifiableList(new ArrayList<>(spans));
+        }
+    }
+
+    public Map<String, Object> tags() {
+        synchronized (spans) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(tags));
+        }
+    }
+}
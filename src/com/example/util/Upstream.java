@@ -0,0 +1,179 @@
+package com.example.util;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RagHelper 가 부르는 외부 의존성 목록입니다.
+ * 의존성마다 요청 타임아웃, 서킷 브레이커, 동시 호출 제한(벌크헤드)을 따로 둡니다.
+ * (예: RAG_EMBEDDING_TIMEOUT_MS, RAG_SEARCH_MAX_CONCURRENT, RAG_GENERATION_MAX_WAIT_MS)
+ * 호출마다 걸린 시간은 rag_upstream_seconds{upstream,op} 히스토그램에, 실패는 원인별로 rag_upstream_errors_total 에 남깁니다.
+ * 응답 본문 크기 한도는 RAG_{이름}_MAX_RESPONSE_BYTES 이고, 실제로 읽은 본문 바이트 수는
+ * rag_upstream_response_bytes_total(합계) / rag_upstream_response_bytes_max(가장 컸던 호출) 로 남깁니다.
+ * 호출 스레드에서 일어난 할당(주로 응답 파싱)은 rag_upstream_parse_alloc_bytes_total / _max 로 따로 남깁니다.
+ * HttpClient 는 본문 버퍼를 자기 스레드에서 채우므로 그 할당은 여기에 들어가지 않습니다. (응답 크기는 response_bytes 로 봄)
+ */
+public enum Upstream {
+    // 배치 임베딩 16건(768차원) 응답이 수백 KB 라서 임베딩은 1MB, 답변은 길어도 수십 KB 라서 512KB
+    EMBEDDING("embedding", 3000, 16, 1024 * 1024),
+    SEARCH("search", 2000, 16, 1024 * 1024),
+    GENERATION("generation", 30000, 8, 512 * 1024);
+
+    /** 상대 서버가 200 이 아닌 응답을 돌려줬을 때 던집니다. (5xx 만 서킷 브레이커 실패로 셈) */
+    public static class StatusException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        public final int status;
+
+        public StatusException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    // 스레드별 할당 바이트를 읽을 수 있는 JVM 이면 그 빈, 아니면 null (할당 측정 생략)
+    private static final com.sun.management.ThreadMXBean ALLOCATION = allocationBean();
+
+    // op 별 메트릭 (op 는 상수 문자열이라 조회에 할당이 없음)
+    private static class OpStats {
+        final Histogram latency;
+        final LongAdder parseAllocated;
+        final LongAccumulator maxParseAllocated = new LongAccumulator(Math::max, 0);
+        final LongAdder responseBytes;
+        final LongAccumulator maxResponseBytes = new LongAccumulator(Math::max, 0);
+
+        OpStats(String upstream, String op) {
+            latency = Metrics.histogram(Metrics.name("rag_upstream_seconds", "upstream", upstream, "op", op));
+            parseAllocated = Metrics.counter(Metrics.name("rag_upstream_parse_alloc_bytes_total", "upstream", upstream, "op", op));
+            Metrics.gauge(Metrics.name("rag_upstream_parse_alloc_bytes_max", "upstream", upstream, "op", op), maxParseAllocated::get);
+            responseBytes = Metrics.counter(Metrics.name("rag_upstream_response_bytes_total", "upstream", upstream, "op", op));
+            Metrics.gauge(Metrics.name("rag_upstream_response_bytes_max", "upstream", upstream, "op", op), maxResponseBytes::get);
+        }
+    }
+
+    private final String label;
+    private final Duration timeout;
+    private final CircuitBreaker breaker;
+    private final Bulkhead bulkhead;
+    private final long maxResponseBytes;
+    private final Map<String, OpStats> stats = new ConcurrentHashMap<>();
+
+    Upstream(String label, long defaultTimeoutMs, int defaultMaxConcurrent, long defaultMaxResponseBytes) {
+        String prefix = "RAG_" + name();
+        this.label = label;
+        this.timeout = Duration.ofMillis(Env.getLong(prefix + "_TIMEOUT_MS", defaultTimeoutMs));
+        this.maxResponseBytes = Env.getLong(prefix + "_MAX_RESPONSE_BYTES", defaultMaxResponseBytes);
+        this.breaker = new CircuitBreaker(label,
+                Env.getInt(prefix + "_BREAKER_FAILURES", Env.getInt("RAG_BREAKER_FAILURES", 5)),
+                Env.getLong(prefix + "_BREAKER_OPEN_MS", Env.getLong("RAG_BREAKER_OPEN_MS", 30000)));
+        this.bulkhead = new Bulkhead(label,
+                Env.getInt(prefix + "_MAX_CONCURRENT", defaultMaxConcurrent),
+                Env.getLong(prefix + "_MAX_WAIT_MS", Env.getLong("RAG_BULKHEAD_MAX_WAIT_MS", 200)));
+    }
+
+    public String label() {
+        return label;
+    }
+
+    public Duration timeout() {
+        return timeout;
+    }
+
+    public CircuitBreaker breaker() {
+        return breaker;
+    }
+
+    public Bulkhead bulkhead() {
+        return bulkhead;
+    }
+
+    /** 응답 본문 최대 크기 (넘으면 BoundedInputStream.TooLargeException) */
+    public long maxResponseBytes() {
+        return maxResponseBytes;
+    }
+
+    /**
+     * 벌크헤드 자리를 얻은 뒤 서킷 브레이커를 거쳐 호출합니다.
+     * 자리를 못 얻은 경우(Bulkhead.FullException)는 상대 서버 장애가 아니므로 브레이커 실패로 세지 않습니다.
+     * op 는 호출 종류(embed, query, generate ..)로, 지연 시간/실패 메트릭의 라벨이 됩니다. (벌크헤드 대기 시간 포함)
+     */
+    public <T> T call(String op, Callable<T> action) throws Exception {
+        long thread = Thread.currentThread().getId();
+        long allocatedBefore = ALLOCATION == null ? 0 : ALLOCATION.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        try {
+            bulkhead.acquire();
+            try {
+                return breaker.call(action);
+            } finally {
+                bulkhead.release();
+            }
+        } catch (Exception e) {
+            Metrics.inc(Metrics.name("rag_upstream_errors_total", "upstream", label, "op", op, "cause", cause(e)));
+            throw e;
+        } finally {
+            OpStats s = stats(op);
+            s.latency.observeSince(start);
+            if (ALLOCATION != null) {
+                long allocated = ALLOCATION.getThreadAllocatedBytes(thread) - allocatedBefore;
+                s.parseAllocated.add(allocated);
+                s.maxParseAllocated.accumulate(allocated);
+            }
+        }
+    }
+
+    /** 응답 본문을 다 읽은 뒤(또는 중간에 끊은 뒤) 읽은 바이트 수를 남깁니다. */
+    public void recordResponseBytes(String op, long bytes) {
+        OpStats s = stats(op);
+        s.responseBytes.add(bytes);
+        s.maxResponseBytes.accumulate(bytes);
+    }
+
+    private OpStats stats(String op) {
+        return stats.computeIfAbsent(op, k -> new OpStats(label, k));
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    private static String cause(Exception e) {
+        if (e instanceof Bulkhead.FullException) {
+            return "bulkhead_full";
+        }
+        if (e instanceof CircuitBreaker.OpenException) {
+            return "circuit_open";
+        }
+        if (e instanceof StatusException) {
+            return ((StatusException) e).status >= 500 ? "status_5xx" : "status_4xx";
+        }
+        if (e instanceof BoundedInputStream.TooLargeException) {
+            return "too_large";
+        }
+        if (e instanceof HttpTimeoutException) {
+            return "timeout";
+        }
+        if (e instanceof IOException) {
+            return "io";
+        }
+        if (e instanceof InterruptedException) {
+            return "interrupted";
+        }
+        // 그 밖에 RagHelper 가 직접 던진 예외
+        return "upstream";
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 사용자별 내 데이터(할 일, 메모, GPT 질문 기록) 전문 검색 색인입니다.
+ * 사용자가 처음 검색할 때 loader 로 DB 에서 최근 maxRows 건씩만 읽어 색인을 만들고, 그 뒤로는 각 서블릿의
+ * 쓰기 경로(추가/수정/삭제)가 커밋될 때마다 put/remove 로 색인을 갱신합니다. (LIKE '%..%' 검색 없음)
+ * - 색인에는 본문을 두지 않고 역색인(검색어 -> 문서 키)만 둡니다. 결과 미리보기는 상위 limit 건만 loader 로 DB 에서 다시 읽어 만듭니다.
+ * - 메모리 사용량은 추정 바이트로 셉니다. 사용자 한 명이 userMaxBytes 를 넘으면 그 사용자의 오래된 문서부터,
+ *   전체가 maxBytes 를 넘거나 사용자 수가 maxUsers 를 넘으면 가장 오래 검색 안 한 사용자부터 내립니다.
+ * - idleMillis 동안 검색이 없는 사용자도 내립니다. (다음 검색 때 DB 에서 새로 읽음)
+ */
+public class UserSearchIndex {
+
+    /** 색인에 넣는 문서 1건 (type: todo / memo / gpt) - text 는 색인할 때만 쓰고 들고 있지 않습니다. */
+    public static class Entry {
+        public final String type;
+        public final String id;
+        public final String text;
+
+        public Entry(String type, String id, String text) {
+            this.type = type;
+            this.id = id;
+            this.text = text == null ? "" : text;
+        }
+    }
+
+    /** 검색 결과 1건 */
+    public static class Result {
+        public final String type;
+        public final String id;
+        public final String snippet;
+        public final double score;
+
+        Result(String type, String id, String snippet, double score) {
+            this.type = type;
+            this.id = id;
+            this.snippet = snippet;
+            this.score = score;
+        }
+    }
+
+    /** 사용자 데이터를 DB 에서 읽어오는 함수 (서블릿 쪽에서 등록) */
+    public interface Loader {
+        /** 색인할 문서들 (종류별로 최신 것부터 최대 maxRows 건) */
+        List<Entry> load(String username, int maxRows) throws Exception;
+
+        /** 검색 결과로 고른 문서들의 본문 (키: type + ":" + id, 그 사이 지워진 문서는 빠짐) */
+        Map<String, String> texts(String username, List<Result> hits) throws Exception;
+    }
+
+    public static final UserSearchIndex INSTANCE = new UserSearchIndex(
+            Env.getInt("SEARCH_INDEX_MAX_USERS", 500),
+            Env.getLong("SEARCH_INDEX_MAX_BYTES", 16L * 1024 * 1024),
+            Env.getLong("SEARCH_INDEX_USER_MAX_BYTES", 1024L * 1024),
+            Env.getLong("SEARCH_INDEX_IDLE_MS", 30 * 60 * 1000L),
+            Env.getInt("SEARCH_INDEX_MAX_ROWS", 1000));
+
+    private static final int SNIPPET_RADIUS = 40;
+
+    // 추정 바이트 (64비트 JVM, 압축 포인터 기준 대략값): 문서 1건, 문서-검색어 연결 1건, 검색어 1개
+    private static final int DOC_BYTES = 120;
+    private static final int POSTING_BYTES = 56;
+    private static final int TERM_BYTES = 120;
+
+    // 색인 안의 문서 1건: 지울 때 역색인에서 빼려고 검색어 목록만 들고 있습니다.
+    private static class Doc {
+        final String type;
+        final String id;
+        final String[] terms;
+
+        Doc(String type, String id, String[] terms) {
+            this.type = type;
+            this.id = id;
+            this.terms = terms;
+        }
+
+        long bytes(String key) {
+            return DOC_BYTES + key.length() * 2L + (long) terms.length * POSTING_BYTES;
+        }
+    }
+
+    // 사용자 한 명의 역색인. 모든 접근은 이 객체로 동기화합니다. (bytes/lastAccess 는 잠금 없이 읽음)
+    private static class UserIndex {
+        // 넣은 순서: 맨 앞이 가장 오래된 문서 (사용자 예산을 넘으면 앞에서부터 뺌)
+        final Map<String, Doc> docs = new LinkedHashMap<>();
+        final Map<String, Map<String, Integer>> postings = new HashMap<>();
+        volatile long bytes;
+        volatile long lastAccess = System.currentTimeMillis();
+        boolean loaded;
+
+        void put(Entry e, long maxBytes) {
+            String key = e.type + ":" + e.id;
+            remove(key);
+            Map<String, Integer> tf = new LinkedHashMap<>();
+            for (String t : Tokenizer.tokenize(e.text)) {
+                tf.merge(t, 1, Integer::sum);
+            }
+            long added = 0;
+            for (Map.Entry<String, Integer> t : tf.entrySet()) {
+                Map<String, Integer> p = postings.get(t.getKey());
+                if (p == null) {
+                    p = new HashMap<>();
+                    postings.put(t.getKey(), p);
+                    added += TERM_BYTES + t.getKey().length() * 2L;
+                }
+                p.put(key, t.getValue());
+            }
+            Doc doc = new Doc(e.type, e.id, tf.keySet().toArray(new String[0]));
+            docs.put(key, doc);
+            bytes += added + doc.bytes(key);
+
+            while (bytes > maxBytes && !docs.isEmpty()) {
+                remove(docs.keySet().iterator().next());
+                Metrics.inc("search_index_docs_evicted_total");
+            }
+        }
+
+        void remove(String key) {
+            Doc old = docs.remove(key);
+            if (old == null) {
+                return;
+            }
+            long freed = old.bytes(key);
+            for (String t : old.terms) {
+                Map<String, Integer> p = postings.get(t);
+                if (p != null) {
+                    p.remove(key);
+                    if (p.isEmpty()) {
+                        postings.remove(t);
+                        freed += TERM_BYTES + t.length() * 2L;
+                    }
+                }
+            }
+            bytes -= freed;
+        }
+    }
+
+    private final int maxUsers;
+    private final long maxBytes;
+    private final long userMaxBytes;
+    private final long idleMillis;
+    private final int maxRows;
+    // 접근 순서 LinkedHashMap: 맨 앞이 가장 오래 검색 안 한 사용자
+    private final Map<String, UserIndex> users = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile Loader loader;
+
+    public UserSearchIndex(int maxUsers, long maxBytes, long userMaxBytes, long idleMillis, int maxRows) {
+        this.maxUsers = maxUsers;
+        this.maxBytes = maxBytes;
+        this.userMaxBytes = userMaxBytes;
+        this.idleMillis = idleMillis;
+        this.maxRows = maxRows;
+        Metrics.gauge("search_index_users", this::userCount);
+        Metrics.gauge("search_index_bytes", this::bytes);
+    }
+
+    public void setLoader(Loader loader) {
+        this.loader = loader;
+    }
+
+    public int userCount() {
+        synchronized (users) {
+            return users.size();
+        }
+    }
+
+    /** 색인 전체의 추정 메모리 사용량 (바이트) */
+    public long bytes() {
+        synchronized (users) {
+            long total = 0;
+            for (UserIndex index : users.values()) {
+                total += index.bytes;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * 문서를 추가하거나 바꿉니다. 아직 메모리에 없는 사용자는 무시합니다. (다음 검색 때 DB 에서 새로 읽음)
+     */
+    public void put(String username, String type, String id, String text) {
+        UserIndex index = existing(username);
+        if (index != null) {
+            synchronized (index) {
+                index.put(new Entry(type, id, text), userMaxBytes);
+            }
+            trim(index);
+        }
+    }
+
+    public void remove(String username, String type, String id) {
+        UserIndex index = existing(username);
+        if (index != null) {
+            synchronized (index) {
+                index.remove(type + ":" + id);
+            }
+        }
+    }
+
+    private UserIndex existing(String username) {
+        synchronized (users) {
+            return users.get(username);
+        }
+    }
+
+    /**
+     * 내 데이터에서 query 를 찾아 점수 순으로 limit 개를 돌려줍니다.
+     */
+    public List<Result> search(String username, String query, int limit) throws Exception {
+        Loader l = loader;
+        if (l == null) {
+            throw new IllegalStateException("검색 색인 loader 가 등록되지 않았습니다.");
+        }
+        UserIndex index;
+        synchronized (users) {
+            evictIdle(System.currentTimeMillis());
+            index = users.get(username);
+            if (index == null) {
+                index = new UserIndex();
+                users.put(username, index);
+                if (users.size() > maxUsers) {
+                    users.remove(users.keySet().iterator().next());
+                    Metrics.inc(Metrics.name("search_index_evictions_total", "reason", "capacity"));
+                }
+            }
+        }
+        index.lastAccess = System.currentTimeMillis();
+
+        Set<String> terms = new LinkedHashSet<>(Tokenizer.tokenize(query));
+        List<Result> hits;
+        synchronized (index) {
+            if (!index.loaded) {
+                // 색인을 먼저 등록해 두고 잠근 채로 읽으므로, 읽는 동안 들어온 쓰기는 기다렸다가 반영됩니다.
+                try {
+                    List<Entry> entries = l.load(username, maxRows);
+                    // 오래된 것부터 넣어서, 사용자 예산을 넘으면 오래된 문서가 빠지게 합니다.
+                    for (int i = entries.size() - 1; i >= 0; i--) {
+                        index.put(entries.get(i), userMaxBytes);
+                    }
+                } catch (Exception e) {
+                    synchronized (users) {
+                        users.remove(username, index);
+                    }
+                    throw e;
+                }
+                index.loaded = true;
+                Metrics.inc("search_index_loads_total");
+            }
+            hits = rank(index, terms, limit);
+        }
+        trim(index);
+        if (hits.isEmpty()) {
+            return hits;
+        }
+
+        // 미리보기는 고른 문서만 DB 에서 다시 읽어 만듭니다. (색인 잠금 밖에서)
+        Map<String, String> texts = l.texts(username, hits);
+        List<Result> results = new ArrayList<>(hits.size());
+        for (Result hit : hits) {
+            String text = texts.get(hit.type + ":" + hit.id);
+            if (text != null) {
+                results.add(new Result(hit.type, hit.id, snippet(text, terms), hit.score));
+            }
+        }
+        return results;
+    }
+
+    private static List<Result> rank(UserIndex index, Set<String> terms, int limit) {
+        Map<String, Double> scores = new HashMap<>();
+        int n = index.docs.size();
+        for (String term : terms) {
+            Map<String, Integer> p = index.postings.get(term);
+            if (p == null) {
+                continue;
+            }
+            double idf = Math.log(1 + (n - p.size() + 0.5) / (p.size() + 0.5));
+            for (Map.Entry<String, Integer> e : p.entrySet()) {
+                double tf = e.getValue();
+                scores.merge(e.getKey(), idf * tf / (tf + 1.2), Double::sum);
+            }
+        }
+
+        List<Map.Entry<String, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < Math.min(limit, ranked.size()); i++) {
+            Doc doc = index.docs.get(ranked.get(i).getKey());
+            results.add(new Result(doc.type, doc.id, null, ranked.get(i).getValue()));
+        }
+        return results;
+    }
+
+    // 전체 예산을 넘으면 가장 오래 검색 안 한 사용자부터 내립니다. (방금 쓴 사용자 하나만 남으면 멈춤)
+    private void trim(UserIndex keep) {
+        synchronized (users) {
+            long total = 0;
+            for (UserIndex index : users.values()) {
+                total += index.bytes;
+            }
+            Iterator<UserIndex> it = users.values().iterator();
+            while (total > maxBytes && it.hasNext()) {
+                UserIndex index = it.next();
+                if (index == keep) {
+                    continue;
+                }
+                total -= index.bytes;
+                it.remove();
+                Metrics.inc(Metrics.name("search_index_evictions_total", "reason", "bytes"));
+            }
+        }
+    }
+
+    // 맨 앞(가장 오래 검색 안 한 사용자)부터 보고, idle 이 아닌 사용자를 만나면 멈춥니다. (users 잠금 안에서 호출)
+    private void evictIdle(long now) {
+        Iterator<UserIndex> it = users.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().lastAccess < idleMillis) {
+                break;
+            }
+            it.remove();
+            Metrics.inc(Metrics.name("search_index_evictions_total", "reason", "idle"));
+        }
+    }
+
+    // 처음 나오는 검색어 주변 앞뒤 SNIPPET_RADIUS 글자를 잘라서 보여줍니다.
+    static String snippet(String text, Set<String> terms) {
+        String lower = text.toLowerCase();
+        int at = -1;
+        for (String t : terms) {
+            int i = lower.indexOf(t);
+            if (i >= 0 && (at < 0 || i < at)) {
+                at = i;
+            }
+        }
+        if (at < 0) {
+            at = 0;
+        }
+        int start = Math.max(0, at - SNIPPET_RADIUS);
+        int end = Math.min(text.length(), at + SNIPPET_RADIUS * 2);
+        String s = text.substring(start, end).replaceAll("\\s+", " ").trim();
+        return (start > 0 ? "…" : "") + s + (end < text.length() ? "…" : "");
+    }
+}
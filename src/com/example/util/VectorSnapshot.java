@@ -0,0 +1,247 @@
+package com.example.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * 로컬 벡터 검색용 바이너리 스냅샷입니다. DataLoader 가 쓰고, 서버는 FileChannel.map 으로 열어
+ * 힙에 올리지 않고(off-heap, zero copy) 바로 코사인 검색을 합니다.
+ * 768차원 벡터를 List&lt;Double&gt; 로 들고 있으면 1건에 ~20KB 지만, int8 로 줄이면 ~0.8KB 입니다.
+ *
+ * 파일 구조 (little-endian)
+ * <pre>
+ * [헤더 32바이트] magic "RAGV" | version | count | dim | idsOffset(long) | vectorsOffset(long)
+ * [오프셋 구역]   int[count + 1] : ID 테이블 안에서 각 ID 의 시작 위치 (마지막 값 = 전체 길이)
+ * [ID 테이블]     UTF-8 ID 바이트들을 이어 붙인 것
+ * [벡터 구역]     벡터마다 float scale | float norm | byte[dim]  (원래 값 ≈ byte * scale)
+ * </pre>
+ * 코사인 유사도는 float 질문 벡터와 int8 문서 벡터를 그대로 곱해서 구합니다. (scale 은 약분되어 필요 없음)
+ */
+public class VectorSnapshot {
+
+    private static final int MAGIC = 0x56474152; // "RAGV" (little-endian)
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int dim;
+    private final int recordBytes;
+    private final long vectorsOffset;
+    private final String[] ids;
+
+    private VectorSnapshot(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("벡터 스냅샷 형식이 아닙니다.");
+        }
+        this.count = buffer.getInt(8);
+        this.dim = buffer.getInt(12);
+        long idsOffset = buffer.getLong(16);
+        this.vectorsOffset = buffer.getLong(24);
+        this.recordBytes = 8 + dim;
+
+        // ID 는 결과를 돌려줄 때 필요하니 문자열로 한 번만 풀어 둡니다. (벡터 본체는 계속 파일 매핑에 둠)
+        this.ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            int start = buffer.getInt(HEADER_BYTES + i * 4);
+            int end = buffer.getInt(HEADER_BYTES + (i + 1) * 4);
+            byte[] bytes = new byte[end - start];
+            ByteBuffer slice = buffer.duplicate();
+            slice.position((int) idsOffset + start);
+            slice.get(bytes);
+            ids[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 스냅샷 파일을 읽기 전용으로 매핑해서 엽니다.
+     */
+    public static VectorSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // 매핑은 채널을 닫아도 유지됩니다.
+            return new VectorSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * float 벡터들을 int8 로 양자화해서 스냅샷 파일로 씁니다. (임시 파일에 쓴 뒤 이름을 바꿔서 교체)
+     */
+    public static void write(Path path, List<String> ids, List<float[]> vectors) throws IOException {
+        if (ids.size() != vectors.size()) {
+            throw new IllegalArgumentException("ID 수와 벡터 수가 다릅니다.");
+        }
+        int count = ids.size();
+        int dim = count == 0 ? 0 : vectors.get(0).length;
+
+        List<byte[]> idBytes = new ArrayList<>(count);
+        int idTableBytes = 0;
+        for (String id : ids) {
+            byte[] b = id.getBytes(StandardCharsets.UTF_8);
+            idBytes.add(b);
+            idTableBytes += b.length;
+        }
+        long idsOffset = HEADER_BYTES + 4L * (count + 1);
+        long vectorsOffset = idsOffset + idTableBytes;
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream os = Files.newOutputStream(tmp);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16))) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(dim).putLong(idsOffset).putLong(vectorsOffset);
+            out.write(header.array());
+
+            ByteBuffer offsets = ByteBuffer.allocate(4 * (count + 1)).order(ByteOrder.LITTLE_ENDIAN);
+            int pos = 0;
+            for (byte[] b : idBytes) {
+                offsets.putInt(pos);
+                pos += b.length;
+            }
+            offsets.putInt(pos);
+            out.write(offsets.array());
+            for (byte[] b : idBytes) {
+                out.write(b);
+            }
+
+            ByteBuffer record = ByteBuffer.allocate(8 + dim).order(ByteOrder.LITTLE_ENDIAN);
+            for (float[] v : vectors) {
+                if (v.length != dim) {
+                    throw new IllegalArgumentException("벡터 차원이 다릅니다: " + v.length + " != " + dim);
+                }
+                record.clear();
+                quantize(v, record);
+                out.write(record.array());
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // 벡터마다 절댓값 최댓값을 127 로 맞추는 대칭 양자화
+    private static void quantize(float[] v, ByteBuffer record) {
+        float maxAbs = 0;
+        for (float x : v) {
+            maxAbs = Math.max(maxAbs, Math.abs(x));
+        }
+        float scale = maxAbs == 0 ? 1 : maxAbs / 127f;
+        byte[] q = new byte[v.length];
+        double norm = 0;
+        for (int i = 0; i < v.length; i++) {
+            int b = Math.round(v[i] / scale);
+            q[i] = (byte) Math.max(-127, Math.min(127, b));
+            norm += q[i] * q[i];
+        }
+        record.putFloat(scale).putFloat((float) Math.sqrt(norm)).put(q);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int dimension() {
+        return dim;
+    }
+
+    public String id(int index) {
+        return ids[index];
+    }
+
+    /**
+     * 저장된 int8 벡터를 float 로 되돌립니다. (byte * scale - 재색인 때 기존 벡터를 다시 쓰는 용도)
+     */
+    public float[] vector(int index) {
+        int base = (int) (vectorsOffset + (long) index * recordBytes);
+        float scale = buffer.getFloat(base);
+        float[] v = new float[dim];
+        for (int d = 0; d < dim; d++) {
+            v[d] = buffer.get(base + 8 + d) * scale;
+        }
+        return v;
+    }
+
+    /**
+     * 전체 벡터를 훑어서 코사인 유사도 상위 k 개를 찾습니다. (스냅샷 파일 매핑을 직접 읽음)
+     * 돌려주는 SearchHit 에는 본문이 없으므로(text = null) 호출하는 쪽에서 채워야 합니다.
+     */
+    public List<SearchHit> search(float[] query, int k) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        if (query.length != dim) {
+            throw new IllegalArgumentException("질문 벡터 차원이 다릅니다: " + query.length + " != " + dim);
+        }
+        double queryNorm = 0;
+        for (float x : query) {
+            queryNorm += x * x;
+        }
+        queryNorm = Math.sqrt(queryNorm);
+        if (queryNorm == 0) {
+            return new ArrayList<>();
+        }
+
+        // 스레드마다 자기 위치를 갖는 뷰를 만들고, 한 행(dim 바이트)씩 작은 배열로 읽어서 곱합니다.
+        // (바이트 하나씩 절대 위치로 읽는 것보다 훨씬 빠르고, 전체 벡터를 힙에 복사하지는 않습니다)
+        ByteBuffer view = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        byte[] row = new byte[dim];
+
+        PriorityQueue<double[]> top = new PriorityQueue<>(k + 1, (a, b) -> Double.compare(a[0], b[0]));
+        for (int i = 0; i < count; i++) {
+            int base = (int) (vectorsOffset + (long) i * recordBytes);
+            float norm = view.getFloat(base + 4);
+            if (norm == 0) {
+                continue;
+            }
+            view.position(base + 8);
+            view.get(row);
+            // 누산기 4개로 나눠서 곱셈-덧셈 의존 사슬을 끊습니다.
+            float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            int d = 0;
+            for (; d + 3 < dim; d += 4) {
+                s0 += query[d] * row[d];
+                s1 += query[d + 1] * row[d + 1];
+                s2 += query[d + 2] * row[d + 2];
+                s3 += query[d + 3] * row[d + 3];
+            }
+            for (; d < dim; d++) {
+                s0 += query[d] * row[d];
+            }
+            double dot = (s0 + s1) + (s2 + s3);
+            double score = dot / (norm * queryNorm);
+            if (top.size() < k) {
+                top.add(new double[] { score, i });
+            } else if (score > top.peek()[0]) {
+                top.poll();
+                top.add(new double[] { score, i });
+            }
+        }
+
+        List<SearchHit> hits = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            double[] e = top.poll();
+            hits.add(0, new SearchHit(ids[(int) e[1]], null, e[0]));
+        }
+        return hits;
+    }
+
+    public static float[] toFloats(List<Double> vector) {
+        float[] f = new float[vector.size()];
+        for (int i = 0; i < f.length; i++) {
+            f[i] = vector.get(i).floatValue();
+        }
+        return f;
+    }
+}
@@ -124,7 +124,12 @@ document.addEventListener('DOMContentLoaded', () => {
             headers: { 'Content-Type': 'application/json' },
             body: JSON.stringify({ prompt: prompt })
         })
-        .then(response => response.json())
+        .then(response => {
+            // (단계별 서버 시간: 개발자 도구 Network > Timing 에도 보임)
+            const timing = response.headers.get('Server-Timing');
+            if (timing) console.debug('[gpt] Server-Timing', response.headers.get('X-Request-Id'), timing);
+            return response.json();
+        })
         .then(data => {
             if (data.success) {
                 // (서버가 돌려준 새 Q&A 객체(data.data)를 렌더링)